@@ -0,0 +1,199 @@
+package com.meltwater.smsc.tracing;
+
+import com.meltwater.smsc.command.CommandType;
+import com.meltwater.smsc.index.PhoneNumbers;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emits the traces as Java Flight Recorder events in the SMSC category, each event begun when its trace begins and
+ * committed when the operation ended. The events are only created while a recording enables them, e.g. when started
+ * with {@code -XX:StartFlightRecording}. Compiled only on a JDK providing {@code jdk.jfr}.
+ */
+public class JfrMessageTracer implements MessageTracer {
+
+    private static final EventType COMMAND_EXECUTED = EventType.getEventType(CommandExecutedEvent.class);
+    private static final EventType MESSAGE_SENT = EventType.getEventType(MessageSentEvent.class);
+    private static final EventType GROUP_MESSAGE_SENT = EventType.getEventType(GroupMessageSentEvent.class);
+    private static final EventType BROADCAST = EventType.getEventType(BroadcastEvent.class);
+    private static final EventType REDELIVERED = EventType.getEventType(RedeliveredEvent.class);
+
+    @Override
+    public Trace beginCommand() {
+        if (COMMAND_EXECUTED.isEnabled()) {
+            CommandExecutedEvent event = new CommandExecutedEvent();
+            event.begin();
+            return event;
+        }
+        return Trace.NONE;
+    }
+
+    @Override
+    public void commandExecuted(Trace trace, CommandType type) {
+        if (trace instanceof CommandExecutedEvent) {
+            CommandExecutedEvent event = (CommandExecutedEvent) trace;
+            if (event.shouldCommit()) {
+                event.type = type.name();
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Trace beginMessage() {
+        if (MESSAGE_SENT.isEnabled()) {
+            MessageSentEvent event = new MessageSentEvent();
+            event.begin();
+            return event;
+        }
+        return Trace.NONE;
+    }
+
+    @Override
+    public void messageSent(Trace trace, long sourceNumber, long destinationNumber, boolean delivered) {
+        if (trace instanceof MessageSentEvent) {
+            MessageSentEvent event = (MessageSentEvent) trace;
+            if (event.shouldCommit()) {
+                event.source = PhoneNumbers.decode(sourceNumber);
+                event.destination = PhoneNumbers.decode(destinationNumber);
+                event.delivered = delivered;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Trace beginGroupMessage() {
+        if (GROUP_MESSAGE_SENT.isEnabled()) {
+            GroupMessageSentEvent event = new GroupMessageSentEvent();
+            event.begin();
+            return event;
+        }
+        return Trace.NONE;
+    }
+
+    @Override
+    public void groupMessageSent(Trace trace, long sourceNumber, String groupName, int recipients) {
+        if (trace instanceof GroupMessageSentEvent) {
+            GroupMessageSentEvent event = (GroupMessageSentEvent) trace;
+            if (event.shouldCommit()) {
+                event.source = PhoneNumbers.decode(sourceNumber);
+                event.group = groupName;
+                event.recipients = recipients;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Trace beginBroadcast() {
+        if (BROADCAST.isEnabled()) {
+            BroadcastEvent event = new BroadcastEvent();
+            event.begin();
+            return event;
+        }
+        return Trace.NONE;
+    }
+
+    @Override
+    public void broadcast(Trace trace, long sourceNumber, int recipients) {
+        if (trace instanceof BroadcastEvent) {
+            BroadcastEvent event = (BroadcastEvent) trace;
+            if (event.shouldCommit()) {
+                event.source = PhoneNumbers.decode(sourceNumber);
+                event.recipients = recipients;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public Trace beginRedelivery() {
+        if (REDELIVERED.isEnabled()) {
+            RedeliveredEvent event = new RedeliveredEvent();
+            event.begin();
+            return event;
+        }
+        return Trace.NONE;
+    }
+
+    @Override
+    public void redelivered(Trace trace, int destinations) {
+        if (trace instanceof RedeliveredEvent) {
+            RedeliveredEvent event = (RedeliveredEvent) trace;
+            if (event.shouldCommit()) {
+                event.destinations = destinations;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("com.meltwater.smsc.CommandExecuted")
+    @Label("Command Executed")
+    @Category("SMSC")
+    @StackTrace(false)
+    static class CommandExecutedEvent extends Event implements Trace {
+
+        @Label("Type")
+        String type;
+    }
+
+    @Name("com.meltwater.smsc.MessageSent")
+    @Label("Message Sent")
+    @Category("SMSC")
+    @StackTrace(false)
+    static class MessageSentEvent extends Event implements Trace {
+
+        @Label("Source")
+        String source;
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Delivered")
+        boolean delivered;
+    }
+
+    @Name("com.meltwater.smsc.GroupMessageSent")
+    @Label("Group Message Sent")
+    @Category("SMSC")
+    @StackTrace(false)
+    static class GroupMessageSentEvent extends Event implements Trace {
+
+        @Label("Source")
+        String source;
+
+        @Label("Group")
+        String group;
+
+        @Label("Recipients")
+        int recipients;
+    }
+
+    @Name("com.meltwater.smsc.Broadcast")
+    @Label("Broadcast")
+    @Category("SMSC")
+    @StackTrace(false)
+    static class BroadcastEvent extends Event implements Trace {
+
+        @Label("Source")
+        String source;
+
+        @Label("Recipients")
+        int recipients;
+    }
+
+    @Name("com.meltwater.smsc.Redelivered")
+    @Label("Redelivered")
+    @Category("SMSC")
+    @StackTrace(false)
+    static class RedeliveredEvent extends Event implements Trace {
+
+        @Label("Destinations")
+        int destinations;
+    }
+}
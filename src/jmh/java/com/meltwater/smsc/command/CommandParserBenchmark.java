@@ -0,0 +1,53 @@
+package com.meltwater.smsc.command;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParserBenchmark {
+
+    private static final String[] LINES = {
+            "number1 +36991212321",
+            "subscribe number1",
+            "unsubscribe number3",
+            "group1 +3699123*,+36991212321",
+            "message number1 number2 \"Hi Ann, pub this evening will be fine\"",
+            "message number1 number2,number4 \"guys, I'm back at work now...\"",
+            "message number3 group1 \"The world is great, plan your vacation today\"",
+            "message number5 broadcast \"New phone service... check it out now!\"",
+            "number5 1234",
+            "sleep 2"
+    };
+
+    private final CommandParser regexCommandParser = new RegexCommandParser();
+    private final CommandParser streamingCommandParser = new StreamingCommandParser();
+
+    @Benchmark
+    public void regexParser(Blackhole blackhole) {
+        for (String line : LINES) {
+            blackhole.consume(regexCommandParser.parse(line));
+        }
+    }
+
+    @Benchmark
+    public void streamingParser(Blackhole blackhole) {
+        for (String line : LINES) {
+            blackhole.consume(streamingCommandParser.parse(line));
+        }
+    }
+}
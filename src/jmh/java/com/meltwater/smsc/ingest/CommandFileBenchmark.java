@@ -0,0 +1,84 @@
+package com.meltwater.smsc.ingest;
+
+import com.meltwater.smsc.command.CommandParser;
+import com.meltwater.smsc.command.StreamingCommandParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Parsing a whole command file the way the application reads its input: line by line on one thread
+ * and through the memory mapped reader with parallel parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandFileBenchmark {
+
+    private static final String[] LINES = {
+            "number%d +3670%07d",
+            "subscribe number%d",
+            "group%d +3670%04d*,+3699%07d",
+            "message number%d number%d,number%d \"guys, I'm back at work now...\"",
+            "message number%d group%d \"The world is great, plan your vacation today\"",
+            "message number%d broadcast \"New phone service... check it out now!\"",
+            "unsubscribe number%d",
+            "sleep %d"
+    };
+
+    @Param({"100000", "1000000", "10000000"})
+    private int lines;
+
+    private final CommandParser commandParser = new StreamingCommandParser();
+    private Path path;
+
+    @Setup
+    public void writeFile() throws IOException {
+        path = Files.createTempFile("commands", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines; i++) {
+                writer.write(String.format(LINES[i % LINES.length], i, i % 10_000, (i + 1) % 10_000_000));
+                writer.newLine();
+            }
+        }
+    }
+
+    @Benchmark
+    public void lineByLine(Blackhole blackhole) throws IOException {
+        try (Stream<String> fileLines = Files.lines(path)) {
+            fileLines.filter(line -> !line.isEmpty())
+                    .forEach(line -> blackhole.consume(commandParser.parse(line)));
+        }
+    }
+
+    @Benchmark
+    public void memoryMapped(Blackhole blackhole) throws IOException {
+        new MappedCommandFileReader(commandParser, Runtime.getRuntime().availableProcessors(), 8 << 20).read(path, blackhole::consume);
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.delete(path);
+    }
+}
@@ -0,0 +1,117 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Redelivery;
+import com.meltwater.smsc.repository.NumberDictionary;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Time to rebuild the pending redeliveries from a journal of enqueued and delivered events,
+ * every fourth event delivers a redelivery enqueued before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RedeliveryRecoveryBenchmark {
+
+    private static final String[] MESSAGES = {
+            "Hi Ann, pub this evening will be fine",
+            "guys, I'm back at work now...",
+            "The world is great, plan your vacation today",
+            "New phone service... check it out now!"
+    };
+    private static final Instant CREATION_DATE = Instant.now();
+
+    @Param("10000000")
+    private int events;
+
+    private Path loggedDirectory;
+    private Path recoveredDirectory;
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        loggedDirectory = Files.createTempDirectory("redelivery-journal");
+        try (WalRedeliveryJournal journal = openJournal(loggedDirectory)) {
+            RedeliveryRepository redeliveryRepository = new RedeliveryRepository(new NumberDictionary(), journal);
+            for (int event = 0; event < events; event++) {
+                if (event % 4 == 3) {
+                    redeliveryRepository.delete(redelivery(event - 3));
+                } else {
+                    redeliveryRepository.save(redelivery(event));
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void copyJournal() throws IOException {
+        recoveredDirectory = Files.createTempDirectory("redelivery-recovery");
+        for (Path segment : list(loggedDirectory)) {
+            Files.copy(segment, recoveredDirectory.resolve(segment.getFileName()));
+        }
+    }
+
+    @Benchmark
+    public RedeliveryRepository recover() throws IOException {
+        try (WalRedeliveryJournal journal = openJournal(recoveredDirectory)) {
+            return new RedeliveryRepository(new NumberDictionary(), journal);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRecovered() throws IOException {
+        delete(recoveredDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        delete(loggedDirectory);
+    }
+
+    private static Redelivery redelivery(int event) {
+        return new Redelivery(PhoneNumbers.encode("+3699" + (1_000_000 + event % 1000)), PhoneNumbers.encode("+3670" + (1_000_000 + event / 1000)),
+                MESSAGES[event % MESSAGES.length], CREATION_DATE);
+    }
+
+    private static WalRedeliveryJournal openJournal(Path directory) throws IOException {
+        return new WalRedeliveryJournal(new WriteAheadLog(directory, "redeliveries", 64 << 20, 1 << 20, FsyncPolicy.NEVER, 100));
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        for (Path segment : list(directory)) {
+            Files.delete(segment);
+        }
+        Files.delete(directory);
+    }
+}
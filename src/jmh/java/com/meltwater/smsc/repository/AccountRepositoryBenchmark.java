@@ -0,0 +1,88 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.index.NumberPatternTrie;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Account;
+import com.meltwater.smsc.workload.BenchmarkNumbers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account lookups by number, name, number prefix and group patterns over a population of registered accounts.
+ * The group patterns match about a thousand accounts whatever the population.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AccountRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int population;
+
+    @Param({"indexed", "linear"})
+    private String repository;
+
+    private AccountRepository accountRepository;
+    private String[] numbers;
+    private long[] encodedNumbers;
+    private String[] names;
+    private NumberPatternTrie groupPatterns;
+    private int next;
+
+    @Setup
+    public void register() {
+        accountRepository = "indexed".equals(repository) ? new IndexedAccountRepository() : new LinearAccountRepository();
+        numbers = new String[population];
+        encodedNumbers = new long[population];
+        names = new String[population];
+        for (int i = 0; i < population; i++) {
+            numbers[i] = BenchmarkNumbers.number(i);
+            encodedNumbers[i] = PhoneNumbers.encode(numbers[i]);
+            names[i] = "number" + i;
+            accountRepository.save(new Account(names[i], encodedNumbers[i]));
+        }
+        groupPatterns = NumberPatternTrie.compile(Arrays.asList("+36700000*", BenchmarkNumbers.number(population - 1)));
+    }
+
+    @Benchmark
+    public Optional<Account> findByNumber() {
+        return accountRepository.findByNumber(encodedNumbers[nextIndex()]);
+    }
+
+    @Benchmark
+    public Optional<Account> findByName() {
+        return accountRepository.findByName(names[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<Account> findByNumbersLike() {
+        return accountRepository.findByNumbersLike(numbers[nextIndex()].substring(0, 10));
+    }
+
+    @Benchmark
+    public List<Account> findAllByPatterns() {
+        return accountRepository.findAllByPatterns(groupPatterns);
+    }
+
+    private int nextIndex() {
+        next = (next + 7919) % population;
+        return next;
+    }
+}
@@ -0,0 +1,64 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.workload.BenchmarkNumbers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscription checks over a population of numbers of which every second one is subscribed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SubscriptionRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int population;
+
+    private SubscriptionRepository subscriptionRepository;
+    private long[] numbers;
+    private int next;
+
+    @Setup
+    public void subscribe() {
+        NumberDictionary numberDictionary = new NumberDictionary();
+        subscriptionRepository = new SubscriptionRepository(numberDictionary);
+        numbers = new long[population];
+        for (int i = 0; i < population; i++) {
+            numbers[i] = BenchmarkNumbers.encodedNumber(i);
+            numberDictionary.idOf(numbers[i]);
+            if (i % 2 == 0) {
+                subscriptionRepository.save("number" + i, numbers[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public long countByNumber() {
+        return subscriptionRepository.countByNumber(numbers[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean isSubscribed() {
+        return subscriptionRepository.isSubscribed(numbers[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = (next + 7919) % population;
+        return next;
+    }
+}
@@ -0,0 +1,88 @@
+package com.meltwater.smsc.service;
+
+import com.meltwater.smsc.delivery.NoOpDeliverySink;
+import com.meltwater.smsc.model.Account;
+import com.meltwater.smsc.repository.IndexedAccountRepository;
+import com.meltwater.smsc.repository.NumberDictionary;
+import com.meltwater.smsc.repository.NumberGroupRepository;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import com.meltwater.smsc.repository.SubscriptionRepository;
+import com.meltwater.smsc.scheduler.ExponentialBackoff;
+import com.meltwater.smsc.scheduler.RedeliveryScheduler;
+import com.meltwater.smsc.workload.BenchmarkNumbers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of a group of about a thousand members within a population of subscribed accounts,
+ * uncached, cached and as part of sending a group message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GroupResolutionBenchmark {
+
+    private static final String GROUP_NAME = "group1";
+    private static final String MESSAGE = "The world is great, plan your vacation today";
+
+    @Param({"1000", "100000", "1000000"})
+    private int population;
+
+    private IndexedAccountRepository accountRepository;
+    private NumberGroupRepository numberGroupRepository;
+    private GroupMembershipCache groupMembershipCache;
+    private SubscriptionService subscriptionService;
+
+    @Setup
+    public void register() {
+        NumberDictionary numberDictionary = new NumberDictionary();
+        accountRepository = new IndexedAccountRepository(numberDictionary);
+        SubscriptionRepository subscriptionRepository = new SubscriptionRepository(numberDictionary);
+        for (int i = 0; i < population; i++) {
+            Account account = new Account("number" + i, BenchmarkNumbers.encodedNumber(i));
+            accountRepository.save(account);
+            subscriptionRepository.save(account.getName(), account.getNumber());
+        }
+        numberGroupRepository = new NumberGroupRepository();
+        numberGroupRepository.save(GROUP_NAME, Arrays.asList("+36700000*", BenchmarkNumbers.number(population - 1)));
+
+        RedeliveryRepository redeliveryRepository = new RedeliveryRepository(numberDictionary);
+        RedeliveryScheduler redeliveryScheduler = new RedeliveryScheduler(100, 512, new ExponentialBackoff(1000, 2, 60000, 0.2),
+                redeliveryRepository);
+        MessagingService messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                new NoOpDeliverySink());
+        groupMembershipCache = new GroupMembershipCache(accountRepository, numberGroupRepository);
+        subscriptionService = new SubscriptionService(subscriptionRepository, accountRepository, groupMembershipCache, messagingService);
+    }
+
+    @Benchmark
+    public List<Account> resolveMembers() {
+        return new GroupMembershipCache(accountRepository, numberGroupRepository).findMembers(GROUP_NAME);
+    }
+
+    @Benchmark
+    public List<Account> resolveCachedMembers() {
+        return groupMembershipCache.findMembers(GROUP_NAME);
+    }
+
+    @Benchmark
+    public void sendGroupMessage() {
+        subscriptionService.sendGroupMessage("number0", GROUP_NAME, MESSAGE);
+    }
+}
@@ -0,0 +1,97 @@
+package com.meltwater.smsc.service;
+
+import com.meltwater.smsc.delivery.NoOpDeliverySink;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Redelivery;
+import com.meltwater.smsc.repository.NumberDictionary;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import com.meltwater.smsc.repository.SubscriptionRepository;
+import com.meltwater.smsc.scheduler.ExponentialBackoff;
+import com.meltwater.smsc.scheduler.RedeliveryScheduler;
+import com.meltwater.smsc.workload.BenchmarkNumbers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Sending between subscribed numbers and redelivery to subscribed recipients with a backlog of pending redeliveries from
+ * a thousand offline senders, a thousand messages to each recipient. Every tenth recipient is subscribed, so redelivery
+ * looks up and checks its messages, but the senders stay offline and the backlog does not change while measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MessagingServiceBenchmark {
+
+    private static final String[] MESSAGES = {
+            "Hi Ann, pub this evening will be fine",
+            "guys, I'm back at work now...",
+            "The world is great, plan your vacation today",
+            "New phone service... check it out now!"
+    };
+    private static final long SUBSCRIBED_SOURCE = PhoneNumbers.encode("+36991000000");
+    private static final long SUBSCRIBED_DESTINATION = PhoneNumbers.encode("+36991000001");
+
+    @Param({"0", "10000", "1000000"})
+    private int backlog;
+
+    private MessagingService messagingService;
+    private long subscribedDestination;
+    private long[] subscribedDestinations;
+
+    @Setup
+    public void enqueueBacklog() {
+        NumberDictionary numberDictionary = new NumberDictionary();
+        SubscriptionRepository subscriptionRepository = new SubscriptionRepository(numberDictionary);
+        subscriptionRepository.save("number0", SUBSCRIBED_SOURCE);
+        subscriptionRepository.save("number1", SUBSCRIBED_DESTINATION);
+
+        RedeliveryRepository redeliveryRepository = new RedeliveryRepository(numberDictionary);
+        Instant creationDate = Instant.now();
+        for (int i = 0; i < backlog; i++) {
+            redeliveryRepository.save(new Redelivery(BenchmarkNumbers.encodedSender(i % 1000), BenchmarkNumbers.encodedNumber(i / 1000),
+                    MESSAGES[i % MESSAGES.length], creationDate));
+        }
+        LongStream.Builder subscribed = LongStream.builder();
+        for (int i = 0; i < backlog / 1000; i += 10) {
+            subscriptionRepository.save("recipient" + i, BenchmarkNumbers.encodedNumber(i));
+            subscribed.add(BenchmarkNumbers.encodedNumber(i));
+        }
+        subscribedDestinations = subscribed.build().toArray();
+        subscribedDestination = BenchmarkNumbers.encodedNumber(0);
+
+        RedeliveryScheduler redeliveryScheduler = new RedeliveryScheduler(100, 512, new ExponentialBackoff(1000, 2, 60000, 0.2),
+                redeliveryRepository);
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler, new NoOpDeliverySink());
+    }
+
+    @Benchmark
+    public void send() {
+        messagingService.send(SUBSCRIBED_SOURCE, SUBSCRIBED_DESTINATION, MESSAGES[0]);
+    }
+
+    @Benchmark
+    public void redeliverTo() {
+        messagingService.redeliverTo(subscribedDestination);
+    }
+
+    @Benchmark
+    public void redeliverToAll() {
+        messagingService.redeliverToAll(subscribedDestinations);
+    }
+}
@@ -0,0 +1,30 @@
+package com.meltwater.smsc.workload;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+
+/**
+ * Numbers of the benchmark populations, so every benchmark registers, subscribes and messages the same numbers.
+ */
+public final class BenchmarkNumbers {
+
+    private BenchmarkNumbers() {
+    }
+
+    /**
+     * The i-th number of a population, all starting with {@code +36700}.
+     */
+    public static String number(int i) {
+        return String.format("+3670%07d", i);
+    }
+
+    public static long encodedNumber(int i) {
+        return PhoneNumbers.encode(number(i));
+    }
+
+    /**
+     * The i-th sender, outside the population.
+     */
+    public static long encodedSender(int i) {
+        return PhoneNumbers.encode(String.format("+3699%07d", i));
+    }
+}
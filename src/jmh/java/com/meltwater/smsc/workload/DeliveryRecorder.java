@@ -0,0 +1,74 @@
+package com.meltwater.smsc.workload;
+
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.CommandType;
+import com.meltwater.smsc.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts submitted commands and deliveries and records the delivery latency of messages tagged with {@code #<id>}.
+ * Commands are submitted from a single thread, deliveries may come from any thread.
+ */
+final class DeliveryRecorder {
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private static final int NOT_TAGGED = -1;
+
+    private final long[][] submittedNanos = new long[1 << (31 - PAGE_BITS)][];
+    private final AtomicLong commands = new AtomicLong();
+    private final LongAdder deliveries = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    void submitted(Command command) {
+        if (command.getType() == CommandType.MESSAGE && command.isValid()) {
+            int id = idOf(command.getMessage());
+            if (id != NOT_TAGGED) {
+                long[] page = submittedNanos[id >>> PAGE_BITS];
+                if (page == null) {
+                    page = new long[1 << PAGE_BITS];
+                    submittedNanos[id >>> PAGE_BITS] = page;
+                }
+                page[id & PAGE_MASK] = System.nanoTime();
+            }
+        }
+        commands.lazySet(commands.get() + 1);
+    }
+
+    void delivered(long sourceNumber, long destinationNumber, String message) {
+        deliveries.increment();
+        int id = idOf(message);
+        long[] page = id != NOT_TAGGED ? submittedNanos[id >>> PAGE_BITS] : null;
+        if (page != null && page[id & PAGE_MASK] != 0) {
+            latencies.record(System.nanoTime() - page[id & PAGE_MASK]);
+        }
+    }
+
+    long commands() {
+        return commands.get();
+    }
+
+    long deliveries() {
+        return deliveries.sum();
+    }
+
+    LatencyHistogram latencies() {
+        return latencies;
+    }
+
+    private static int idOf(String message) {
+        if (message == null || message.length() < 2 || message.charAt(0) != '#') {
+            return NOT_TAGGED;
+        }
+        long id = 0;
+        for (int i = 1; i < message.length() && message.charAt(i) != ' '; i++) {
+            char c = message.charAt(i);
+            if (c < '0' || c > '9' || (id = 10 * id + c - '0') > Integer.MAX_VALUE) {
+                return NOT_TAGGED;
+            }
+        }
+        return (int) id;
+    }
+}
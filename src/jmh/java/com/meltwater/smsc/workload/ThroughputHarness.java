@@ -0,0 +1,152 @@
+package com.meltwater.smsc.workload;
+
+import com.meltwater.smsc.SmscApplication;
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.StreamingCommandParser;
+import com.meltwater.smsc.delivery.DeliverySink;
+import com.meltwater.smsc.ingest.MappedCommandFileReader;
+import com.meltwater.smsc.metrics.LatencyHistogram;
+import com.meltwater.smsc.metrics.SmscMetrics;
+import com.meltwater.smsc.model.PendingFanOut;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import com.meltwater.smsc.service.AccountService;
+import com.meltwater.smsc.service.SubscriptionService;
+import com.meltwater.smsc.tracing.MessageTracer;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs the application against a generated workload, or the command file given by {@code --input=<file>},
+ * and reports commands and deliveries per second, the redelivery backlog and the delivery latency measured from
+ * handing a message command to the executor until its delivery. Workload options are those of {@link WorkloadGenerator},
+ * {@code --report-interval-millis=1000} sets the progress interval and application properties can be given as well,
+ * e.g. {@code --smsc.clock=virtual}.
+ */
+public class ThroughputHarness {
+
+    private final RedeliveryRepository redeliveryRepository;
+    private final DeliveryRecorder recorder;
+    private long lastCommands;
+    private long lastDeliveries;
+    private long lastReportNanos = System.nanoTime();
+
+    private ThroughputHarness(RedeliveryRepository redeliveryRepository, DeliveryRecorder recorder) {
+        this.redeliveryRepository = redeliveryRepository;
+        this.recorder = recorder;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = WorkloadSettings.options(args);
+        Path input;
+        if (options.containsKey("input")) {
+            input = Paths.get(options.get("input"));
+        } else {
+            WorkloadSettings settings = WorkloadSettings.of(options);
+            input = Files.createTempFile("workload", ".txt");
+            input.toFile().deleteOnExit();
+            long messages = WorkloadGenerator.generate(settings, input);
+            System.out.printf("Generated %d messages, %d bytes: %s%n", messages, Files.size(input), settings);
+        }
+
+        DeliveryRecorder recorder = new DeliveryRecorder();
+        ApplicationContextInitializer<ConfigurableApplicationContext> registerRecorder =
+                context -> context.getBeanFactory().registerSingleton("deliveryRecorder", recorder);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SmscApplication.class, MeasuringConfiguration.class)
+                .web(false)
+                .bannerMode(Banner.Mode.OFF)
+                .properties("smsc.delivery.sink=none", "logging.level.com.meltwater.smsc=warn")
+                .initializers(registerRecorder)
+                .run(args)) {
+            Environment environment = context.getEnvironment();
+            SmscApplication application = new SmscApplication(context.getBean(AccountService.class), context.getBean(SubscriptionService.class));
+            application.setExecutionParallelism(environment.getProperty("smsc.execution.parallelism", Integer.class,
+                    Runtime.getRuntime().availableProcessors()));
+            application.setClock(context.getBean(Clock.class));
+            application.setMetrics(context.getBean(SmscMetrics.class));
+            application.setMessageTracer(context.getBean(MessageTracer.class));
+            MappedCommandFileReader commandFileReader = new MappedCommandFileReader(new StreamingCommandParser(),
+                    environment.getProperty("smsc.input.parallelism", Integer.class, Runtime.getRuntime().availableProcessors()),
+                    environment.getProperty("smsc.input.chunk-size-bytes", Integer.class, 8 * 1024 * 1024)) {
+                @Override
+                public void read(Path path, Consumer<Command> consumer) throws IOException {
+                    super.read(path, command -> {
+                        recorder.submitted(command);
+                        consumer.accept(command);
+                    });
+                }
+            };
+
+            ThroughputHarness harness = new ThroughputHarness(context.getBean(RedeliveryRepository.class), recorder);
+            long reportIntervalMillis = Long.parseLong(options.getOrDefault("report-interval-millis", "1000"));
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "harness-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(harness::reportProgress, reportIntervalMillis, reportIntervalMillis, TimeUnit.MILLISECONDS);
+
+            long startNanos = System.nanoTime();
+            application.run(input, commandFileReader);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            reporter.shutdownNow();
+            harness.reportTotals(elapsedNanos);
+        }
+    }
+
+    private synchronized void reportProgress() {
+        long now = System.nanoTime();
+        long commands = recorder.commands();
+        long deliveries = recorder.deliveries();
+        double seconds = (now - lastReportNanos) / 1e9;
+        System.out.printf("%,d commands (%,.0f/s), %,d deliveries (%,.0f/s), backlog %,d%n", commands, (commands - lastCommands) / seconds,
+                deliveries, (deliveries - lastDeliveries) / seconds, backlog());
+        lastCommands = commands;
+        lastDeliveries = deliveries;
+        lastReportNanos = now;
+    }
+
+    private void reportTotals(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        LatencyHistogram latencies = recorder.latencies();
+        System.out.printf("Ran %,d commands in %.3f s: %,.0f commands/s, %,d deliveries (%,.0f/s), redelivery backlog %,d%n",
+                recorder.commands(), seconds, recorder.commands() / seconds, recorder.deliveries(), recorder.deliveries() / seconds, backlog());
+        System.out.printf("Delivery latency of %,d traced deliveries: p50 %s, p99 %s, p99.9 %s%n", latencies.count(),
+                micros(latencies.percentile(50)), micros(latencies.percentile(99)), micros(latencies.percentile(99.9)));
+    }
+
+    private long backlog() {
+        return redeliveryRepository.count()
+                + redeliveryRepository.findAllFanOuts().stream().mapToLong(PendingFanOut::countOutstanding).sum();
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%,.1f us", nanos / 1e3);
+    }
+
+    @Configuration
+    static class MeasuringConfiguration {
+
+        @Bean
+        @Primary
+        public DeliverySink measuringDeliverySink(DeliveryRecorder deliveryRecorder) {
+            return deliveryRecorder::delivered;
+        }
+    }
+}
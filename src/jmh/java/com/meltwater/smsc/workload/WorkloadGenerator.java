@@ -0,0 +1,144 @@
+package com.meltwater.smsc.workload;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates a command stream in the input file format: the numbers and groups are registered and part of the numbers
+ * subscribed up front, followed by a mix of direct, group and broadcast messages from subscribed numbers interleaved
+ * with subscribe and unsubscribe churn. Messages start with {@code #<id>} so their deliveries can be traced back.
+ * <p>
+ * Usage: {@code WorkloadGenerator <output file> [--numbers=10000] [--groups=100] [--group-size=100] [--subscribed=0.8]
+ * [--commands=1000000] [--churn=0.05] [--group-messages=0.1] [--broadcasts=0.0001] [--max-recipients=3] [--seed=42]}
+ */
+public class WorkloadGenerator {
+
+    private static final String[] TEXTS = {
+            "Hi Ann, pub this evening will be fine",
+            "No, dry cleaning will have to wait until tomorrow",
+            "guys, I'm back at work now...",
+            "The world is great, plan your vacation today",
+            "guys, are you going for lunch?",
+            "New phone service... check it out now!"
+    };
+
+    private final WorkloadSettings settings;
+    private final Random random;
+    private final int[] subscribed;
+    private final int[] positions;
+    private int subscribedCount;
+    private long messages;
+
+    WorkloadGenerator(WorkloadSettings settings) {
+        this.settings = settings;
+        this.random = new Random(settings.seed);
+        this.subscribed = new int[settings.numbers];
+        this.positions = new int[settings.numbers];
+        Arrays.fill(positions, -1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            throw new IllegalArgumentException("Usage: WorkloadGenerator <output file> [--name=value...]");
+        }
+        WorkloadSettings settings = WorkloadSettings.of(WorkloadSettings.options(args));
+        Path path = Paths.get(args[0]);
+        long messages = generate(settings, path);
+        System.out.printf("Generated %s with %d messages: %s%n", path, messages, settings);
+    }
+
+    /**
+     * Writes the workload to the file and returns the number of messages in it, their ids run from zero.
+     */
+    static long generate(WorkloadSettings settings, Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            return new WorkloadGenerator(settings).generate(writer);
+        }
+    }
+
+    long generate(Writer writer) throws IOException {
+        for (int number = 0; number < settings.numbers; number++) {
+            writer.write(name(number) + " " + phoneNumber(number) + "\n");
+        }
+        for (int group = 0; group < settings.groups; group++) {
+            writer.write(groupName(group) + " " + groupPattern() + "," + phoneNumber(random.nextInt(settings.numbers)) + "\n");
+        }
+        for (int number = 0; number < settings.numbers; number++) {
+            if (random.nextDouble() < settings.subscribed) {
+                subscribe(number, writer);
+            }
+        }
+
+        for (long command = 0; command < settings.commands; command++) {
+            if (subscribedCount == 0 || random.nextDouble() < settings.churn) {
+                churn(writer);
+            } else {
+                message(writer);
+            }
+        }
+        return messages;
+    }
+
+    static String name(int number) {
+        return "number" + number;
+    }
+
+    static String phoneNumber(int number) {
+        return String.format("+36%09d", number * 7919L % 1_000_000_000L);
+    }
+
+    private static String groupName(int group) {
+        return "group" + group;
+    }
+
+    private String groupPattern() {
+        int keptDigits = (int) Math.max(0, Math.min(9, Math.round(Math.log10((double) settings.numbers / settings.groupSize))));
+        return phoneNumber(random.nextInt(settings.numbers)).substring(0, 3 + keptDigits) + "*";
+    }
+
+    private void churn(Writer writer) throws IOException {
+        int number = random.nextInt(settings.numbers);
+        if (positions[number] < 0) {
+            subscribe(number, writer);
+        } else {
+            unsubscribe(number, writer);
+        }
+    }
+
+    private void message(Writer writer) throws IOException {
+        String source = name(subscribed[random.nextInt(subscribedCount)]);
+        String text = "\"#" + messages++ + " " + TEXTS[random.nextInt(TEXTS.length)] + "\"";
+        double kind = random.nextDouble();
+        if (kind < settings.broadcasts) {
+            writer.write("message " + source + " broadcast " + text + "\n");
+        } else if (kind < settings.broadcasts + settings.groupMessages && settings.groups > 0) {
+            writer.write("message " + source + " " + groupName(random.nextInt(settings.groups)) + " " + text + "\n");
+        } else {
+            StringBuilder recipients = new StringBuilder(name(random.nextInt(settings.numbers)));
+            for (int i = random.nextInt(settings.maxRecipients); i > 0; i--) {
+                recipients.append(',').append(name(random.nextInt(settings.numbers)));
+            }
+            writer.write("message " + source + " " + recipients + " " + text + "\n");
+        }
+    }
+
+    private void subscribe(int number, Writer writer) throws IOException {
+        positions[number] = subscribedCount;
+        subscribed[subscribedCount++] = number;
+        writer.write("subscribe " + name(number) + "\n");
+    }
+
+    private void unsubscribe(int number, Writer writer) throws IOException {
+        int last = subscribed[--subscribedCount];
+        subscribed[positions[number]] = last;
+        positions[last] = positions[number];
+        positions[number] = -1;
+        writer.write("unsubscribe " + name(number) + "\n");
+    }
+}
@@ -0,0 +1,64 @@
+package com.meltwater.smsc.workload;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shape of a generated workload, read from {@code --name=value} arguments; unknown options are left to the caller.
+ */
+final class WorkloadSettings {
+
+    final int numbers;
+    final int groups;
+    final int groupSize;
+    final double subscribed;
+    final long commands;
+    final double churn;
+    final double groupMessages;
+    final double broadcasts;
+    final int maxRecipients;
+    final long seed;
+
+    private WorkloadSettings(Map<String, String> options) {
+        numbers = Integer.parseInt(options.getOrDefault("numbers", "10000"));
+        groups = Integer.parseInt(options.getOrDefault("groups", "100"));
+        groupSize = Integer.parseInt(options.getOrDefault("group-size", "100"));
+        subscribed = Double.parseDouble(options.getOrDefault("subscribed", "0.8"));
+        commands = Long.parseLong(options.getOrDefault("commands", "1000000"));
+        churn = Double.parseDouble(options.getOrDefault("churn", "0.05"));
+        groupMessages = Double.parseDouble(options.getOrDefault("group-messages", "0.1"));
+        broadcasts = Double.parseDouble(options.getOrDefault("broadcasts", "0.0001"));
+        maxRecipients = Integer.parseInt(options.getOrDefault("max-recipients", "3"));
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        if (numbers < 1 || numbers > 1_000_000_000 || groupSize < 1 || maxRecipients < 1
+                || !isFraction(subscribed) || !isFraction(churn) || !isFraction(groupMessages + broadcasts)) {
+            throw new IllegalArgumentException("Invalid workload settings: " + options);
+        }
+    }
+
+    static WorkloadSettings of(Map<String, String> options) {
+        return new WorkloadSettings(options);
+    }
+
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.indexOf('=') > 2) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static boolean isFraction(double value) {
+        return value >= 0 && value <= 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d numbers (%.0f%% subscribed), %d groups of ~%d, %d commands with %.1f%% churn, "
+                        + "%.1f%% group messages, %.2f%% broadcasts, up to %d recipients, seed %d",
+                numbers, 100 * subscribed, groups, groupSize, commands, 100 * churn, 100 * groupMessages, 100 * broadcasts,
+                maxRecipients, seed);
+    }
+}
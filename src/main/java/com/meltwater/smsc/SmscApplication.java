@@ -1,38 +1,57 @@
 package com.meltwater.smsc;
 
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.CommandParser;
+import com.meltwater.smsc.command.StreamingCommandParser;
+import com.meltwater.smsc.execution.PartitionedCommandExecutor;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.ingest.AccountCsvReader;
+import com.meltwater.smsc.ingest.CommandFileFollower;
+import com.meltwater.smsc.ingest.MappedCommandFileReader;
+import com.meltwater.smsc.metrics.SmscMetrics;
 import com.meltwater.smsc.model.Account;
+import com.meltwater.smsc.scheduler.VirtualClock;
+import com.meltwater.smsc.server.ClientRegistry;
+import com.meltwater.smsc.server.CommandServer;
 import com.meltwater.smsc.service.AccountService;
 import com.meltwater.smsc.service.SubscriptionService;
+import com.meltwater.smsc.tracing.MessageTracer;
+import com.meltwater.smsc.tracing.NoOpMessageTracer;
+import com.meltwater.smsc.tracing.Trace;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @SpringBootApplication
 @EnableScheduling
 @Slf4j
 public class SmscApplication {
 
-	private static final Pattern REGISTER_NUMBER_PATTERN = Pattern.compile("^(number[\\d]+) (\\+[\\d]{11})$");
-	private static final Pattern SUBSCRIBE_NUMBER_PATTERN = Pattern.compile("^(subscribe) (number[\\d]+)$");
-	private static final Pattern UNSUBSCRIBE_NUMBER_PATTERN = Pattern.compile("^(unsubscribe) (number[\\d]+)$");
-	private static final Pattern REGISTER_GROUP_PATTERN = Pattern.compile("^(group[\\d]+) (.*)");
-	private static final Pattern MESSAGE_PATTERN = Pattern.compile("^(message) (number[\\d]+) (.*) \"(.*)\"");
+	private static final int EXECUTION_QUEUE_CAPACITY = 1024;
 
 	private AccountService accountService;
 	private SubscriptionService subscriptionService;
+	private CommandParser commandParser = new StreamingCommandParser();
+	private int executionParallelism = 1;
+	private Clock clock = Clock.systemUTC();
+	private SmscMetrics metrics = new SmscMetrics(clock);
+	private MessageTracer tracer = new NoOpMessageTracer();
 
 	public SmscApplication(AccountService accountService, SubscriptionService subscriptionService) {
 		this.accountService = accountService;
@@ -41,103 +60,144 @@ public class SmscApplication {
 
 	public void run() throws URISyntaxException, IOException {
 		Path path=Paths.get(getClass().getClassLoader().getResource("input_file.txt").toURI());
-		Files.lines(path)
-			.filter(l -> !l.isEmpty())
-			.forEach(line -> {
-				String operation = line.substring(0, line.indexOf(" "));
-				String sanitizedOperation = operation.replaceAll("\\d", "");
-				executeOperation(sanitizedOperation, line);
-			});
-	}
-
-	private void executeOperation(String operation, String line) {
-		log.debug("executing operation {} for line {}", operation, line);
-		switch (operation) {
-            case "number":
-				registerNumber(line);
+		try (PartitionedCommandExecutor commandExecutor = createCommandExecutor()) {
+			Files.lines(path)
+				.filter(l -> !l.isEmpty())
+				.forEach(line -> commandExecutor.execute(commandParser.parse(line)));
+		}
+	}
+
+	public void run(Path path, MappedCommandFileReader commandFileReader) throws IOException {
+		try (PartitionedCommandExecutor commandExecutor = createCommandExecutor()) {
+			commandFileReader.read(path, commandExecutor::execute);
+		}
+	}
+
+	public void loadAccounts(Path path, boolean subscribe) throws IOException {
+		List<Account> accounts = new AccountCsvReader().read(path);
+		accountService.registerNumbers(accounts);
+		if (subscribe) {
+			subscriptionService.subscribeAll(accounts.stream().map(Account::getName).distinct().collect(Collectors.toList()));
+		}
+	}
+
+	public void follow(List<Path> paths, CommandFileFollower commandFileFollower) throws IOException, InterruptedException {
+		try (PartitionedCommandExecutor commandExecutor = createCommandExecutor()) {
+			commandFileFollower.follow(paths, commandExecutor::execute, commandExecutor::awaitSubmitted);
+		}
+	}
+
+	public void serve(CommandServer commandServer) throws InterruptedException {
+		try (PartitionedCommandExecutor commandExecutor = createCommandExecutor()) {
+			commandServer.serve(commandExecutor::execute, subscriptionService::findSubscribedNumber);
+		}
+	}
+
+	public void setExecutionParallelism(int executionParallelism) {
+		this.executionParallelism = executionParallelism;
+	}
+
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	public void setMetrics(SmscMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public void setMessageTracer(MessageTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	private PartitionedCommandExecutor createCommandExecutor() {
+		return new PartitionedCommandExecutor(this::executeOperation, executionParallelism, EXECUTION_QUEUE_CAPACITY);
+	}
+
+	private void executeOperation(Command command) {
+		log.debug("executing operation {} for line {}", command.getType(), command.getLine());
+		Trace trace = tracer.beginCommand();
+		metrics.commandExecuted(command.getType());
+		switch (command.getType()) {
+            case NUMBER:
+				registerNumber(command);
 				break;
-			case "group":
-				registerGroup(line);
+			case GROUP:
+				registerGroup(command);
 				break;
-			case "subscribe":
-				subscribeNumber(line);
+			case SUBSCRIBE:
+				subscribeNumber(command);
 				break;
-			case "unsubscribe":
-				unsubscribeNumber(line);
+			case UNSUBSCRIBE:
+				unsubscribeNumber(command);
 				break;
-			case "message":
-				sendMessage(line);
+			case MESSAGE:
+				sendMessage(command);
 				break;
-			case "sleep":
-				sleep(line);
+			case SLEEP:
+				sleep(command);
 				break;
 			default:
-				log.error("Operation {} is unknown for line {}", operation, line);
+				log.error("Operation {} is unknown for line {}", command.getName(), command.getLine());
         }
+		tracer.commandExecuted(trace, command.getType());
 	}
 
-	private void registerNumber(String line) {
-		Matcher matcher = REGISTER_NUMBER_PATTERN.matcher(line);
-		if (matcher.find()) {
+	private void registerNumber(Command command) {
+		if (command.isValid()) {
 			try {
-				Account account = new Account(matcher.group(1), matcher.group(2));
+				Account account = new Account(command.getName(), PhoneNumbers.encode(command.getNumber()));
 				accountService.registerNumber(account);
 			} catch (RuntimeException ex) {
 				log.error("Something went wrong on number registering", ex);
 			}
         } else {
-			log.info("No match found for registering number in line: " + line);
+			log.info("No match found for registering number in line: {}", command.getLine());
 		}
 	}
 
 
-	private void registerGroup(String line) {
-		Matcher matcher = REGISTER_GROUP_PATTERN.matcher(line);
-		if (matcher.find()) {
+	private void registerGroup(Command command) {
+		if (command.isValid()) {
 			try {
-				List<String> numberPatterns = getNumberPatterns(matcher.group(2));
-				accountService.registerGroup(matcher.group(1), numberPatterns);
+				accountService.registerGroup(command.getName(), command.getTargets());
 			} catch (RuntimeException ex) {
 				log.error("Something went wrong on group registering", ex);
 			}
 		} else {
-			log.info("No match found for registering group in line: " + line);
+			log.info("No match found for registering group in line: {}", command.getLine());
 		}
 	}
 
-	private void subscribeNumber(String line) {
-		Matcher matcher = SUBSCRIBE_NUMBER_PATTERN.matcher(line);
-		if (matcher.find()) {
+	private void subscribeNumber(Command command) {
+		if (command.isValid()) {
 			try {
-				subscriptionService.subscribeNumber(matcher.group(2));
+				subscriptionService.subscribeNumber(command.getName());
 			} catch (RuntimeException ex) {
 				log.error("Something went wrong on number subscription", ex);
 			}
 		} else {
-			log.info("No match found for subscribing number in line: " + line);
+			log.info("No match found for subscribing number in line: {}", command.getLine());
 		}
 	}
 
-	private void unsubscribeNumber(String line) {
-		Matcher matcher = UNSUBSCRIBE_NUMBER_PATTERN.matcher(line);
-		if (matcher.find()) {
+	private void unsubscribeNumber(Command command) {
+		if (command.isValid()) {
 			try {
-				subscriptionService.unsubscribeNumber(matcher.group(2));
+				subscriptionService.unsubscribeNumber(command.getName());
 			} catch (RuntimeException ex) {
 				log.error("Something went wrong on number unsubscription", ex);
 			}
 		} else {
-			log.info("No match found for unsubscribing number in line: " + line);
+			log.info("No match found for unsubscribing number in line: {}", command.getLine());
 		}
 	}
 
-	private void sendMessage(String line) {
-		Matcher matcher = MESSAGE_PATTERN.matcher(line);
-		if (matcher.find()) {
+	private void sendMessage(Command command) {
+		if (command.isValid()) {
 			try {
-				List<String> numberPatterns = getNumberPatterns(matcher.group(3));
-				String sourceName = matcher.group(2);
-				String message = matcher.group(4);
+				List<String> numberPatterns = command.getTargets();
+				String sourceName = command.getName();
+				String message = command.getMessage();
 				if (numberPatterns.get(0).equals("broadcast")) {
 					subscriptionService.broadCastMessage(sourceName, message);
 				} else if (numberPatterns.get(0).startsWith("group")) {
@@ -149,13 +209,22 @@ public class SmscApplication {
 				log.error("Something went wrong on message sending", ex);
 			}
 		} else {
-			log.info("No match found for registering group in line: " + line);
+			log.info("No match found for registering group in line: {}", command.getLine());
 		}
 	}
 
-	private void sleep(String line) {
+	private void sleep(Command command) {
+		if (!command.isValid()) {
+			log.info("No match found for sleeping in line: {}", command.getLine());
+			return;
+		}
 		try {
-			long sleepDuration = Long.valueOf(line.split(" ")[1]);
+			long sleepDuration = command.getSeconds();
+			if (clock instanceof VirtualClock) {
+				log.info("Advancing virtual clock by {} seconds...", sleepDuration);
+				((VirtualClock) clock).advance(Duration.ofSeconds(sleepDuration));
+				return;
+			}
 			log.info("Sleeping for {} seconds...", sleepDuration);
 			TimeUnit.SECONDS.sleep(sleepDuration);
 		} catch (InterruptedException e) {
@@ -163,20 +232,67 @@ public class SmscApplication {
 		}
 	}
 
-	private List<String> getNumberPatterns(String string) {
-		return Arrays.asList(string.split(","));
-	}
-
 	public static void main(String[] args) {
 		ConfigurableApplicationContext ctx =SpringApplication.run(SmscApplication.class, args);
 		AccountService accountService = ctx.getBean(AccountService.class);
 		SubscriptionService subscriptionService = ctx.getBean(SubscriptionService.class);
 
 		SmscApplication smscApplication = new SmscApplication(accountService, subscriptionService);
+		smscApplication.setExecutionParallelism(ctx.getEnvironment().getProperty("smsc.execution.parallelism", Integer.class, 1));
+		smscApplication.setClock(ctx.getBean(Clock.class));
+		smscApplication.setMetrics(ctx.getBean(SmscMetrics.class));
+		smscApplication.setMessageTracer(ctx.getBean(MessageTracer.class));
 		try {
-			smscApplication.run();
+			String accountsFile = ctx.getEnvironment().getProperty("smsc.registry.bulk-load", "");
+			if (!accountsFile.isEmpty()) {
+				smscApplication.loadAccounts(Paths.get(accountsFile),
+						ctx.getEnvironment().getProperty("smsc.registry.bulk-load.subscribe", Boolean.class, false));
+			}
+			List<String> inputFiles = getInputFiles(args);
+			if (ctx.getEnvironment().getProperty("smsc.server.enabled", Boolean.class, false)) {
+				smscApplication.serve(createCommandServer(ctx.getEnvironment(), ctx.getBean(ClientRegistry.class)));
+			} else if (ctx.getEnvironment().getProperty("smsc.input.follow", Boolean.class, false)) {
+				List<Path> paths = inputFiles.stream().map(Paths::get).collect(Collectors.toList());
+				smscApplication.follow(paths, createCommandFileFollower(ctx.getEnvironment()));
+			} else if (inputFiles.isEmpty()) {
+				smscApplication.run();
+			} else {
+				MappedCommandFileReader commandFileReader = createCommandFileReader(ctx.getEnvironment());
+				for (String inputFile : inputFiles) {
+					smscApplication.run(Paths.get(inputFile), commandFileReader);
+				}
+			}
 		} catch (Exception ex) {
 			log.error("Something went wrong ", ex);
 		}
 	}
+
+	private static List<String> getInputFiles(String[] args) {
+		return Arrays.stream(args)
+				.filter(arg -> !arg.startsWith("--"))
+				.collect(Collectors.toList());
+	}
+
+	private static CommandServer createCommandServer(Environment environment, ClientRegistry clientRegistry) throws IOException {
+		InetSocketAddress address = new InetSocketAddress(environment.getProperty("smsc.server.host", "0.0.0.0"),
+				environment.getProperty("smsc.server.port", Integer.class, 2775));
+		return new CommandServer(address, new StreamingCommandParser(), clientRegistry,
+				environment.getProperty("smsc.server.queue-capacity", Integer.class, 65536),
+				environment.getProperty("smsc.server.max-line-bytes", Integer.class, 1024 * 1024),
+				environment.getProperty("smsc.server.max-pending-bytes", Long.class, 4L * 1024 * 1024));
+	}
+
+	private static CommandFileFollower createCommandFileFollower(Environment environment) throws IOException {
+		return new CommandFileFollower(new StreamingCommandParser(),
+				Paths.get(environment.getProperty("smsc.input.checkpoint", "ingest.checkpoint")),
+				environment.getProperty("smsc.input.poll-interval-millis", Long.class, 100L),
+				environment.getProperty("smsc.input.checkpoint-interval-millis", Long.class, 1000L),
+				environment.getProperty("smsc.input.max-line-bytes", Integer.class, 1024 * 1024));
+	}
+
+	private static MappedCommandFileReader createCommandFileReader(Environment environment) {
+		int parallelism = environment.getProperty("smsc.input.parallelism", Integer.class, Runtime.getRuntime().availableProcessors());
+		int chunkSize = environment.getProperty("smsc.input.chunk-size-bytes", Integer.class, 8 * 1024 * 1024);
+		return new MappedCommandFileReader(new StreamingCommandParser(), parallelism, chunkSize);
+	}
 }
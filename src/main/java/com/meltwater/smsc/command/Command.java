@@ -0,0 +1,62 @@
+package com.meltwater.smsc.command;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+@Getter
+public class Command {
+
+    private final CommandType type;
+    private final String line;
+    private final boolean valid;
+    private final String name;
+    private final String number;
+    private final List<String> targets;
+    private final String message;
+    private final long seconds;
+
+    private Command(CommandType type, String line, boolean valid, String name, String number, List<String> targets, String message, long seconds) {
+        this.type = type;
+        this.line = line;
+        this.valid = valid;
+        this.name = name;
+        this.number = number;
+        this.targets = targets;
+        this.message = message;
+        this.seconds = seconds;
+    }
+
+    public static Command number(String line, String name, String number) {
+        return new Command(CommandType.NUMBER, line, true, name, number, Collections.emptyList(), null, 0);
+    }
+
+    public static Command group(String line, String groupName, List<String> numberPatterns) {
+        return new Command(CommandType.GROUP, line, true, groupName, null, numberPatterns, null, 0);
+    }
+
+    public static Command subscribe(String line, String name) {
+        return new Command(CommandType.SUBSCRIBE, line, true, name, null, Collections.emptyList(), null, 0);
+    }
+
+    public static Command unsubscribe(String line, String name) {
+        return new Command(CommandType.UNSUBSCRIBE, line, true, name, null, Collections.emptyList(), null, 0);
+    }
+
+    public static Command message(String line, String sourceName, List<String> destinations, String message) {
+        return new Command(CommandType.MESSAGE, line, true, sourceName, null, destinations, message, 0);
+    }
+
+    public static Command sleep(String line, long seconds) {
+        return new Command(CommandType.SLEEP, line, true, null, null, Collections.emptyList(), null, seconds);
+    }
+
+    public static Command malformed(CommandType type, String line) {
+        return new Command(type, line, false, null, null, Collections.emptyList(), null, 0);
+    }
+
+    public static Command unknown(String operation, String line) {
+        return new Command(CommandType.UNKNOWN, line, false, operation, null, Collections.emptyList(), null, 0);
+    }
+}
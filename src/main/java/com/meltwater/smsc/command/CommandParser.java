@@ -0,0 +1,6 @@
+package com.meltwater.smsc.command;
+
+public interface CommandParser {
+
+    Command parse(String line);
+}
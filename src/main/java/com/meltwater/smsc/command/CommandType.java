@@ -0,0 +1,27 @@
+package com.meltwater.smsc.command;
+
+public enum CommandType {
+
+    NUMBER("number"),
+    GROUP("group"),
+    SUBSCRIBE("subscribe"),
+    UNSUBSCRIBE("unsubscribe"),
+    MESSAGE("message"),
+    SLEEP("sleep"),
+    UNKNOWN("unknown");
+
+    private final String operation;
+
+    CommandType(String operation) {
+        this.operation = operation;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public String toString() {
+        return operation;
+    }
+}
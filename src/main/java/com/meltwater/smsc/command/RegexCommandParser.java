@@ -0,0 +1,62 @@
+package com.meltwater.smsc.command;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The original regular expression based parser, kept as the reference for {@link StreamingCommandParser}.
+ */
+public class RegexCommandParser implements CommandParser {
+
+    private static final Pattern REGISTER_NUMBER_PATTERN = Pattern.compile("^(number[\\d]+) (\\+[\\d]{11})$");
+    private static final Pattern SUBSCRIBE_NUMBER_PATTERN = Pattern.compile("^(subscribe) (number[\\d]+)$");
+    private static final Pattern UNSUBSCRIBE_NUMBER_PATTERN = Pattern.compile("^(unsubscribe) (number[\\d]+)$");
+    private static final Pattern REGISTER_GROUP_PATTERN = Pattern.compile("^(group[\\d]+) (.*)");
+    private static final Pattern MESSAGE_PATTERN = Pattern.compile("^(message) (number[\\d]+) (.*) \"(.*)\"");
+
+    @Override
+    public Command parse(String line) {
+        int operationEnd = line.indexOf(" ");
+        String operation = line.substring(0, operationEnd < 0 ? line.length() : operationEnd);
+        String sanitizedOperation = operation.replaceAll("\\d", "");
+
+        Matcher matcher;
+        switch (sanitizedOperation) {
+            case "number":
+                matcher = REGISTER_NUMBER_PATTERN.matcher(line);
+                return matcher.find() ? Command.number(line, matcher.group(1), matcher.group(2)) : Command.malformed(CommandType.NUMBER, line);
+            case "group":
+                matcher = REGISTER_GROUP_PATTERN.matcher(line);
+                return matcher.find() ? Command.group(line, matcher.group(1), getNumberPatterns(matcher.group(2))) : Command.malformed(CommandType.GROUP, line);
+            case "subscribe":
+                matcher = SUBSCRIBE_NUMBER_PATTERN.matcher(line);
+                return matcher.find() ? Command.subscribe(line, matcher.group(2)) : Command.malformed(CommandType.SUBSCRIBE, line);
+            case "unsubscribe":
+                matcher = UNSUBSCRIBE_NUMBER_PATTERN.matcher(line);
+                return matcher.find() ? Command.unsubscribe(line, matcher.group(2)) : Command.malformed(CommandType.UNSUBSCRIBE, line);
+            case "message":
+                matcher = MESSAGE_PATTERN.matcher(line);
+                return matcher.find()
+                        ? Command.message(line, matcher.group(2), getNumberPatterns(matcher.group(3)), matcher.group(4))
+                        : Command.malformed(CommandType.MESSAGE, line);
+            case "sleep":
+                return parseSleep(line);
+            default:
+                return Command.unknown(sanitizedOperation, line);
+        }
+    }
+
+    private Command parseSleep(String line) {
+        try {
+            return Command.sleep(line, Long.valueOf(line.split(" ")[1]));
+        } catch (RuntimeException ex) {
+            return Command.malformed(CommandType.SLEEP, line);
+        }
+    }
+
+    private List<String> getNumberPatterns(String string) {
+        return Arrays.asList(string.split(","));
+    }
+}
@@ -0,0 +1,195 @@
+package com.meltwater.smsc.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.meltwater.smsc.command.Syntax.isDigit;
+import static com.meltwater.smsc.command.Syntax.isGroupName;
+import static com.meltwater.smsc.command.Syntax.isNumberName;
+import static com.meltwater.smsc.command.Syntax.isPhoneNumber;
+import static com.meltwater.smsc.command.Syntax.regionEquals;
+
+/**
+ * Single pass parser accepting exactly the lines accepted by {@link RegexCommandParser}.
+ * Only the extracted fields are copied out of the line.
+ */
+public class StreamingCommandParser implements CommandParser {
+
+    private static final char SEPARATOR = ' ';
+    private static final char LIST_SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    @Override
+    public Command parse(String line) {
+        int end = line.length();
+        int operationEnd = line.indexOf(SEPARATOR);
+        if (operationEnd < 0) {
+            operationEnd = end;
+        }
+
+        CommandType type = classify(line, operationEnd);
+        switch (type) {
+            case NUMBER:
+                return parseNumber(line, operationEnd, end);
+            case GROUP:
+                return parseGroup(line, operationEnd, end);
+            case SUBSCRIBE:
+                return parseSubscription(line, operationEnd, end, CommandType.SUBSCRIBE);
+            case UNSUBSCRIBE:
+                return parseSubscription(line, operationEnd, end, CommandType.UNSUBSCRIBE);
+            case MESSAGE:
+                return parseMessage(line, operationEnd, end);
+            case SLEEP:
+                return parseSleep(line, operationEnd, end);
+            default:
+                return Command.unknown(withoutDigits(line, operationEnd), line);
+        }
+    }
+
+    private CommandType classify(String line, int operationEnd) {
+        int first = 0;
+        while (first < operationEnd && isDigit(line.charAt(first))) {
+            first++;
+        }
+        if (first == operationEnd) {
+            return CommandType.UNKNOWN;
+        }
+
+        switch (line.charAt(first)) {
+            case 'n':
+                return classifyAs(line, operationEnd, CommandType.NUMBER);
+            case 'g':
+                return classifyAs(line, operationEnd, CommandType.GROUP);
+            case 'u':
+                return classifyAs(line, operationEnd, CommandType.UNSUBSCRIBE);
+            case 'm':
+                return classifyAs(line, operationEnd, CommandType.MESSAGE);
+            case 's':
+                CommandType subscribe = classifyAs(line, operationEnd, CommandType.SUBSCRIBE);
+                return subscribe != CommandType.UNKNOWN ? subscribe : classifyAs(line, operationEnd, CommandType.SLEEP);
+            default:
+                return CommandType.UNKNOWN;
+        }
+    }
+
+    private CommandType classifyAs(String line, int operationEnd, CommandType candidate) {
+        return equalsIgnoringDigits(line, operationEnd, candidate.getOperation()) ? candidate : CommandType.UNKNOWN;
+    }
+
+    private boolean equalsIgnoringDigits(String line, int operationEnd, String operation) {
+        int matched = 0;
+        for (int i = 0; i < operationEnd; i++) {
+            char character = line.charAt(i);
+            if (isDigit(character)) {
+                continue;
+            }
+            if (matched == operation.length() || operation.charAt(matched) != character) {
+                return false;
+            }
+            matched++;
+        }
+        return matched == operation.length();
+    }
+
+    private Command parseNumber(String line, int operationEnd, int end) {
+        if (operationEnd < end && isNumberName(line, 0, operationEnd) && isPhoneNumber(line, operationEnd + 1, end)) {
+            return Command.number(line, line.substring(0, operationEnd), line.substring(operationEnd + 1));
+        }
+        return Command.malformed(CommandType.NUMBER, line);
+    }
+
+    private Command parseGroup(String line, int operationEnd, int end) {
+        if (operationEnd < end && isGroupName(line, 0, operationEnd)) {
+            return Command.group(line, line.substring(0, operationEnd), split(line, operationEnd + 1, end));
+        }
+        return Command.malformed(CommandType.GROUP, line);
+    }
+
+    private Command parseSubscription(String line, int operationEnd, int end, CommandType type) {
+        if (operationEnd < end && regionEquals(line, 0, operationEnd, type.getOperation()) && isNumberName(line, operationEnd + 1, end)) {
+            String name = line.substring(operationEnd + 1);
+            return type == CommandType.SUBSCRIBE ? Command.subscribe(line, name) : Command.unsubscribe(line, name);
+        }
+        return Command.malformed(type, line);
+    }
+
+    private Command parseMessage(String line, int operationEnd, int end) {
+        if (operationEnd == end || !regionEquals(line, 0, operationEnd, CommandType.MESSAGE.getOperation())) {
+            return Command.malformed(CommandType.MESSAGE, line);
+        }
+
+        int sourceStart = operationEnd + 1;
+        int sourceEnd = line.indexOf(SEPARATOR, sourceStart);
+        if (sourceEnd < 0 || !isNumberName(line, sourceStart, sourceEnd)) {
+            return Command.malformed(CommandType.MESSAGE, line);
+        }
+
+        int destinationsStart = sourceEnd + 1;
+        int messageEnd = line.lastIndexOf(QUOTE);
+        int messageStart = -1;
+        for (int i = messageEnd - 2; i >= destinationsStart; i--) {
+            if (line.charAt(i) == SEPARATOR && line.charAt(i + 1) == QUOTE) {
+                messageStart = i + 2;
+                break;
+            }
+        }
+        if (messageStart < 0) {
+            return Command.malformed(CommandType.MESSAGE, line);
+        }
+
+        return Command.message(line,
+                line.substring(sourceStart, sourceEnd),
+                split(line, destinationsStart, messageStart - 2),
+                line.substring(messageStart, messageEnd));
+    }
+
+    private Command parseSleep(String line, int operationEnd, int end) {
+        int argumentStart = operationEnd + 1;
+        int argumentEnd = line.indexOf(SEPARATOR, argumentStart);
+        if (argumentEnd < 0) {
+            argumentEnd = end;
+        }
+
+        if (argumentStart < argumentEnd) {
+            try {
+                return Command.sleep(line, Long.parseLong(line.substring(argumentStart, argumentEnd)));
+            } catch (NumberFormatException ex) {
+                return Command.malformed(CommandType.SLEEP, line);
+            }
+        }
+        return Command.malformed(CommandType.SLEEP, line);
+    }
+
+    private List<String> split(String line, int from, int to) {
+        int separator = line.indexOf(LIST_SEPARATOR, from);
+        if (separator < 0 || separator >= to) {
+            return Collections.singletonList(line.substring(from, to));
+        }
+
+        List<String> parts = new ArrayList<>();
+        int partStart = from;
+        while (separator >= 0 && separator < to) {
+            parts.add(line.substring(partStart, separator));
+            partStart = separator + 1;
+            separator = line.indexOf(LIST_SEPARATOR, partStart);
+        }
+        parts.add(line.substring(partStart, to));
+
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).isEmpty()) {
+            parts.remove(--size);
+        }
+        return parts;
+    }
+
+    private String withoutDigits(String line, int operationEnd) {
+        StringBuilder operation = new StringBuilder(operationEnd);
+        for (int i = 0; i < operationEnd; i++) {
+            if (!isDigit(line.charAt(i))) {
+                operation.append(line.charAt(i));
+            }
+        }
+        return operation.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.meltwater.smsc.command;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+
+/**
+ * Regex-free checks of the input syntax elements, working on a range of a line without copying it.
+ */
+public final class Syntax {
+
+    public static final String NUMBER_NAME_PREFIX = "number";
+    public static final String GROUP_NAME_PREFIX = "group";
+
+    private static final int PHONE_NUMBER_DIGITS = 11;
+    private static final int MIN_PATTERN_DIGITS = 2;
+
+    private Syntax() {
+    }
+
+    public static boolean isNumberName(CharSequence text) {
+        return isNumberName(text, 0, text.length());
+    }
+
+    public static boolean isNumberName(CharSequence text, int from, int to) {
+        return isPrefixedNumber(text, from, to, NUMBER_NAME_PREFIX);
+    }
+
+    public static boolean isGroupName(CharSequence text) {
+        return isGroupName(text, 0, text.length());
+    }
+
+    public static boolean isGroupName(CharSequence text, int from, int to) {
+        return isPrefixedNumber(text, from, to, GROUP_NAME_PREFIX);
+    }
+
+    public static boolean isPhoneNumber(CharSequence text) {
+        return isPhoneNumber(text, 0, text.length());
+    }
+
+    public static boolean isPhoneNumber(CharSequence text, int from, int to) {
+        return to - from == PHONE_NUMBER_DIGITS + 1 && text.charAt(from) == '+' && isDigits(text, from + 1, to);
+    }
+
+    /**
+     * Checks a number encoded by {@link PhoneNumbers} like {@link #isPhoneNumber(CharSequence)} checks its text.
+     */
+    public static boolean isPhoneNumber(long encoded) {
+        return PhoneNumbers.hasPlusSign(encoded) && PhoneNumbers.digitCount(encoded) == PHONE_NUMBER_DIGITS;
+    }
+
+    public static boolean isNumberPattern(CharSequence text) {
+        int to = text.length();
+        if (to > 0 && text.charAt(to - 1) == '*') {
+            to--;
+        }
+        int digits = to - 1;
+        return digits >= MIN_PATTERN_DIGITS && digits <= PHONE_NUMBER_DIGITS
+                && text.charAt(0) == '+' && isDigits(text, 1, to);
+    }
+
+    public static boolean isDigits(CharSequence text, int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (!isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+
+    public static boolean regionEquals(CharSequence text, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(from + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPrefixedNumber(CharSequence text, int from, int to, String prefix) {
+        int digitsFrom = from + prefix.length();
+        return to > digitsFrom && regionEquals(text, from, digitsFrom, prefix) && isDigits(text, digitsFrom, to);
+    }
+}
@@ -0,0 +1,26 @@
+package com.meltwater.smsc.config;
+
+import com.meltwater.smsc.scheduler.VirtualClock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.Instant;
+
+@Configuration
+public class ClockConfiguration {
+
+    @Bean
+    public Clock clock(@Value("${smsc.clock:system}") String clock,
+                       @Value("${smsc.clock.virtual-start:1970-01-01T00:00:00Z}") String virtualStart) {
+        switch (clock) {
+            case "virtual":
+                return new VirtualClock(Instant.parse(virtualStart));
+            case "system":
+                return Clock.systemUTC();
+            default:
+                throw new IllegalArgumentException("Unknown clock: " + clock);
+        }
+    }
+}
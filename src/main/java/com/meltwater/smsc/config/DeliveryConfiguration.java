@@ -0,0 +1,37 @@
+package com.meltwater.smsc.config;
+
+import com.meltwater.smsc.delivery.ChannelDeliverySink;
+import com.meltwater.smsc.delivery.DeliverySink;
+import com.meltwater.smsc.delivery.NoOpDeliverySink;
+import com.meltwater.smsc.server.ClientDeliverySink;
+import com.meltwater.smsc.server.ClientRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class DeliveryConfiguration {
+
+    @Bean
+    public DeliverySink deliverySink(@Value("${smsc.delivery.sink:console}") String sink,
+                                     @Value("${smsc.delivery.file:deliveries.log}") String file,
+                                     @Value("${smsc.delivery.batch-size-bytes:65536}") int batchSizeBytes,
+                                     @Value("${smsc.delivery.flush-interval-millis:100}") long flushIntervalMillis,
+                                     ClientRegistry clientRegistry) throws IOException {
+        switch (sink) {
+            case "console":
+                return ChannelDeliverySink.console(batchSizeBytes, flushIntervalMillis);
+            case "file":
+                return ChannelDeliverySink.file(Paths.get(file), batchSizeBytes, flushIntervalMillis);
+            case "clients":
+                return new ClientDeliverySink(clientRegistry);
+            case "none":
+                return new NoOpDeliverySink();
+            default:
+                throw new IllegalArgumentException("Unknown delivery sink: " + sink);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.meltwater.smsc.config;
+
+import com.meltwater.smsc.journal.FsyncPolicy;
+import com.meltwater.smsc.journal.NoOpRedeliveryJournal;
+import com.meltwater.smsc.journal.RedeliveryJournal;
+import com.meltwater.smsc.journal.WalRedeliveryJournal;
+import com.meltwater.smsc.journal.WriteAheadLog;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import com.meltwater.smsc.scheduler.ExponentialBackoff;
+import com.meltwater.smsc.scheduler.RedeliveryScheduler;
+import com.meltwater.smsc.scheduler.VirtualClock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.Locale;
+
+@Configuration
+public class RedeliveryConfiguration {
+
+    @Bean
+    public ExponentialBackoff redeliveryBackoff(@Value("${smsc.redelivery.initial-backoff-millis:1000}") long initialBackoffMillis,
+                                                @Value("${smsc.redelivery.backoff-multiplier:2}") double backoffMultiplier,
+                                                @Value("${smsc.redelivery.max-backoff-millis:60000}") long maxBackoffMillis,
+                                                @Value("${smsc.redelivery.backoff-jitter:0.2}") double backoffJitter,
+                                                Clock clock) {
+        double jitter = clock instanceof VirtualClock ? 0 : backoffJitter;
+        return new ExponentialBackoff(initialBackoffMillis, backoffMultiplier, maxBackoffMillis, jitter);
+    }
+
+    @Bean
+    public RedeliveryScheduler redeliveryScheduler(@Value("${smsc.redelivery.tick-millis:100}") long tickMillis,
+                                                   @Value("${smsc.redelivery.wheel-size:512}") int wheelSize,
+                                                   ExponentialBackoff redeliveryBackoff,
+                                                   RedeliveryRepository redeliveryRepository,
+                                                   Clock clock) {
+        return new RedeliveryScheduler(tickMillis, wheelSize, redeliveryBackoff, redeliveryRepository, clock);
+    }
+
+    @Bean
+    public RedeliveryJournal redeliveryJournal(@Value("${smsc.redelivery.journal:none}") String journal,
+                                               @Value("${smsc.redelivery.journal.directory:journal}") String directory,
+                                               @Value("${smsc.redelivery.journal.segment-size-bytes:67108864}") long segmentSizeBytes,
+                                               @Value("${smsc.redelivery.journal.batch-size-bytes:1048576}") int batchSizeBytes,
+                                               @Value("${smsc.redelivery.journal.fsync:interval}") String fsync,
+                                               @Value("${smsc.redelivery.journal.fsync-interval-millis:100}") long fsyncIntervalMillis) throws IOException {
+        switch (journal) {
+            case "wal":
+                FsyncPolicy fsyncPolicy = FsyncPolicy.valueOf(fsync.toUpperCase(Locale.ROOT));
+                return new WalRedeliveryJournal(new WriteAheadLog(Paths.get(directory), "redeliveries", segmentSizeBytes, batchSizeBytes,
+                        fsyncPolicy, fsyncIntervalMillis));
+            case "none":
+                return new NoOpRedeliveryJournal();
+            default:
+                throw new IllegalArgumentException("Unknown redelivery journal: " + journal);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.meltwater.smsc.config;
+
+import com.meltwater.smsc.journal.FsyncPolicy;
+import com.meltwater.smsc.journal.NoOpRegistryJournal;
+import com.meltwater.smsc.journal.RegistryJournal;
+import com.meltwater.smsc.journal.WalRegistryJournal;
+import com.meltwater.smsc.journal.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+@Configuration
+public class RegistryConfiguration {
+
+    @Bean
+    public RegistryJournal registryJournal(@Value("${smsc.registry.journal:none}") String journal,
+                                           @Value("${smsc.registry.journal.directory:journal}") String directory,
+                                           @Value("${smsc.registry.journal.segment-size-bytes:67108864}") long segmentSizeBytes,
+                                           @Value("${smsc.registry.journal.batch-size-bytes:1048576}") int batchSizeBytes,
+                                           @Value("${smsc.registry.journal.fsync:interval}") String fsync,
+                                           @Value("${smsc.registry.journal.fsync-interval-millis:100}") long fsyncIntervalMillis,
+                                           @Value("${smsc.registry.snapshot-interval-millis:60000}") long snapshotIntervalMillis) throws IOException {
+        switch (journal) {
+            case "wal":
+                Path path = Paths.get(directory);
+                FsyncPolicy fsyncPolicy = FsyncPolicy.valueOf(fsync.toUpperCase(Locale.ROOT));
+                return new WalRegistryJournal(new WriteAheadLog(path, "registry", segmentSizeBytes, batchSizeBytes,
+                        fsyncPolicy, fsyncIntervalMillis), path, snapshotIntervalMillis);
+            case "none":
+                return new NoOpRegistryJournal();
+            default:
+                throw new IllegalArgumentException("Unknown registry journal: " + journal);
+        }
+    }
+}
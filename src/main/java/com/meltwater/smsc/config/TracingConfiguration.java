@@ -0,0 +1,29 @@
+package com.meltwater.smsc.config;
+
+import com.meltwater.smsc.tracing.MessageTracer;
+import com.meltwater.smsc.tracing.NoOpMessageTracer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TracingConfiguration {
+
+    private static final String JFR_TRACER = "com.meltwater.smsc.tracing.JfrMessageTracer";
+
+    @Bean
+    public MessageTracer messageTracer(@Value("${smsc.tracing:none}") String tracing) {
+        switch (tracing) {
+            case "jfr":
+                try {
+                    return (MessageTracer) Class.forName(JFR_TRACER).newInstance();
+                } catch (ReflectiveOperationException | LinkageError ex) {
+                    throw new IllegalStateException("JFR tracing needs a JDK with jdk.jfr, both for building and running", ex);
+                }
+            case "none":
+                return new NoOpMessageTracer();
+            default:
+                throw new IllegalArgumentException("Unknown tracing: " + tracing);
+        }
+    }
+}
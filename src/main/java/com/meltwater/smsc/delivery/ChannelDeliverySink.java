@@ -0,0 +1,122 @@
+package com.meltwater.smsc.delivery;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects acknowledgements in a buffer and writes them to a channel in batches,
+ * when the buffer reaches the batch size or when the flush interval elapses.
+ */
+@Slf4j
+public class ChannelDeliverySink implements DeliverySink, Closeable {
+
+    private static final String SEPARATOR = System.lineSeparator();
+
+    private final WritableByteChannel channel;
+    private final int batchSize;
+    private final StringBuilder batch;
+    private final ScheduledExecutorService flusher;
+
+    public ChannelDeliverySink(WritableByteChannel channel, int batchSize, long flushIntervalMillis) {
+        if (batchSize < 1 || flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Batch size and flush interval must be positive");
+        }
+        this.channel = channel;
+        this.batchSize = batchSize;
+        this.batch = new StringBuilder(batchSize + 256);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "delivery-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleAtFixedRate(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static ChannelDeliverySink console(int batchSize, long flushIntervalMillis) {
+        return new ChannelDeliverySink(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), batchSize, flushIntervalMillis);
+    }
+
+    public static ChannelDeliverySink file(Path path, int batchSize, long flushIntervalMillis) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new ChannelDeliverySink(channel, batchSize, flushIntervalMillis);
+    }
+
+    @Override
+    public synchronized void deliver(long sourceNumber, long destinationNumber, String message) {
+        append(batch, sourceNumber, destinationNumber, message);
+        if (batch.length() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Formats the acknowledgements outside the lock, so concurrent callers only serialize on appending them to the batch.
+     */
+    @Override
+    public void deliverAll(long sourceNumber, long[] destinationNumbers, String message) {
+        StringBuilder acknowledgements = new StringBuilder(destinationNumbers.length * (message.length() + 40));
+        for (long destinationNumber : destinationNumbers) {
+            append(acknowledgements, sourceNumber, destinationNumber, message);
+        }
+        synchronized (this) {
+            batch.append(acknowledgements);
+            if (batch.length() >= batchSize) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (batch.length() == 0) {
+            return;
+        }
+        ByteBuffer bytes = Charset.defaultCharset().encode(batch.toString());
+        batch.setLength(0);
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write acknowledgements", ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        flush();
+        if (channel instanceof FileChannel) {
+            channel.close();
+        }
+    }
+
+    private static void append(StringBuilder acknowledgements, long sourceNumber, long destinationNumber, String message) {
+        PhoneNumbers.appendTo(acknowledgements, sourceNumber).append(" -> ");
+        PhoneNumbers.appendTo(acknowledgements, destinationNumber).append(" : ").append(message).append(SEPARATOR);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.error("Scheduled flush of acknowledgements failed", ex);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.meltwater.smsc.delivery;
+
+/**
+ * Acknowledges delivered messages. The numbers are encoded by {@link com.meltwater.smsc.index.PhoneNumbers}
+ * and decoded only when an acknowledgement is written.
+ */
+public interface DeliverySink {
+
+    void deliver(long sourceNumber, long destinationNumber, String message);
+
+    /**
+     * Delivers the same message to every destination, sinks which lock per acknowledgement lock once per call instead.
+     */
+    default void deliverAll(long sourceNumber, long[] destinationNumbers, String message) {
+        for (long destinationNumber : destinationNumbers) {
+            deliver(sourceNumber, destinationNumber, message);
+        }
+    }
+
+    default void flush() {
+    }
+}
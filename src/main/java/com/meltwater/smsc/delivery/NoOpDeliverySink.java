@@ -0,0 +1,11 @@
+package com.meltwater.smsc.delivery;
+
+/**
+ * Discards the acknowledgements, for measuring delivery without output costs.
+ */
+public class NoOpDeliverySink implements DeliverySink {
+
+    @Override
+    public void deliver(long sourceNumber, long destinationNumber, String message) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.meltwater.smsc.execution;
+
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.CommandType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+/**
+ * Executes message commands on worker threads partitioned by the sender, so the messages of a sender keep their order.
+ * Every other command is a barrier: it is executed on the calling thread after all previously submitted messages.
+ */
+@Slf4j
+public class PartitionedCommandExecutor implements AutoCloseable {
+
+    private static final Runnable STOP = () -> { };
+
+    private final Consumer<Command> operation;
+    private final List<BlockingQueue<Runnable>> partitions = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    public PartitionedCommandExecutor(Consumer<Command> operation, int parallelism, int queueCapacity) {
+        if (parallelism < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Parallelism and queue capacity must be positive");
+        }
+        this.operation = operation;
+        for (int i = 0; i < parallelism; i++) {
+            BlockingQueue<Runnable> partition = new ArrayBlockingQueue<>(queueCapacity);
+            Thread worker = new Thread(() -> work(partition), "command-executor-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            partitions.add(partition);
+            workers.add(worker);
+        }
+    }
+
+    public void execute(Command command) {
+        if (command.getType() == CommandType.MESSAGE) {
+            enqueue(partitionOf(command.getName()), () -> operation.accept(command));
+        } else {
+            awaitSubmitted();
+            operation.accept(command);
+        }
+    }
+
+    public void awaitSubmitted() {
+        CountDownLatch drained = new CountDownLatch(partitions.size());
+        partitions.forEach(partition -> enqueue(partition, drained::countDown));
+        try {
+            drained.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for submitted commands", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        awaitSubmitted();
+        partitions.forEach(partition -> enqueue(partition, STOP));
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private BlockingQueue<Runnable> partitionOf(String sourceName) {
+        return partitions.get((Objects.hashCode(sourceName) & Integer.MAX_VALUE) % partitions.size());
+    }
+
+    private void enqueue(BlockingQueue<Runnable> partition, Runnable task) {
+        try {
+            partition.put(task);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting command", ex);
+        }
+    }
+
+    private void work(BlockingQueue<Runnable> partition) {
+        try {
+            Runnable task;
+            while ((task = partition.take()) != STOP) {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    log.error("Command execution failed", ex);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.meltwater.smsc.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Growable bitmap over dense ids. Writers are serialized, readers never lock.
+ */
+public class ConcurrentBitmap {
+
+    private static final int WORD_BITS = 64;
+    private static final int MIN_WORDS = 16;
+    private static final int BATCH_WORDS = 16;
+
+    private volatile AtomicLongArray words = new AtomicLongArray(MIN_WORDS);
+    private int cardinality;
+
+    public boolean get(int index) {
+        AtomicLongArray current = words;
+        int word = index / WORD_BITS;
+        return index >= 0 && word < current.length() && (current.get(word) & bit(index)) != 0;
+    }
+
+    public synchronized boolean set(int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Negative index: " + index);
+        }
+        int word = index / WORD_BITS;
+        ensureCapacity(word);
+        long previous = words.get(word);
+        if ((previous & bit(index)) != 0) {
+            return false;
+        }
+        words.set(word, previous | bit(index));
+        cardinality++;
+        return true;
+    }
+
+    public synchronized boolean clear(int index) {
+        int word = index / WORD_BITS;
+        if (index < 0 || word >= words.length()) {
+            return false;
+        }
+        long previous = words.get(word);
+        if ((previous & bit(index)) == 0) {
+            return false;
+        }
+        words.set(word, previous & ~bit(index));
+        cardinality--;
+        return true;
+    }
+
+    public synchronized int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Visits the set bits of a weakly consistent view, optionally splitting the words across the common pool.
+     */
+    public void forEachSetBit(boolean parallel, IntConsumer action) {
+        AtomicLongArray current = words;
+        IntStream wordIndexes = IntStream.range(0, current.length());
+        (parallel ? wordIndexes.parallel() : wordIndexes).forEach(word -> {
+            long bits = current.get(word);
+            while (bits != 0) {
+                action.accept(word * WORD_BITS + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        });
+    }
+
+    /**
+     * Visits the set bits of a weakly consistent view in batches of the ids within {@value #BATCH_WORDS} words,
+     * optionally splitting the batches across the common pool. Empty batches are skipped.
+     */
+    public void forEachSetBitBatch(boolean parallel, Consumer<int[]> action) {
+        AtomicLongArray current = words;
+        IntStream batches = IntStream.range(0, (current.length() + BATCH_WORDS - 1) / BATCH_WORDS);
+        (parallel ? batches.parallel() : batches).forEach(batch -> {
+            IntStream.Builder ids = IntStream.builder();
+            int end = Math.min(current.length(), (batch + 1) * BATCH_WORDS);
+            for (int word = batch * BATCH_WORDS; word < end; word++) {
+                long bits = current.get(word);
+                while (bits != 0) {
+                    ids.add(word * WORD_BITS + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            int[] batchIds = ids.build().toArray();
+            if (batchIds.length > 0) {
+                action.accept(batchIds);
+            }
+        });
+    }
+
+    /**
+     * Visits in ascending order the set bits of a weakly consistent view which are not set in the excluded bitmap,
+     * comparing a word of each at a time.
+     */
+    public void forEachSetBitNotIn(ConcurrentBitmap excluded, IntConsumer action) {
+        AtomicLongArray current = words;
+        AtomicLongArray excludedWords = excluded.words;
+        for (int word = 0; word < current.length(); word++) {
+            long bits = current.get(word) & ~(word < excludedWords.length() ? excludedWords.get(word) : 0);
+            while (bits != 0) {
+                action.accept(word * WORD_BITS + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    private void ensureCapacity(int word) {
+        if (word < words.length()) {
+            return;
+        }
+        AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, 2 * words.length()));
+        for (int i = 0; i < words.length(); i++) {
+            grown.set(i, words.get(i));
+        }
+        words = grown;
+    }
+
+    private static long bit(int index) {
+        return 1L << (index % WORD_BITS);
+    }
+}
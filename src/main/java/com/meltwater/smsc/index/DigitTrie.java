@@ -0,0 +1,124 @@
+package com.meltwater.smsc.index;
+
+import java.util.function.Consumer;
+
+/**
+ * Trie over phone numbers (digits with an optional '+' sign) with a single value per key.
+ * Prefix lookups visit only the matching subtree, in ascending digit order.
+ */
+public class DigitTrie<V> {
+
+    static final int ALPHABET_SIZE = 11;
+    private static final int PLUS_INDEX = 10;
+
+    private final Node<V> root = new Node<>();
+    private int size;
+
+    public V put(String key, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length(); i++) {
+            int symbol = symbolIndex(key.charAt(i));
+            if (symbol < 0) {
+                throw new IllegalArgumentException("Not a phone number: " + key);
+            }
+            node = node.childOrCreate(symbol);
+        }
+
+        V previous = node.value;
+        node.value = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    public V get(String key) {
+        Node<V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    public V remove(String key) {
+        Node<V> node = find(key);
+        if (node == null || node.value == null) {
+            return null;
+        }
+
+        V previous = node.value;
+        node.value = null;
+        size--;
+        return previous;
+    }
+
+    public void forEachWithPrefix(String prefix, Consumer<? super V> action) {
+        Node<V> node = find(prefix);
+        if (node != null) {
+            forEachInSubtree(node, action);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    Node<V> root() {
+        return root;
+    }
+
+    static int symbolIndex(char symbol) {
+        if (symbol >= '0' && symbol <= '9') {
+            return symbol - '0';
+        }
+        return symbol == '+' ? PLUS_INDEX : -1;
+    }
+
+    static <V> void forEachInSubtree(Node<V> node, Consumer<? super V> action) {
+        if (node.value != null) {
+            action.accept(node.value);
+        }
+        if (node.children != null) {
+            for (Node<V> child : node.children) {
+                if (child != null) {
+                    forEachInSubtree(child, action);
+                }
+            }
+        }
+    }
+
+    private Node<V> find(String key) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            int symbol = symbolIndex(key.charAt(i));
+            if (symbol < 0) {
+                return null;
+            }
+            node = node.child(symbol);
+        }
+        return node;
+    }
+
+    static final class Node<V> {
+
+        private Node<V>[] children;
+        private V value;
+
+        Node<V> child(int symbol) {
+            return children == null ? null : children[symbol];
+        }
+
+        V value() {
+            return value;
+        }
+
+        private Node<V> childOrCreate(int symbol) {
+            if (children == null) {
+                @SuppressWarnings("unchecked")
+                Node<V>[] created = (Node<V>[]) new Node<?>[ALPHABET_SIZE];
+                children = created;
+            }
+            if (children[symbol] == null) {
+                children[symbol] = new Node<>();
+            }
+            return children[symbol];
+        }
+    }
+}
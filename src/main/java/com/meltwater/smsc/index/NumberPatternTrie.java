@@ -0,0 +1,126 @@
+package com.meltwater.smsc.index;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Compiled set of group number patterns. A pattern ending with '*' matches every number starting with it,
+ * any other pattern matches only the exact number. Overlapping patterns collapse into the widest one,
+ * so every number is matched at most once.
+ */
+public class NumberPatternTrie {
+
+    private static final String WILDCARD = "*";
+
+    private final Node root = new Node();
+
+    public static NumberPatternTrie compile(Collection<String> patterns) {
+        NumberPatternTrie trie = new NumberPatternTrie();
+        patterns.forEach(trie::add);
+        return trie;
+    }
+
+    public void add(String pattern) {
+        boolean wildcard = pattern.endsWith(WILDCARD);
+        String digits = wildcard ? pattern.replace(WILDCARD, "") : pattern;
+
+        if (!isPhoneNumberPrefix(digits)) {
+            return;
+        }
+
+        Node node = root;
+        for (int i = 0; i < digits.length(); i++) {
+            if (node.wildcard) {
+                return;
+            }
+            node = node.childOrCreate(DigitTrie.symbolIndex(digits.charAt(i)));
+        }
+
+        if (wildcard) {
+            node.wildcard = true;
+            node.children = null;
+        } else {
+            node.exact = true;
+        }
+    }
+
+    public boolean matches(String number) {
+        Node node = root;
+        for (int i = 0; i < number.length(); i++) {
+            if (node.wildcard) {
+                return true;
+            }
+            int symbol = DigitTrie.symbolIndex(number.charAt(i));
+            node = symbol < 0 ? null : node.child(symbol);
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.wildcard || node.exact;
+    }
+
+    /**
+     * Matches a number encoded by {@link PhoneNumbers}.
+     */
+    public boolean matches(long number) {
+        return matches(PhoneNumbers.decode(number));
+    }
+
+    public boolean isEmpty() {
+        return !root.wildcard && !root.exact && root.children == null;
+    }
+
+    public <V> void forEachMatch(DigitTrie<V> index, Consumer<? super V> action) {
+        forEachMatch(root, index.root(), action);
+    }
+
+    private static boolean isPhoneNumberPrefix(String digits) {
+        for (int i = 0; i < digits.length(); i++) {
+            if (DigitTrie.symbolIndex(digits.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private <V> void forEachMatch(Node pattern, DigitTrie.Node<V> numbers, Consumer<? super V> action) {
+        if (pattern.wildcard) {
+            DigitTrie.forEachInSubtree(numbers, action);
+            return;
+        }
+
+        if (pattern.exact && numbers.value() != null) {
+            action.accept(numbers.value());
+        }
+        if (pattern.children != null) {
+            for (int symbol = 0; symbol < DigitTrie.ALPHABET_SIZE; symbol++) {
+                Node patternChild = pattern.children[symbol];
+                DigitTrie.Node<V> numberChild = patternChild == null ? null : numbers.child(symbol);
+                if (numberChild != null) {
+                    forEachMatch(patternChild, numberChild, action);
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+
+        private Node[] children;
+        private boolean exact;
+        private boolean wildcard;
+
+        private Node child(int symbol) {
+            return children == null ? null : children[symbol];
+        }
+
+        private Node childOrCreate(int symbol) {
+            if (children == null) {
+                children = new Node[DigitTrie.ALPHABET_SIZE];
+            }
+            if (children[symbol] == null) {
+                children[symbol] = new Node();
+            }
+            return children[symbol];
+        }
+    }
+}
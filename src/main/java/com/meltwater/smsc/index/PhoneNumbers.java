@@ -0,0 +1,78 @@
+package com.meltwater.smsc.index;
+
+/**
+ * Packs a phone number (an optional leading '+' and up to 17 digits) into a single non-zero long:
+ * the digits as a value, a sign flag and the digit count, so leading zeros survive the round trip.
+ * Numbers are passed around encoded and only decoded when written out.
+ */
+public final class PhoneNumbers {
+
+    private static final int MAX_DIGITS = 17;
+    private static final int LENGTH_BITS = 5;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final long PLUS_FLAG = 1L << LENGTH_BITS;
+    private static final int VALUE_SHIFT = LENGTH_BITS + 1;
+
+    private PhoneNumbers() {
+    }
+
+    public static boolean isEncodable(String number) {
+        int start = signLength(number);
+        int digits = number.length() - start;
+        if (digits < 1 || digits > MAX_DIGITS) {
+            return false;
+        }
+        for (int i = start; i < number.length(); i++) {
+            if (number.charAt(i) < '0' || number.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long encode(String number) {
+        if (!isEncodable(number)) {
+            throw new IllegalArgumentException("Not a phone number: " + number);
+        }
+
+        int start = signLength(number);
+        long value = 0;
+        for (int i = start; i < number.length(); i++) {
+            value = value * 10 + (number.charAt(i) - '0');
+        }
+        return value << VALUE_SHIFT | (start == 1 ? PLUS_FLAG : 0) | (number.length() - start);
+    }
+
+    public static String decode(long encoded) {
+        return appendTo(new StringBuilder(MAX_DIGITS + 1), encoded).toString();
+    }
+
+    /**
+     * Appends the decoded number without creating a string for it.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long encoded) {
+        if (hasPlusSign(encoded)) {
+            builder.append('+');
+        }
+        int end = builder.length() + digitCount(encoded);
+        builder.setLength(end);
+        long value = encoded >>> VALUE_SHIFT;
+        for (int i = end - 1; i >= end - digitCount(encoded); i--) {
+            builder.setCharAt(i, (char) ('0' + value % 10));
+            value /= 10;
+        }
+        return builder;
+    }
+
+    public static int digitCount(long encoded) {
+        return (int) (encoded & LENGTH_MASK);
+    }
+
+    public static boolean hasPlusSign(long encoded) {
+        return (encoded & PLUS_FLAG) != 0;
+    }
+
+    private static int signLength(String number) {
+        return !number.isEmpty() && number.charAt(0) == '+' ? 1 : 0;
+    }
+}
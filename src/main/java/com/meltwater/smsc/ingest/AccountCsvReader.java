@@ -0,0 +1,49 @@
+package com.meltwater.smsc.ingest;
+
+import com.meltwater.smsc.exception.InvalidAccountArgumentsException;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Account;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads accounts for bulk registration from a CSV file with a name and a number per line, e.g. {@code number1,+36991212321}.
+ * Blank lines and a {@code name,number} header are skipped. Numbers are only checked to be encodable here,
+ * the accounts are validated when registered.
+ */
+public class AccountCsvReader {
+
+    private static final String HEADER = "name,number";
+    private static final int READ_BUFFER_CHARS = 1024 * 1024;
+
+    public List<Account> read(Path path) throws IOException {
+        List<Account> accounts = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(Files.newBufferedReader(path, StandardCharsets.UTF_8), READ_BUFFER_CHARS)) {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || lineNumber == 1 && line.equalsIgnoreCase(HEADER)) {
+                    continue;
+                }
+                int separator = line.indexOf(',');
+                if (separator < 0 || line.indexOf(',', separator + 1) >= 0) {
+                    throw new InvalidAccountArgumentsException("Expected name and number on line " + lineNumber + " of " + path);
+                }
+                String number = line.substring(separator + 1).trim();
+                if (!PhoneNumbers.isEncodable(number)) {
+                    throw new InvalidAccountArgumentsException("Invalid number on line " + lineNumber + " of " + path);
+                }
+                accounts.add(new Account(line.substring(0, separator).trim(), PhoneNumbers.encode(number)));
+            }
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,280 @@
+package com.meltwater.smsc.ingest;
+
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.CommandParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Follows command files which are appended to continuously. Only the bytes appended since the last read are read,
+ * and only up to the last line feed, a line being written is read once it is complete. A directory is followed as a spool
+ * directory: every file in it, including the ones created later. Appends are noticed through a {@link WatchService}
+ * and by polling at the given interval, which bounds the latency where watching is slow or unsupported.
+ * Lines longer than the given limit are skipped with a warning.
+ * <p>
+ * The offsets read are saved in a checkpoint file at most once per checkpoint interval, after the commit callback
+ * returned, so a restart resumes after the last checkpoint and never reads a file from its start again.
+ */
+@Slf4j
+public class CommandFileFollower implements Closeable {
+
+    private static final byte LINE_FEED = '\n';
+    private static final char CARRIAGE_RETURN = '\r';
+    private static final int READ_BUFFER_BYTES = 1024 * 1024;
+
+    private final CommandParser commandParser;
+    private final Path checkpointFile;
+    private final long pollIntervalMillis;
+    private final long checkpointIntervalMillis;
+    private final int maxLineBytes;
+    private final WatchService watchService;
+    private final Map<Path, Long> offsets;
+    private final Map<Path, Long> skippedLineOffsets = new HashMap<>();
+    private final Set<Path> files = new TreeSet<>();
+    private final Set<Path> spoolDirectories = new HashSet<>();
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    private ByteBuffer buffer;
+    private volatile boolean closed;
+
+    public CommandFileFollower(CommandParser commandParser, Path checkpointFile, long pollIntervalMillis, long checkpointIntervalMillis,
+                               int maxLineBytes) throws IOException {
+        if (pollIntervalMillis < 1 || checkpointIntervalMillis < 0 || maxLineBytes < 1) {
+            throw new IllegalArgumentException("Poll interval and line length must be positive and checkpoint interval not negative");
+        }
+        this.commandParser = commandParser;
+        this.checkpointFile = checkpointFile.toAbsolutePath().normalize();
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        this.maxLineBytes = maxLineBytes;
+        this.buffer = ByteBuffer.allocate(Math.min(READ_BUFFER_BYTES, maxLineBytes));
+        this.offsets = readCheckpoint(checkpointFile);
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Passes the commands appended to the files and spool directories to the consumer until the follower is closed.
+     * The commit callback is run before every checkpoint and must return once the commands passed on are processed.
+     */
+    public void follow(Collection<Path> paths, Consumer<Command> consumer, Runnable commit) throws IOException, InterruptedException {
+        for (Path path : paths) {
+            add(path.toAbsolutePath().normalize());
+        }
+        long lastCheckpoint = System.currentTimeMillis();
+        boolean uncommitted = false;
+        while (!closed) {
+            boolean progressed = false;
+            for (Path file : new ArrayList<>(files)) {
+                progressed |= readAppended(file, consumer);
+            }
+            uncommitted |= progressed;
+            long now = System.currentTimeMillis();
+            if (uncommitted && now - lastCheckpoint >= checkpointIntervalMillis) {
+                commit.run();
+                writeCheckpoint();
+                uncommitted = false;
+                lastCheckpoint = now;
+            }
+            if (!progressed) {
+                awaitChanges();
+            }
+        }
+        if (uncommitted) {
+            commit.run();
+            writeCheckpoint();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    private void add(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            spoolDirectories.add(path);
+            watch(path);
+            scan(path);
+        } else {
+            files.add(path);
+            watch(path.getParent());
+        }
+    }
+
+    private void watch(Path directory) throws IOException {
+        if (watchedDirectories.add(directory)) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+    }
+
+    private void scan(Path spoolDirectory) throws IOException {
+        try (Stream<Path> spooled = Files.list(spoolDirectory)) {
+            spooled.filter(this::isSpooled).forEach(files::add);
+        }
+    }
+
+    private boolean isSpooled(Path file) {
+        return Files.isRegularFile(file) && !file.equals(checkpointFile) && !file.equals(temporaryCheckpointFile());
+    }
+
+    private Path temporaryCheckpointFile() {
+        return checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+    }
+
+    private boolean readAppended(Path file, Consumer<Command> consumer) throws IOException {
+        long offset = offsets.getOrDefault(file, 0L);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                log.warn("{} was truncated to {} bytes, following it from the start", file, size);
+                offset = 0;
+                offsets.put(file, offset);
+                skippedLineOffsets.remove(file);
+            }
+            long readOffset = skippedLineOffsets.getOrDefault(file, offset);
+            if (size <= readOffset) {
+                return false;
+            }
+
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer, readOffset + buffer.position());
+            } while (read > 0 && buffer.hasRemaining());
+            if (readOffset != offset) {
+                return skipLine(file, readOffset);
+            }
+            int lineEnd = buffer.position();
+            while (lineEnd > 0 && buffer.get(lineEnd - 1) != LINE_FEED) {
+                lineEnd--;
+            }
+            if (lineEnd == 0) {
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+                if (buffer.capacity() >= maxLineBytes) {
+                    log.warn("Skipping line longer than {} bytes at offset {} of {}", maxLineBytes, offset, file);
+                    skippedLineOffsets.put(file, offset + buffer.position());
+                } else {
+                    buffer = ByteBuffer.allocate(Math.min(2 * buffer.capacity(), maxLineBytes));
+                }
+                return true;
+            }
+
+            buffer.flip().limit(lineEnd);
+            parse(buffer, consumer);
+            offsets.put(file, offset + lineEnd);
+            return true;
+        } catch (NoSuchFileException ex) {
+            if (spoolDirectories.contains(file.getParent())) {
+                files.remove(file);
+                offsets.remove(file);
+                skippedLineOffsets.remove(file);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Looks for the end of a skipped line in the bytes read from the offset. The line is skipped once its end is found,
+     * the offset saved stays at its start until then.
+     */
+    private boolean skipLine(Path file, long readOffset) {
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) == LINE_FEED) {
+                offsets.put(file, readOffset + i + 1);
+                skippedLineOffsets.remove(file);
+                return true;
+            }
+        }
+        skippedLineOffsets.put(file, readOffset + buffer.position());
+        return true;
+    }
+
+    private void parse(ByteBuffer lines, Consumer<Command> consumer) {
+        String text = StandardCharsets.UTF_8.decode(lines).toString();
+        int lineStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == LINE_FEED || text.charAt(i) == CARRIAGE_RETURN) {
+                if (i > lineStart) {
+                    consumer.accept(commandParser.parse(text.substring(lineStart, i)));
+                }
+                lineStart = i + 1;
+            }
+        }
+    }
+
+    private void awaitChanges() throws IOException, InterruptedException {
+        try {
+            WatchKey key = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            if (key == null) {
+                for (Path spoolDirectory : spoolDirectories) {
+                    scan(spoolDirectory);
+                }
+            }
+            for (; key != null; key = watchService.poll()) {
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW && spoolDirectories.contains(directory)) {
+                        scan(directory);
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && spoolDirectories.contains(directory)) {
+                        Path created = directory.resolve((Path) event.context());
+                        if (isSpooled(created)) {
+                            files.add(created);
+                        }
+                    }
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException ex) {
+            closed = true;
+        }
+    }
+
+    private static Map<Path, Long> readCheckpoint(Path checkpointFile) throws IOException {
+        Map<Path, Long> offsets = new TreeMap<>();
+        if (Files.exists(checkpointFile)) {
+            for (String line : Files.readAllLines(checkpointFile, StandardCharsets.UTF_8)) {
+                int separator = line.indexOf('\t');
+                offsets.put(Paths.get(line.substring(separator + 1)), Long.parseLong(line.substring(0, separator)));
+            }
+        }
+        return offsets;
+    }
+
+    private void writeCheckpoint() throws IOException {
+        StringBuilder checkpoint = new StringBuilder();
+        offsets.forEach((file, offset) -> checkpoint.append(offset).append('\t').append(file).append('\n'));
+        Path temporary = temporaryCheckpointFile();
+        Files.write(temporary, checkpoint.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
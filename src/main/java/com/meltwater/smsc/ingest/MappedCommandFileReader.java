@@ -0,0 +1,121 @@
+package com.meltwater.smsc.ingest;
+
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.CommandParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Reads a command file of any size by memory mapping it in chunks cut at line boundaries.
+ * Chunks are decoded and parsed in parallel, the commands are handed over in file order on the calling thread.
+ */
+@Slf4j
+public class MappedCommandFileReader {
+
+    private static final byte LINE_FEED = '\n';
+    private static final char CARRIAGE_RETURN = '\r';
+
+    private final CommandParser commandParser;
+    private final int parallelism;
+    private final int chunkSize;
+
+    public MappedCommandFileReader(CommandParser commandParser, int parallelism, int chunkSize) {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        }
+        this.commandParser = commandParser;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    public void read(Path path, Consumer<Command> consumer) throws IOException {
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "command-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            log.info("Reading commands from {} ({} bytes)", path, channel.size());
+            Deque<Future<List<Command>>> parsedChunks = new ArrayDeque<>();
+
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                ByteBuffer chunk = nextChunk(channel, position, size);
+                position += chunk.remaining();
+
+                parsedChunks.addLast(parsers.submit(() -> parse(chunk)));
+                if (parsedChunks.size() > 2 * parallelism) {
+                    apply(parsedChunks.removeFirst(), consumer);
+                }
+            }
+            while (!parsedChunks.isEmpty()) {
+                apply(parsedChunks.removeFirst(), consumer);
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    private ByteBuffer nextChunk(FileChannel channel, long position, long size) throws IOException {
+        long length = Math.min(chunkSize, size - position);
+        while (true) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (position + length == size) {
+                return mapped;
+            }
+
+            for (int i = (int) length - 1; i >= 0; i--) {
+                if (mapped.get(i) == LINE_FEED) {
+                    mapped.limit(i + 1);
+                    return mapped;
+                }
+            }
+            length = Math.min(Math.min(2 * length, Integer.MAX_VALUE), size - position);
+        }
+    }
+
+    private List<Command> parse(ByteBuffer chunk) {
+        String text = StandardCharsets.UTF_8.decode(chunk).toString();
+        List<Command> commands = new ArrayList<>();
+
+        int lineStart = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == LINE_FEED || text.charAt(i) == CARRIAGE_RETURN) {
+                if (i > lineStart) {
+                    commands.add(commandParser.parse(text.substring(lineStart, i)));
+                }
+                lineStart = i + 1;
+            }
+        }
+        return commands;
+    }
+
+    private void apply(Future<List<Command>> parsedChunk, Consumer<Command> consumer) throws IOException {
+        try {
+            parsedChunk.get().forEach(consumer);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading commands", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Failed to parse commands", ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.meltwater.smsc.journal;
+
+/**
+ * When the write-ahead log forces written batches to the storage device.
+ */
+public enum FsyncPolicy {
+
+    /** Leave it to the operating system: fastest, a machine crash may lose the records in the page cache. */
+    NEVER,
+    /** Force at most once per fsync interval: a crash loses at most that interval. */
+    INTERVAL,
+    /** Force every group commit, appenders waiting for durability return once their batch is on disk. */
+    ALWAYS
+}
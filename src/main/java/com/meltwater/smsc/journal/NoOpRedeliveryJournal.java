@@ -0,0 +1,30 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.model.PendingFanOut;
+import com.meltwater.smsc.model.Redelivery;
+
+/**
+ * Keeps the pending redeliveries in memory only.
+ */
+public class NoOpRedeliveryJournal implements RedeliveryJournal {
+
+    @Override
+    public long enqueued(Redelivery redelivery) {
+        return NOT_LOGGED;
+    }
+
+    @Override
+    public long delivered(Redelivery redelivery) {
+        return NOT_LOGGED;
+    }
+
+    @Override
+    public long fanOutEnqueued(PendingFanOut fanOut, long[] recipients) {
+        return NOT_LOGGED;
+    }
+
+    @Override
+    public long fanOutTaken(PendingFanOut fanOut, long[] recipients) {
+        return NOT_LOGGED;
+    }
+}
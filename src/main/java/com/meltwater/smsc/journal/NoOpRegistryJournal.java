@@ -0,0 +1,35 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.model.Account;
+
+import java.util.List;
+
+/**
+ * Keeps the registry in memory only.
+ */
+public class NoOpRegistryJournal implements RegistryJournal {
+
+    @Override
+    public void accountSaved(Account account) {
+    }
+
+    @Override
+    public void accountDeleted(Account account) {
+    }
+
+    @Override
+    public void groupSaved(String groupName, List<String> numberPatterns) {
+    }
+
+    @Override
+    public void groupDeleted(String groupName) {
+    }
+
+    @Override
+    public void subscriptionSaved(String name, long number) {
+    }
+
+    @Override
+    public void subscriptionDeleted(String name) {
+    }
+}
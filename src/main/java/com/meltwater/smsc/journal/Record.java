@@ -0,0 +1,103 @@
+package com.meltwater.smsc.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Binary encoding of a journal record: a type byte followed by fixed width numbers and length prefixed UTF-8 strings.
+ */
+final class Record {
+
+    private static final long NO_INSTANT = Long.MIN_VALUE;
+
+    private byte[] bytes = new byte[64];
+    private int length;
+
+    Record(byte type) {
+        bytes[length++] = type;
+    }
+
+    Record putLong(long value) {
+        ensureCapacity(Long.BYTES);
+        ByteBuffer.wrap(bytes, length, Long.BYTES).putLong(value);
+        length += Long.BYTES;
+        return this;
+    }
+
+    Record putInt(int value) {
+        ensureCapacity(Integer.BYTES);
+        ByteBuffer.wrap(bytes, length, Integer.BYTES).putInt(value);
+        length += Integer.BYTES;
+        return this;
+    }
+
+    Record putInstant(Instant instant) {
+        return putLong(instant != null ? instant.toEpochMilli() : NO_INSTANT);
+    }
+
+    Record putString(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        putInt(encoded.length);
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+        return this;
+    }
+
+    Record putLongs(long[] values) {
+        putInt(values.length);
+        for (long value : values) {
+            putLong(value);
+        }
+        return this;
+    }
+
+    Record putStrings(Collection<String> values) {
+        putInt(values.size());
+        values.forEach(this::putString);
+        return this;
+    }
+
+    byte[] toBytes() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    static String getString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static List<String> getStrings(ByteBuffer record) {
+        int count = record.getInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(getString(record));
+        }
+        return strings;
+    }
+
+    static long[] getLongs(ByteBuffer record) {
+        long[] values = new long[record.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = record.getLong();
+        }
+        return values;
+    }
+
+    static Instant getInstant(ByteBuffer record) {
+        long epochMilli = record.getLong();
+        return epochMilli != NO_INSTANT ? Instant.ofEpochMilli(epochMilli) : null;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + additional));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.model.PendingFanOut;
+import com.meltwater.smsc.model.Redelivery;
+
+import java.time.Instant;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Records the changes of the pending redeliveries, so they survive a restart. Recipients are given by their encoded numbers.
+ * The returned positions can be awaited to be durable.
+ */
+public interface RedeliveryJournal {
+
+    long NOT_LOGGED = 0;
+
+    long enqueued(Redelivery redelivery);
+
+    long delivered(Redelivery redelivery);
+
+    long fanOutEnqueued(PendingFanOut fanOut, long[] recipients);
+
+    long fanOutTaken(PendingFanOut fanOut, long[] recipients);
+
+    default void awaitDurable(long position) {
+    }
+
+    default void recover(Recovery recovery) {
+    }
+
+    /**
+     * Rewrites the journal with the pending items only when it holds far more records than those.
+     * Called between changes, when every change so far is journaled.
+     */
+    default void compact(Recovery pending) {
+    }
+
+    /**
+     * The pending redeliveries as rebuilt from the journal, also providing the live ones when the journal is compacted.
+     */
+    interface Recovery {
+
+        void enqueued(Redelivery redelivery);
+
+        void delivered(Redelivery redelivery);
+
+        PendingFanOut fanOutEnqueued(long source, long[] recipients, String message, Instant creationDate);
+
+        void fanOutTaken(PendingFanOut fanOut, long[] recipients);
+
+        long count();
+
+        void forEachPending(Consumer<Redelivery> redeliveries, BiConsumer<PendingFanOut, long[]> fanOuts);
+    }
+}
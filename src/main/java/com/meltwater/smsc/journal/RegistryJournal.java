@@ -0,0 +1,48 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.model.Account;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Records the changes of the registry (accounts, groups and subscriptions), so it survives a restart without replaying
+ * the input. Each repository takes its recovered part over once, when it is created.
+ */
+public interface RegistryJournal {
+
+    void accountSaved(Account account);
+
+    void accountDeleted(Account account);
+
+    /**
+     * Records a batch of saved accounts, a durable journal waits for the batch once instead of for each account.
+     */
+    default void accountsSaved(Collection<Account> accounts) {
+        accounts.forEach(this::accountSaved);
+    }
+
+    void groupSaved(String groupName, List<String> numberPatterns);
+
+    void groupDeleted(String groupName);
+
+    void subscriptionSaved(String name, long number);
+
+    void subscriptionDeleted(String name);
+
+    default void subscriptionsSaved(Map<String, Long> numbersByName) {
+        numbersByName.forEach(this::subscriptionSaved);
+    }
+
+    default void recoverAccounts(Consumer<Account> accounts) {
+    }
+
+    default void recoverGroups(BiConsumer<String, List<String>> groups) {
+    }
+
+    default void recoverSubscriptions(BiConsumer<String, Long> subscriptions) {
+    }
+}
@@ -0,0 +1,181 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.model.Account;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Registry state folded from the journal: accounts in registration order, groups and subscriptions, together with
+ * the number of journal segments it covers. Phone numbers are kept encoded. Written as a compact binary file with a trailing checksum,
+ * read back through a memory mapping.
+ */
+final class RegistrySnapshot {
+
+    static final byte ACCOUNT_SAVED = 1;
+    static final byte ACCOUNT_DELETED = 2;
+    static final byte GROUP_SAVED = 3;
+    static final byte GROUP_DELETED = 4;
+    static final byte SUBSCRIPTION_SAVED = 5;
+    static final byte SUBSCRIPTION_DELETED = 6;
+
+    private static final int MAGIC = 0x534D5343;
+    private static final int VERSION = 2;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private final Map<Long, Account> accountsByNumber = new LinkedHashMap<>();
+    private final Map<String, List<String>> groups = new LinkedHashMap<>();
+    private final Map<String, Long> subscriptions = new LinkedHashMap<>();
+    private long coveredSegments;
+
+    Collection<Account> getAccounts() {
+        return accountsByNumber.values();
+    }
+
+    Map<String, List<String>> getGroups() {
+        return groups;
+    }
+
+    Map<String, Long> getSubscriptions() {
+        return subscriptions;
+    }
+
+    long getCoveredSegments() {
+        return coveredSegments;
+    }
+
+    void setCoveredSegments(long coveredSegments) {
+        this.coveredSegments = coveredSegments;
+    }
+
+    void apply(ByteBuffer record) {
+        byte type = record.get();
+        switch (type) {
+            case ACCOUNT_SAVED:
+                Account account = new Account(Record.getString(record), record.getLong());
+                accountsByNumber.remove(account.getNumber());
+                accountsByNumber.put(account.getNumber(), account);
+                break;
+            case ACCOUNT_DELETED:
+                Account deleted = new Account(Record.getString(record), record.getLong());
+                accountsByNumber.remove(deleted.getNumber(), deleted);
+                break;
+            case GROUP_SAVED:
+                groups.put(Record.getString(record), Record.getStrings(record));
+                break;
+            case GROUP_DELETED:
+                groups.remove(Record.getString(record));
+                break;
+            case SUBSCRIPTION_SAVED:
+                subscriptions.put(Record.getString(record), record.getLong());
+                break;
+            case SUBSCRIPTION_DELETED:
+                subscriptions.remove(Record.getString(record));
+                break;
+            default:
+                throw new IllegalStateException("Unknown registry journal record type " + type);
+        }
+    }
+
+    static RegistrySnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (bytes.limit() < Integer.BYTES) {
+                throw new IOException("Truncated registry snapshot " + path);
+            }
+            ByteBuffer content = bytes.duplicate();
+            content.limit(bytes.limit() - Integer.BYTES);
+            CRC32 checksum = new CRC32();
+            checksum.update(content.duplicate());
+            if ((int) checksum.getValue() != bytes.getInt(content.limit())) {
+                throw new IOException("Corrupt registry snapshot " + path);
+            }
+            if (content.getInt() != MAGIC || content.getInt() != VERSION) {
+                throw new IOException("Not a registry snapshot of version " + VERSION + ": " + path);
+            }
+
+            RegistrySnapshot snapshot = new RegistrySnapshot();
+            snapshot.coveredSegments = content.getLong();
+            for (int i = content.getInt(); i > 0; i--) {
+                Account account = new Account(readString(content), content.getLong());
+                snapshot.accountsByNumber.put(account.getNumber(), account);
+            }
+            for (int i = content.getInt(); i > 0; i--) {
+                String groupName = readString(content);
+                List<String> numberPatterns = new ArrayList<>();
+                for (int j = content.getInt(); j > 0; j--) {
+                    numberPatterns.add(readString(content));
+                }
+                snapshot.groups.put(groupName, numberPatterns);
+            }
+            for (int i = content.getInt(); i > 0; i--) {
+                snapshot.subscriptions.put(readString(content), content.getLong());
+            }
+            return snapshot;
+        }
+    }
+
+    void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            OutputStream file = Channels.newOutputStream(channel);
+            CRC32 checksum = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, checksum), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(coveredSegments);
+            out.writeInt(accountsByNumber.size());
+            for (Account account : accountsByNumber.values()) {
+                writeString(out, account.getName());
+                out.writeLong(account.getNumber());
+            }
+            out.writeInt(groups.size());
+            for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+                writeString(out, group.getKey());
+                out.writeInt(group.getValue().size());
+                for (String numberPattern : group.getValue()) {
+                    writeString(out, numberPattern);
+                }
+            }
+            out.writeInt(subscriptions.size());
+            for (Map.Entry<String, Long> subscription : subscriptions.entrySet()) {
+                writeString(out, subscription.getKey());
+                out.writeLong(subscription.getValue());
+            }
+            out.flush();
+            new DataOutputStream(file).writeInt((int) checksum.getValue());
+            channel.force(true);
+        }
+    }
+
+    private static String readString(ByteBuffer content) {
+        byte[] bytes = new byte[Short.toUnsignedInt(content.getShort())];
+        content.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Registry entry too long for a snapshot: " + value.substring(0, 64) + "...");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
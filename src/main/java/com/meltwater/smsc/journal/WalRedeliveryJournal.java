@@ -0,0 +1,178 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.model.PendingFanOut;
+import com.meltwater.smsc.model.Redelivery;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Journals the pending redeliveries to a {@link WriteAheadLog}: enqueued and delivered redeliveries,
+ * fan-outs with their recipients and the recipients taken out of them. Fan-outs are referred to by a journal id.
+ * Recovery replays the log. Whenever it holds far more records than pending items, on recovery or later on,
+ * it is rewritten with the pending ones only.
+ */
+@Slf4j
+public class WalRedeliveryJournal implements RedeliveryJournal, Closeable {
+
+    private static final byte ENQUEUED = 1;
+    private static final byte DELIVERED = 2;
+    private static final byte FAN_OUT_ENQUEUED = 3;
+    private static final byte FAN_OUT_TAKEN = 4;
+
+    private static final int COMPACTION_RATIO = 2;
+    private static final long MIN_RECORDS_TO_COMPACT = 1 << 16;
+
+    private final WriteAheadLog writeAheadLog;
+    private final Map<PendingFanOut, Long> fanOutIds = new IdentityHashMap<>();
+    private long nextFanOutId;
+    private long compactedRecords;
+    private long compactedPosition;
+
+    public WalRedeliveryJournal(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    @Override
+    public long enqueued(Redelivery redelivery) {
+        return writeAheadLog.append(encodeEnqueued(redelivery));
+    }
+
+    @Override
+    public long delivered(Redelivery redelivery) {
+        return writeAheadLog.append(new Record(DELIVERED)
+                .putLong(redelivery.getSource())
+                .putLong(redelivery.getDestination())
+                .putString(redelivery.getMessage())
+                .toBytes());
+    }
+
+    @Override
+    public synchronized long fanOutEnqueued(PendingFanOut fanOut, long[] recipients) {
+        long id = nextFanOutId++;
+        fanOutIds.put(fanOut, id);
+        return writeAheadLog.append(encodeFanOut(id, fanOut, recipients));
+    }
+
+    @Override
+    public synchronized long fanOutTaken(PendingFanOut fanOut, long[] recipients) {
+        Long id = fanOut.isSettled() ? fanOutIds.remove(fanOut) : fanOutIds.get(fanOut);
+        if (id == null) {
+            throw new IllegalArgumentException("Fan-out was not journaled: " + fanOut);
+        }
+        return writeAheadLog.append(new Record(FAN_OUT_TAKEN).putLong(id).putLongs(recipients).toBytes());
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        writeAheadLog.awaitDurable(position);
+    }
+
+    @Override
+    public synchronized void recover(Recovery recovery) {
+        Map<Long, PendingFanOut> recoveredFanOuts = new HashMap<>();
+        try {
+            long replayed = writeAheadLog.replay(record -> replay(record, recovery, recoveredFanOuts));
+            recoveredFanOuts.forEach((id, fanOut) -> {
+                if (!fanOut.isSettled()) {
+                    fanOutIds.put(fanOut, id);
+                }
+                nextFanOutId = Math.max(nextFanOutId, id + 1);
+            });
+
+            log.info("Recovered {} pending redeliveries and fan-outs from {} journal records", recovery.count(), replayed);
+            compactedRecords = replayed;
+            compactedPosition = writeAheadLog.position();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to recover pending redeliveries", ex);
+        }
+        compact(recovery);
+    }
+
+    @Override
+    public synchronized void compact(Recovery pending) {
+        long records = compactedRecords + writeAheadLog.position() - compactedPosition;
+        long pendingCount = pending.count();
+        if (records <= COMPACTION_RATIO * pendingCount + MIN_RECORDS_TO_COMPACT) {
+            return;
+        }
+        try {
+            rewrite(pending);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to compact the redelivery journal", ex);
+        }
+        compactedRecords = pendingCount;
+        compactedPosition = writeAheadLog.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeAheadLog.close();
+    }
+
+    private void rewrite(Recovery recovery) throws IOException {
+        fanOutIds.clear();
+        nextFanOutId = 0;
+        writeAheadLog.rewrite(records -> recovery.forEachPending(
+                redelivery -> records.accept(encodeEnqueued(redelivery)),
+                (fanOut, recipients) -> {
+                    long id = nextFanOutId++;
+                    fanOutIds.put(fanOut, id);
+                    records.accept(encodeFanOut(id, fanOut, recipients));
+                }));
+    }
+
+    private static void replay(ByteBuffer record, Recovery recovery, Map<Long, PendingFanOut> fanOuts) {
+        byte type = record.get();
+        switch (type) {
+            case ENQUEUED:
+                recovery.enqueued(new Redelivery(record.getLong(), record.getLong(), Record.getString(record), Record.getInstant(record)));
+                break;
+            case DELIVERED:
+                recovery.delivered(new Redelivery(record.getLong(), record.getLong(), Record.getString(record)));
+                break;
+            case FAN_OUT_ENQUEUED:
+                long id = record.getLong();
+                long source = record.getLong();
+                String message = Record.getString(record);
+                Instant creationDate = Record.getInstant(record);
+                fanOuts.put(id, recovery.fanOutEnqueued(source, Record.getLongs(record), message, creationDate));
+                break;
+            case FAN_OUT_TAKEN:
+                PendingFanOut fanOut = fanOuts.get(record.getLong());
+                long[] recipients = Record.getLongs(record);
+                if (fanOut != null) {
+                    recovery.fanOutTaken(fanOut, recipients);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown redelivery journal record type " + type);
+        }
+    }
+
+    private static byte[] encodeEnqueued(Redelivery redelivery) {
+        return new Record(ENQUEUED)
+                .putLong(redelivery.getSource())
+                .putLong(redelivery.getDestination())
+                .putString(redelivery.getMessage())
+                .putInstant(redelivery.getCreationDate())
+                .toBytes();
+    }
+
+    private static byte[] encodeFanOut(long id, PendingFanOut fanOut, long[] recipients) {
+        return new Record(FAN_OUT_ENQUEUED)
+                .putLong(id)
+                .putLong(fanOut.getSource())
+                .putString(fanOut.getMessage())
+                .putInstant(fanOut.getCreationDate())
+                .putLongs(recipients)
+                .toBytes();
+    }
+}
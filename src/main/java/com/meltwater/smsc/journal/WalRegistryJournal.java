@@ -0,0 +1,212 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.model.Account;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Journals the registry to a {@link WriteAheadLog} and periodically folds the sealed segments into a {@link RegistrySnapshot}
+ * on a background thread, so writers only ever append. On creation the latest snapshot is mapped
+ * and only the segments written after it are replayed.
+ */
+@Slf4j
+public class WalRegistryJournal implements RegistryJournal, Closeable {
+
+    private static final String SNAPSHOT_PREFIX = "registry-";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile(Pattern.quote(SNAPSHOT_PREFIX) + "(\\d+)" + Pattern.quote(SNAPSHOT_SUFFIX));
+
+    private final WriteAheadLog writeAheadLog;
+    private final Path directory;
+    private final Object snapshotLock = new Object();
+    private final ScheduledExecutorService snapshotter;
+    private RegistrySnapshot recovered;
+    private long snapshotPosition;
+
+    public WalRegistryJournal(WriteAheadLog writeAheadLog, Path directory, long snapshotIntervalMillis) throws IOException {
+        if (snapshotIntervalMillis < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        this.writeAheadLog = writeAheadLog;
+        this.directory = Files.createDirectories(directory);
+
+        List<Path> snapshots = snapshots();
+        for (Path stale : snapshots.subList(0, Math.max(0, snapshots.size() - 1))) {
+            Files.delete(stale);
+        }
+        recovered = snapshots.isEmpty() ? new RegistrySnapshot() : RegistrySnapshot.read(snapshots.get(snapshots.size() - 1));
+        long replayed = writeAheadLog.replay(recovered.getCoveredSegments(), recovered::apply);
+        snapshotPosition = replayed > 0 ? -1 : 0;
+        log.info("Recovered {} accounts, {} groups and {} subscriptions, replaying {} journal records after the snapshot",
+                recovered.getAccounts().size(), recovered.getGroups().size(), recovered.getSubscriptions().size(), replayed);
+
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "registry-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void accountSaved(Account account) {
+        append(accountSavedRecord(account));
+    }
+
+    @Override
+    public void accountsSaved(Collection<Account> accounts) {
+        long position = -1;
+        for (Account account : accounts) {
+            position = writeAheadLog.append(accountSavedRecord(account).toBytes());
+        }
+        if (position >= 0) {
+            writeAheadLog.awaitDurable(position);
+        }
+    }
+
+    @Override
+    public void accountDeleted(Account account) {
+        append(new Record(RegistrySnapshot.ACCOUNT_DELETED).putString(account.getName()).putLong(account.getNumber()));
+    }
+
+    @Override
+    public void groupSaved(String groupName, List<String> numberPatterns) {
+        append(new Record(RegistrySnapshot.GROUP_SAVED).putString(groupName).putStrings(numberPatterns));
+    }
+
+    @Override
+    public void groupDeleted(String groupName) {
+        append(new Record(RegistrySnapshot.GROUP_DELETED).putString(groupName));
+    }
+
+    @Override
+    public void subscriptionSaved(String name, long number) {
+        append(subscriptionSavedRecord(name, number));
+    }
+
+    @Override
+    public void subscriptionsSaved(Map<String, Long> numbersByName) {
+        long position = -1;
+        for (Map.Entry<String, Long> subscription : numbersByName.entrySet()) {
+            position = writeAheadLog.append(subscriptionSavedRecord(subscription.getKey(), subscription.getValue()).toBytes());
+        }
+        if (position >= 0) {
+            writeAheadLog.awaitDurable(position);
+        }
+    }
+
+    @Override
+    public void subscriptionDeleted(String name) {
+        append(new Record(RegistrySnapshot.SUBSCRIPTION_DELETED).putString(name));
+    }
+
+    @Override
+    public synchronized void recoverAccounts(Consumer<Account> accounts) {
+        recovered.getAccounts().forEach(accounts);
+        recovered.getAccounts().clear();
+    }
+
+    @Override
+    public synchronized void recoverGroups(BiConsumer<String, List<String>> groups) {
+        recovered.getGroups().forEach(groups);
+        recovered.getGroups().clear();
+    }
+
+    @Override
+    public synchronized void recoverSubscriptions(BiConsumer<String, Long> subscriptions) {
+        recovered.getSubscriptions().forEach(subscriptions);
+        recovered.getSubscriptions().clear();
+    }
+
+    /**
+     * Folds the journal written since the latest snapshot into a new one and deletes the covered segments.
+     * Appenders are not blocked, the segment being written is sealed and a new one started instead.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long position = writeAheadLog.position();
+            if (position == snapshotPosition) {
+                return;
+            }
+            long sealedSegments = writeAheadLog.roll();
+            List<Path> previousSnapshots = snapshots();
+            RegistrySnapshot snapshot = previousSnapshots.isEmpty() ? new RegistrySnapshot()
+                    : RegistrySnapshot.read(previousSnapshots.get(previousSnapshots.size() - 1));
+            long folded = writeAheadLog.read(snapshot.getCoveredSegments(), sealedSegments, snapshot::apply);
+            snapshot.setCoveredSegments(sealedSegments);
+
+            Path path = directory.resolve(String.format("%s%010d%s", SNAPSHOT_PREFIX, sealedSegments, SNAPSHOT_SUFFIX));
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            snapshot.write(temporary);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Path previous : previousSnapshots) {
+                if (!previous.equals(path)) {
+                    Files.delete(previous);
+                }
+            }
+            writeAheadLog.deleteSegmentsBefore(sealedSegments);
+            snapshotPosition = position;
+            log.info("Wrote registry snapshot {} folding {} journal records", path, folded);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        writeAheadLog.close();
+    }
+
+    private void append(Record record) {
+        writeAheadLog.awaitDurable(writeAheadLog.append(record.toBytes()));
+    }
+
+    private static Record accountSavedRecord(Account account) {
+        return new Record(RegistrySnapshot.ACCOUNT_SAVED).putString(account.getName()).putLong(account.getNumber());
+    }
+
+    private static Record subscriptionSavedRecord(String name, long number) {
+        return new Record(RegistrySnapshot.SUBSCRIPTION_SAVED).putString(name).putLong(number);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException ex) {
+            log.error("Writing registry snapshot failed", ex);
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                if (SNAPSHOT_NAME.matcher(path.getFileName().toString()).matches()) {
+                    snapshots.add(path);
+                }
+            });
+        }
+        snapshots.sort(null);
+        return snapshots;
+    }
+}
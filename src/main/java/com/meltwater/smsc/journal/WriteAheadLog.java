@@ -0,0 +1,482 @@
+package com.meltwater.smsc.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of checksummed records in numbered segment files, written by a single committer thread:
+ * records appended while a batch is being written go out together with the next batch (group commit).
+ * The existing segments are replayed before appending, a torn record at the tail of the log is cut off.
+ * A compacted generation can replace the log at any time, older generations are deleted once it is in place.
+ * Alternatively the log can be rolled to a new segment, so the sealed ones can be folded into a snapshot and deleted.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final String name;
+    private final Pattern segmentName;
+    private final long segmentBytes;
+    private final int maxBatchBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+
+    private long generation;
+    private long nextSegmentIndex;
+    private FileChannel segment;
+    private long segmentSize;
+    private Thread committer;
+
+    private ByteBuffer pending;
+    private ByteBuffer committing;
+    private long appended;
+    private long written;
+    private long durable;
+    private long lastFsyncMillis;
+    private boolean rollRequested;
+    private long sealedSegments;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Snapshot of the live records written as the compacted generation of the log.
+     */
+    public interface Snapshot {
+
+        void writeTo(Consumer<byte[]> log);
+    }
+
+    public WriteAheadLog(Path directory, String name, long segmentBytes, int maxBatchBytes, FsyncPolicy fsyncPolicy,
+                         long fsyncIntervalMillis) throws IOException {
+        if (segmentBytes < 1 || segmentBytes > Integer.MAX_VALUE / 2 || maxBatchBytes < 1 || fsyncIntervalMillis < 1) {
+            throw new IllegalArgumentException("Segment size, batch size and fsync interval must be positive, segments below 1 GiB");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.name = name;
+        this.segmentName = Pattern.compile(Pattern.quote(name) + "-(\\d+)-(\\d+)\\.wal");
+        this.segmentBytes = segmentBytes;
+        this.maxBatchBytes = maxBatchBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.pending = ByteBuffer.allocate(maxBatchBytes);
+        this.committing = ByteBuffer.allocate(maxBatchBytes);
+
+        deleteLeftovers();
+    }
+
+    /**
+     * Hands the payload of every record over in log order, returns the number of records replayed.
+     */
+    public long replay(Consumer<ByteBuffer> consumer) throws IOException {
+        return replay(0, consumer);
+    }
+
+    /**
+     * Replays the segments from the given index on, the ones before it are covered elsewhere and deleted.
+     */
+    public synchronized long replay(long fromSegmentIndex, Consumer<ByteBuffer> consumer) throws IOException {
+        deleteSegmentsBefore(fromSegmentIndex);
+        List<Path> segments = segments(generation);
+        long replayed = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            replayed += replay(segments.get(i), i == segments.size() - 1, consumer);
+        }
+        nextSegmentIndex = segments.isEmpty() ? fromSegmentIndex : segmentIndex(segments.get(segments.size() - 1)) + 1;
+        log.info("Replayed {} records from {} segments of {}", replayed, segments.size(), name);
+        return replayed;
+    }
+
+    /**
+     * Hands the payload of every record in the sealed segments of the index range over in log order.
+     */
+    public long read(long fromSegmentIndex, long toSegmentIndex, Consumer<ByteBuffer> consumer) throws IOException {
+        long read = 0;
+        for (Path path : segments(generation)) {
+            long index = segmentIndex(path);
+            if (index >= fromSegmentIndex && index < toSegmentIndex) {
+                read += replay(path, false, consumer);
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Closes the segment being written, records appended later go to a new segment. Returns the index of that segment,
+     * all segments before it are sealed.
+     */
+    public synchronized long roll() {
+        if (committer == null) {
+            return nextSegmentIndex;
+        }
+        rollRequested = true;
+        notifyAll();
+        while (rollRequested) {
+            ensureCommitting();
+            awaitChange();
+        }
+        return sealedSegments;
+    }
+
+    public synchronized void deleteSegmentsBefore(long segmentIndex) throws IOException {
+        for (Path path : segments(generation)) {
+            if (segmentIndex(path) < segmentIndex) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Position of the last appended record, positions start over when the log is opened.
+     */
+    public synchronized long position() {
+        return appended;
+    }
+
+    /**
+     * Replaces the log with a single segment of the snapshot, which has to cover every record appended so far.
+     * The appended records are written out first; the caller has to hold further appends off until it returns.
+     */
+    public synchronized void rewrite(Snapshot snapshot) throws IOException {
+        roll();
+        Path temporary = directory.resolve(name + "-" + (generation + 1) + TEMPORARY_SUFFIX);
+        ByteBuffer buffer = ByteBuffer.allocate(maxBatchBytes);
+        long[] rewritten = {0};
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            try {
+                snapshot.writeTo(payload -> {
+                    try {
+                        if (buffer.remaining() < HEADER_BYTES + payload.length) {
+                            writeFully(channel, buffer);
+                        }
+                        ByteBuffer target = buffer.remaining() >= HEADER_BYTES + payload.length ? buffer
+                                : ByteBuffer.allocate(HEADER_BYTES + payload.length);
+                        encode(target, payload);
+                        if (target != buffer) {
+                            writeFully(channel, target);
+                        }
+                        rewritten[0]++;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+
+        List<Path> replaced = segments(generation);
+        generation++;
+        Files.move(temporary, segmentPath(generation, 0), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+        for (Path path : replaced) {
+            Files.delete(path);
+        }
+        nextSegmentIndex = 1;
+        log.info("Rewrote {} as generation {} of {} records", name, generation, rewritten[0]);
+    }
+
+    /**
+     * Appends a record and returns its position, blocking while a full batch is waiting to be written.
+     */
+    public synchronized long append(byte[] payload) {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Empty records are not supported");
+        }
+        ensureCommitting();
+        while (pending.position() >= maxBatchBytes) {
+            awaitChange();
+            ensureCommitting();
+        }
+        if (pending.remaining() < HEADER_BYTES + payload.length) {
+            ByteBuffer grown = ByteBuffer.allocate(pending.position() + HEADER_BYTES + payload.length);
+            pending.flip();
+            pending = grown.put(pending);
+        }
+        encode(pending, payload);
+        appended++;
+        notifyAll();
+        return appended;
+    }
+
+    /**
+     * Blocks until the record at the position is forced to disk when every commit is forced, returns immediately otherwise.
+     */
+    public synchronized void awaitDurable(long position) {
+        if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        while (durable < position) {
+            ensureCommitting();
+            awaitChange();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread stopped;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stopped = committer;
+            notifyAll();
+        }
+        if (stopped != null) {
+            try {
+                stopped.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (segment != null) {
+            segment.force(false);
+            segment.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void ensureCommitting() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log " + name + " failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log " + name + " is closed");
+        }
+        if (committer == null) {
+            committer = new Thread(this::commit, name + "-committer");
+            committer.setDaemon(true);
+            committer.start();
+        }
+    }
+
+    private void awaitChange() {
+        try {
+            wait();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-ahead log", ex);
+        }
+    }
+
+    private void commit() {
+        try {
+            while (true) {
+                long batchEnd;
+                boolean roll;
+                synchronized (this) {
+                    while (pending.position() == 0 && !closed && !rollRequested && !isFsyncDue()) {
+                        wait(written > durable && fsyncPolicy == FsyncPolicy.INTERVAL ? Math.max(1, millisUntilFsync()) : 0);
+                    }
+                    if (pending.position() == 0 && closed) {
+                        return;
+                    }
+                    ByteBuffer batch = pending;
+                    pending = committing;
+                    committing = batch;
+                    batchEnd = appended;
+                    roll = rollRequested;
+                }
+
+                write(committing);
+                if (committing.capacity() > maxBatchBytes) {
+                    committing = ByteBuffer.allocate(maxBatchBytes);
+                }
+                boolean forced = segment != null && (roll || fsyncPolicy == FsyncPolicy.ALWAYS
+                        || fsyncPolicy == FsyncPolicy.INTERVAL && millisUntilFsync() == 0);
+                if (forced) {
+                    segment.force(false);
+                    lastFsyncMillis = System.currentTimeMillis();
+                }
+                if (roll && segment != null) {
+                    segment.close();
+                    segment = null;
+                }
+
+                synchronized (this) {
+                    written = batchEnd;
+                    if (forced) {
+                        durable = batchEnd;
+                    }
+                    if (roll) {
+                        sealedSegments = nextSegmentIndex;
+                        rollRequested = false;
+                    }
+                    notifyAll();
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Writing {} failed", name, ex);
+            synchronized (this) {
+                failure = ex;
+                notifyAll();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isFsyncDue() {
+        return fsyncPolicy == FsyncPolicy.INTERVAL && written > durable && millisUntilFsync() == 0;
+    }
+
+    private long millisUntilFsync() {
+        return Math.max(0, lastFsyncMillis + fsyncIntervalMillis - System.currentTimeMillis());
+    }
+
+    private void write(ByteBuffer batch) throws IOException {
+        if (batch.position() == 0) {
+            return;
+        }
+        if (segment == null || segmentSize > 0 && segmentSize + batch.position() > segmentBytes) {
+            if (segment != null) {
+                if (fsyncPolicy != FsyncPolicy.NEVER) {
+                    segment.force(false);
+                }
+                segment.close();
+            }
+            segment = FileChannel.open(segmentPath(generation, nextSegmentIndex++), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            segmentSize = 0;
+        }
+        segmentSize += batch.position();
+        writeFully(segment, batch);
+    }
+
+    private long replay(Path path, boolean last, Consumer<ByteBuffer> consumer) throws IOException {
+        long replayed = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 checksum = new CRC32();
+            while (records.hasRemaining()) {
+                int start = records.position();
+                int length = records.remaining() >= HEADER_BYTES ? records.getInt() : -1;
+                if (length < 1 || length > records.remaining() - Integer.BYTES) {
+                    truncate(channel, path, start, last);
+                    break;
+                }
+                int expectedChecksum = records.getInt();
+                ByteBuffer payload = records.slice();
+                payload.limit(length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != expectedChecksum) {
+                    truncate(channel, path, start, last);
+                    break;
+                }
+                consumer.accept(payload.asReadOnlyBuffer());
+                records.position(records.position() + length);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private void truncate(FileChannel channel, Path path, long validBytes, boolean last) throws IOException {
+        if (!last) {
+            throw new IOException("Corrupt record in " + path + " at offset " + validBytes);
+        }
+        log.warn("Cutting off torn record at offset {} of {}", validBytes, path);
+        channel.truncate(validBytes);
+        channel.force(true);
+    }
+
+    private void deleteLeftovers() throws IOException {
+        List<Path> stale = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                String fileName = path.getFileName().toString();
+                Matcher matcher = segmentName.matcher(fileName);
+                if (matcher.matches()) {
+                    generation = Math.max(generation, Long.parseLong(matcher.group(1)));
+                } else if (fileName.startsWith(name + "-") && fileName.endsWith(TEMPORARY_SUFFIX)) {
+                    stale.add(path);
+                }
+            });
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                Matcher matcher = segmentName.matcher(path.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) < generation) {
+                    stale.add(path);
+                }
+            });
+        }
+        for (Path path : stale) {
+            log.info("Deleting stale write-ahead log file {}", path);
+            Files.delete(path);
+        }
+    }
+
+    private List<Path> segments(long segmentGeneration) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.forEach(path -> {
+                Matcher matcher = segmentName.matcher(path.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) == segmentGeneration) {
+                    segments.add(path);
+                }
+            });
+            segments.sort((first, second) -> Long.compare(segmentIndex(first), segmentIndex(second)));
+            return segments;
+        }
+    }
+
+    private long segmentIndex(Path path) {
+        Matcher matcher = segmentName.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a segment of " + name + ": " + path);
+        }
+        return Long.parseLong(matcher.group(2));
+    }
+
+    private Path segmentPath(long segmentGeneration, long segmentIndex) {
+        return directory.resolve(String.format("%s-%08d-%010d.wal", name, segmentGeneration, segmentIndex));
+    }
+
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            log.debug("Directory {} cannot be forced on this platform", directory, ex);
+        }
+    }
+
+    private static void encode(ByteBuffer target, byte[] payload) {
+        CRC32 checksum = new CRC32();
+        checksum.update(payload, 0, payload.length);
+        target.putInt(payload.length).putInt((int) checksum.getValue()).put(payload);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,114 @@
+package com.meltwater.smsc.metrics;
+
+import com.meltwater.smsc.command.CommandType;
+import com.meltwater.smsc.model.PendingFanOut;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import com.meltwater.smsc.service.GroupMembershipCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes the {@link SmscMetrics} together with the redelivery backlog and the group cache statistics as an MBean,
+ * and logs them as one compact line periodically.
+ */
+@Component
+@ManagedResource(objectName = "com.meltwater.smsc:type=Metrics", description = "Delivery, redelivery and fan-out metrics")
+@Slf4j
+public class MetricsReporter {
+
+    private final SmscMetrics metrics;
+    private final RedeliveryRepository redeliveryRepository;
+    private final GroupMembershipCache groupMembershipCache;
+
+    public MetricsReporter(SmscMetrics metrics, RedeliveryRepository redeliveryRepository, GroupMembershipCache groupMembershipCache) {
+        this.metrics = metrics;
+        this.redeliveryRepository = redeliveryRepository;
+        this.groupMembershipCache = groupMembershipCache;
+    }
+
+    @ManagedAttribute(description = "Executed commands by type")
+    public Map<String, Long> getCommandCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (CommandType type : CommandType.values()) {
+            counts.put(type.getOperation(), metrics.getCommandCount(type));
+        }
+        return counts;
+    }
+
+    @ManagedAttribute(description = "Delivered messages")
+    public long getDeliveries() {
+        return metrics.getDeliveries();
+    }
+
+    @ManagedAttribute(description = "Scheduled redelivery attempts")
+    public long getRedeliveryAttempts() {
+        return metrics.getRedeliveryAttempts();
+    }
+
+    @ManagedAttribute(description = "Pending redeliveries")
+    public long getRedeliveryBacklog() {
+        return redeliveryRepository.count();
+    }
+
+    @ManagedAttribute(description = "Recipients of pending fan-outs not yet materialized")
+    public long getPendingFanOutRecipients() {
+        return redeliveryRepository.findAllFanOuts().stream().mapToLong(PendingFanOut::countOutstanding).sum();
+    }
+
+    @ManagedAttribute(description = "Group member lookups served from the cache")
+    public long getGroupCacheHits() {
+        return groupMembershipCache.getHitCount();
+    }
+
+    @ManagedAttribute(description = "Group member lookups resolved from the patterns")
+    public long getGroupCacheMisses() {
+        return groupMembershipCache.getMissCount();
+    }
+
+    @ManagedAttribute(description = "Median group resolution time in microseconds")
+    public double getGroupResolutionP50Micros() {
+        return metrics.getGroupResolutionNanos().percentile(50) / 1e3;
+    }
+
+    @ManagedAttribute(description = "99th percentile group resolution time in microseconds")
+    public double getGroupResolutionP99Micros() {
+        return metrics.getGroupResolutionNanos().percentile(99) / 1e3;
+    }
+
+    @ManagedAttribute(description = "Median delivery latency from message creation in milliseconds")
+    public long getDeliveryLatencyP50Millis() {
+        return metrics.getDeliveryLatencyMillis().percentile(50);
+    }
+
+    @ManagedAttribute(description = "99th percentile delivery latency from message creation in milliseconds")
+    public long getDeliveryLatencyP99Millis() {
+        return metrics.getDeliveryLatencyMillis().percentile(99);
+    }
+
+    @ManagedOperation(description = "Compact summary of all metrics")
+    public String summary() {
+        StringBuilder commands = new StringBuilder();
+        getCommandCounts().forEach((type, count) -> {
+            if (count > 0) {
+                commands.append(commands.length() == 0 ? "" : " ").append(type).append('=').append(count);
+            }
+        });
+        return String.format("commands [%s] deliveries %d redelivery attempts %d backlog %d+%d fan-out, "
+                        + "group resolution p50/p99 %.1f/%.1f us (cache %d/%d), delivery latency p50/p99 %d/%d ms",
+                commands, getDeliveries(), getRedeliveryAttempts(), getRedeliveryBacklog(), getPendingFanOutRecipients(),
+                getGroupResolutionP50Micros(), getGroupResolutionP99Micros(), getGroupCacheHits(), getGroupCacheHits() + getGroupCacheMisses(),
+                getDeliveryLatencyP50Millis(), getDeliveryLatencyP99Millis());
+    }
+
+    @Scheduled(fixedRateString = "${smsc.metrics.dump-interval-millis:60000}", initialDelayString = "${smsc.metrics.dump-interval-millis:60000}")
+    public void dump() {
+        log.info(summary());
+    }
+}
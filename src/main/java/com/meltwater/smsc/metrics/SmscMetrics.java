@@ -0,0 +1,66 @@
+package com.meltwater.smsc.metrics;
+
+import com.meltwater.smsc.command.CommandType;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms updated on the hot paths; recording neither locks nor allocates.
+ * Delivery latency is measured in milliseconds from the creation of the message on the application clock.
+ */
+@Component
+public class SmscMetrics {
+
+    private final Clock clock;
+    private final LongAdder[] commands = new LongAdder[CommandType.values().length];
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder redeliveryAttempts = new LongAdder();
+    private final LatencyHistogram groupResolutionNanos = new LatencyHistogram();
+    private final LatencyHistogram deliveryLatencyMillis = new LatencyHistogram();
+
+    public SmscMetrics(Clock clock) {
+        this.clock = clock;
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = new LongAdder();
+        }
+    }
+
+    public void commandExecuted(CommandType type) {
+        commands[type.ordinal()].increment();
+    }
+
+    public void delivered(long creationMillis) {
+        deliveries.increment();
+        deliveryLatencyMillis.record(clock.millis() - creationMillis);
+    }
+
+    public void redeliveryAttempted() {
+        redeliveryAttempts.increment();
+    }
+
+    public void groupResolved(long nanos) {
+        groupResolutionNanos.record(nanos);
+    }
+
+    public long getCommandCount(CommandType type) {
+        return commands[type.ordinal()].sum();
+    }
+
+    public long getDeliveries() {
+        return deliveries.sum();
+    }
+
+    public long getRedeliveryAttempts() {
+        return redeliveryAttempts.sum();
+    }
+
+    public LatencyHistogram getGroupResolutionNanos() {
+        return groupResolutionNanos;
+    }
+
+    public LatencyHistogram getDeliveryLatencyMillis() {
+        return deliveryLatencyMillis;
+    }
+}
@@ -1,13 +1,21 @@
 package com.meltwater.smsc.model;
 
+import com.meltwater.smsc.index.PhoneNumbers;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+/**
+ * A registered name with its phone number, encoded by {@link PhoneNumbers}.
+ */
 @Data
 @AllArgsConstructor
 public class Account {
 
     private final String name;
-    private final String number;
+    private final long number;
 
+    @Override
+    public String toString() {
+        return "Account(name=" + name + ", number=" + PhoneNumbers.decode(number) + ")";
+    }
 }
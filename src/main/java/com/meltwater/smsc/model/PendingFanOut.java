@@ -0,0 +1,70 @@
+package com.meltwater.smsc.model;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * A message to many recipients stored once: the recipient number ids are kept sorted and a bitmap marks the ones still waiting for it.
+ * Single redeliveries are only created when a recipient is taken out.
+ */
+public class PendingFanOut {
+
+    @Getter
+    private final long source;
+    @Getter
+    private final String message;
+    @Getter
+    private final Instant creationDate;
+    private final int[] recipientIds;
+    private final BitSet outstanding;
+
+    public PendingFanOut(long source, int[] recipientIds, String message, Instant creationDate) {
+        this.source = source;
+        this.message = message;
+        this.creationDate = creationDate;
+        this.recipientIds = Arrays.stream(recipientIds).sorted().distinct().toArray();
+        this.outstanding = new BitSet(this.recipientIds.length);
+        this.outstanding.set(0, this.recipientIds.length);
+    }
+
+    public synchronized boolean take(int recipientId) {
+        int index = Arrays.binarySearch(recipientIds, recipientId);
+        if (index < 0 || !outstanding.get(index)) {
+            return false;
+        }
+        outstanding.clear(index);
+        return true;
+    }
+
+    public synchronized int[] takeAll(IntPredicate ready) {
+        int[] taken = new int[outstanding.cardinality()];
+        int count = 0;
+        for (int i = outstanding.nextSetBit(0); i >= 0; i = outstanding.nextSetBit(i + 1)) {
+            if (ready.test(recipientIds[i])) {
+                outstanding.clear(i);
+                taken[count++] = recipientIds[i];
+            }
+        }
+        return Arrays.copyOf(taken, count);
+    }
+
+    public synchronized int[] outstandingRecipientIds() {
+        return outstanding.stream().map(i -> recipientIds[i]).toArray();
+    }
+
+    public synchronized int countOutstanding() {
+        return outstanding.cardinality();
+    }
+
+    public synchronized boolean isSettled() {
+        return outstanding.isEmpty();
+    }
+
+    public Redelivery redeliveryTo(long recipient) {
+        return new Redelivery(source, recipient, message, creationDate);
+    }
+}
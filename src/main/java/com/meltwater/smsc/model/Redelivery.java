@@ -1,5 +1,6 @@
 package com.meltwater.smsc.model;
 
+import com.meltwater.smsc.index.PhoneNumbers;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -7,15 +8,23 @@ import lombok.RequiredArgsConstructor;
 
 import java.time.Instant;
 
+/**
+ * A message waiting for its source and destination to be subscribed, the numbers are encoded by {@link PhoneNumbers}.
+ */
 @Data
 @RequiredArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(exclude = "creationDate")
 public class Redelivery {
 
-    private final String source;
-    private final String destination;
+    private final long source;
+    private final long destination;
     private final String message;
     private Instant creationDate;
 
+    @Override
+    public String toString() {
+        return "Redelivery(source=" + PhoneNumbers.decode(source) + ", destination=" + PhoneNumbers.decode(destination)
+                + ", message=" + message + ", creationDate=" + creationDate + ")";
+    }
 }
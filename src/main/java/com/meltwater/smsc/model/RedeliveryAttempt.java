@@ -0,0 +1,14 @@
+package com.meltwater.smsc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RedeliveryAttempt {
+
+    private final Redelivery redelivery;
+    private final int attempt;
+    private final long nextAttemptMillis;
+
+}
@@ -1,51 +1,41 @@
 package com.meltwater.smsc.repository;
 
+import com.meltwater.smsc.index.NumberPatternTrie;
 import com.meltwater.smsc.model.Account;
-import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.LongConsumer;
 
-@Repository
-public class AccountRepository {
+/**
+ * Registered accounts, looked up by their numbers encoded by {@link com.meltwater.smsc.index.PhoneNumbers}
+ * or by a prefix of the number text.
+ */
+public interface AccountRepository {
 
-    private final List<Account> accounts = new ArrayList();
+    void save(Account account);
 
-    public void save(Account account) {
-        accounts.add(account);
+    default void saveAll(Collection<Account> accounts) {
+        accounts.forEach(this::save);
     }
 
-    public void delete(Account account) {
-        accounts.remove(account);
-    }
+    void delete(Account account);
 
-    public List<Account> findAll() {
-        return accounts;
-    }
+    List<Account> findAll();
 
-    public Optional<Account> findByNumber(String number) {
-        return accounts.stream()
-                .filter(ac -> number.equals(ac.getNumber()))
-                .findFirst();
-    }
+    Optional<Account> findByNumber(long number);
 
-    public Optional<Account> findByName(String name) {
-        return accounts.stream()
-                .filter(ac -> name.equals(ac.getName()))
-                .findFirst();
-    }
+    Optional<Account> findByName(String name);
 
-    public List<Account> findAllByNumbers(List<String> numbers) {
-        ArrayList<Account> filteredAccounts = new ArrayList<>(this.accounts);
-        filteredAccounts.retainAll(numbers);
-        return filteredAccounts;
-    }
+    List<Account> findAllByNumbers(long[] numbers);
 
-    public List<Account> findByNumbersLike(String number) {
-        return accounts.stream()
-                .filter(a -> a.getNumber().startsWith(number))
-                .collect(Collectors.toList());
-    }
+    List<Account> findByNumbersLike(String numberPrefix);
+
+    List<Account> findAllByPatterns(NumberPatternTrie patterns);
+
+    /**
+     * Passes the registered numbers which are not subscribed to the action.
+     */
+    void forEachUnsubscribedNumber(SubscriptionRepository subscriptionRepository, LongConsumer action);
 }
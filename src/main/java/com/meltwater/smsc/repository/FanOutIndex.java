@@ -0,0 +1,62 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.model.PendingFanOut;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pending fan-outs by number id in insertion order, so the fan-outs of a number are found without scanning all of them.
+ * Every id keeps a list which grows by doubling and is compacted in place on removal, finders copy it out.
+ * Not thread safe, guarded by its owner.
+ */
+class FanOutIndex {
+
+    private static final int INITIAL_CAPACITY = 2;
+
+    private PendingFanOut[][] fanOutsById = new PendingFanOut[16][];
+    private int[] sizes = new int[16];
+
+    void add(int id, PendingFanOut fanOut) {
+        if (id >= fanOutsById.length) {
+            int length = Math.max(id + 1, 2 * fanOutsById.length);
+            fanOutsById = Arrays.copyOf(fanOutsById, length);
+            sizes = Arrays.copyOf(sizes, length);
+        }
+        PendingFanOut[] fanOuts = fanOutsById[id];
+        int size = sizes[id];
+        if (fanOuts == null) {
+            fanOuts = new PendingFanOut[INITIAL_CAPACITY];
+            fanOutsById[id] = fanOuts;
+        } else if (size == fanOuts.length) {
+            fanOuts = Arrays.copyOf(fanOuts, 2 * size);
+            fanOutsById[id] = fanOuts;
+        }
+        fanOuts[size] = fanOut;
+        sizes[id] = size + 1;
+    }
+
+    void remove(int id, PendingFanOut fanOut) {
+        if (id < 0 || id >= fanOutsById.length) {
+            return;
+        }
+        PendingFanOut[] fanOuts = fanOutsById[id];
+        int size = sizes[id];
+        for (int i = 0; i < size; i++) {
+            if (fanOuts[i] == fanOut) {
+                System.arraycopy(fanOuts, i + 1, fanOuts, i, size - i - 1);
+                fanOuts[size - 1] = null;
+                sizes[id] = size - 1;
+                return;
+            }
+        }
+    }
+
+    List<PendingFanOut> find(int id) {
+        if (id < 0 || id >= fanOutsById.length || sizes[id] == 0) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(fanOutsById[id], sizes[id])));
+    }
+}
@@ -0,0 +1,143 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.index.ConcurrentBitmap;
+import com.meltwater.smsc.index.DigitTrie;
+import com.meltwater.smsc.index.NumberPatternTrie;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.journal.NoOpRegistryJournal;
+import com.meltwater.smsc.journal.RegistryJournal;
+import com.meltwater.smsc.model.Account;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+/**
+ * Accounts indexed by number, name and number prefix, with a bitmap of the registered numbers over the ids of the
+ * dictionary shared with {@link SubscriptionRepository}.
+ */
+@Repository
+public class IndexedAccountRepository implements AccountRepository {
+
+    private final Map<Long, Account> accountsByNumber = new LinkedHashMap<>();
+    private final Map<String, List<Account>> accountsByName = new HashMap<>();
+    private final DigitTrie<Account> numberPrefixIndex = new DigitTrie<>();
+    private final ConcurrentBitmap registeredNumbers = new ConcurrentBitmap();
+    private final NumberDictionary numberDictionary;
+    private final RegistryJournal journal;
+
+    public IndexedAccountRepository() {
+        this(new NumberDictionary());
+    }
+
+    public IndexedAccountRepository(NumberDictionary numberDictionary) {
+        this(numberDictionary, new NoOpRegistryJournal());
+    }
+
+    @Autowired
+    public IndexedAccountRepository(NumberDictionary numberDictionary, RegistryJournal journal) {
+        this.numberDictionary = numberDictionary;
+        this.journal = journal;
+        journal.recoverAccounts(this::put);
+    }
+
+    @Override
+    public void save(Account account) {
+        put(account);
+        journal.accountSaved(account);
+    }
+
+    @Override
+    public void saveAll(Collection<Account> accounts) {
+        accounts.forEach(this::put);
+        journal.accountsSaved(accounts);
+    }
+
+    @Override
+    public void delete(Account account) {
+        Account existing = accountsByNumber.get(account.getNumber());
+        if (account.equals(existing)) {
+            accountsByNumber.remove(account.getNumber());
+            registeredNumbers.clear(numberDictionary.find(account.getNumber()));
+            numberPrefixIndex.remove(PhoneNumbers.decode(account.getNumber()));
+            removeFromNameIndex(existing);
+            journal.accountDeleted(account);
+        }
+    }
+
+    private void put(Account account) {
+        Account replaced = accountsByNumber.remove(account.getNumber());
+        if (replaced != null) {
+            removeFromNameIndex(replaced);
+        }
+
+        numberPrefixIndex.put(PhoneNumbers.decode(account.getNumber()), account);
+        accountsByNumber.put(account.getNumber(), account);
+        registeredNumbers.set(numberDictionary.idOf(account.getNumber()));
+        accountsByName.computeIfAbsent(account.getName(), name -> new ArrayList<>(1)).add(account);
+    }
+
+    @Override
+    public List<Account> findAll() {
+        return new ArrayList<>(accountsByNumber.values());
+    }
+
+    @Override
+    public Optional<Account> findByNumber(long number) {
+        return Optional.ofNullable(accountsByNumber.get(number));
+    }
+
+    @Override
+    public Optional<Account> findByName(String name) {
+        List<Account> accounts = accountsByName.get(name);
+        return accounts == null ? Optional.empty() : Optional.of(accounts.get(0));
+    }
+
+    @Override
+    public List<Account> findAllByNumbers(long[] numbers) {
+        List<Account> filteredAccounts = new ArrayList<>();
+        Arrays.stream(numbers)
+                .distinct()
+                .mapToObj(accountsByNumber::get)
+                .filter(a -> a != null)
+                .forEach(filteredAccounts::add);
+        return filteredAccounts;
+    }
+
+    @Override
+    public List<Account> findByNumbersLike(String numberPrefix) {
+        List<Account> matchingAccounts = new ArrayList<>();
+        numberPrefixIndex.forEachWithPrefix(numberPrefix, matchingAccounts::add);
+        return matchingAccounts;
+    }
+
+    @Override
+    public List<Account> findAllByPatterns(NumberPatternTrie patterns) {
+        List<Account> matchingAccounts = new ArrayList<>();
+        patterns.forEachMatch(numberPrefixIndex, matchingAccounts::add);
+        return matchingAccounts;
+    }
+
+    @Override
+    public void forEachUnsubscribedNumber(SubscriptionRepository subscriptionRepository, LongConsumer action) {
+        subscriptionRepository.forEachUnsubscribedNumber(numberDictionary, registeredNumbers, action);
+    }
+
+    private void removeFromNameIndex(Account account) {
+        List<Account> accounts = accountsByName.get(account.getName());
+        if (accounts != null) {
+            accounts.remove(account);
+            if (accounts.isEmpty()) {
+                accountsByName.remove(account.getName());
+            }
+        }
+    }
+}
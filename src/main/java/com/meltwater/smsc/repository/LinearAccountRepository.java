@@ -0,0 +1,75 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.index.NumberPatternTrie;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Account;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+public class LinearAccountRepository implements AccountRepository {
+
+    private final List<Account> accounts = new ArrayList<>();
+
+    @Override
+    public void save(Account account) {
+        accounts.add(account);
+    }
+
+    @Override
+    public void delete(Account account) {
+        accounts.remove(account);
+    }
+
+    @Override
+    public List<Account> findAll() {
+        return accounts;
+    }
+
+    @Override
+    public Optional<Account> findByNumber(long number) {
+        return accounts.stream()
+                .filter(ac -> number == ac.getNumber())
+                .findFirst();
+    }
+
+    @Override
+    public Optional<Account> findByName(String name) {
+        return accounts.stream()
+                .filter(ac -> name.equals(ac.getName()))
+                .findFirst();
+    }
+
+    @Override
+    public List<Account> findAllByNumbers(long[] numbers) {
+        return accounts.stream()
+                .filter(a -> Arrays.stream(numbers).anyMatch(number -> number == a.getNumber()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Account> findByNumbersLike(String numberPrefix) {
+        return accounts.stream()
+                .filter(a -> PhoneNumbers.decode(a.getNumber()).startsWith(numberPrefix))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Account> findAllByPatterns(NumberPatternTrie patterns) {
+        return accounts.stream()
+                .filter(a -> patterns.matches(a.getNumber()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void forEachUnsubscribedNumber(SubscriptionRepository subscriptionRepository, LongConsumer action) {
+        accounts.stream()
+                .mapToLong(Account::getNumber)
+                .filter(number -> !subscriptionRepository.isSubscribed(number))
+                .forEach(action);
+    }
+}
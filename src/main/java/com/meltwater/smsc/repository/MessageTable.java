@@ -0,0 +1,64 @@
+package com.meltwater.smsc.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference counted message texts, so a message pending for many recipients is kept once.
+ * Released references are reused. Not thread safe, guarded by its owner.
+ */
+class MessageTable {
+
+    static final int NOT_FOUND = -1;
+
+    private final Map<String, Integer> referencesByMessage = new HashMap<>();
+    private final List<String> messages = new ArrayList<>();
+    private int[] referenceCounts = new int[16];
+    private int[] freeReferences = new int[16];
+    private int freeCount;
+
+    int find(String message) {
+        return referencesByMessage.getOrDefault(message, NOT_FOUND);
+    }
+
+    int acquire(String message) {
+        int reference = find(message);
+        if (reference == NOT_FOUND) {
+            reference = freeCount > 0 ? freeReferences[--freeCount] : messages.size();
+            if (reference == messages.size()) {
+                messages.add(message);
+                if (reference == referenceCounts.length) {
+                    referenceCounts = Arrays.copyOf(referenceCounts, 2 * reference);
+                }
+            } else {
+                messages.set(reference, message);
+            }
+            referencesByMessage.put(message, reference);
+        }
+        referenceCounts[reference]++;
+        return reference;
+    }
+
+    String get(int reference) {
+        return messages.get(reference);
+    }
+
+    void release(int reference) {
+        if (--referenceCounts[reference] > 0) {
+            return;
+        }
+        referencesByMessage.remove(messages.get(reference));
+        messages.set(reference, null);
+        if (freeCount == freeReferences.length) {
+            freeReferences = Arrays.copyOf(freeReferences, 2 * freeCount);
+        }
+        freeReferences[freeCount++] = reference;
+    }
+
+    int size() {
+        return referencesByMessage.size();
+    }
+}
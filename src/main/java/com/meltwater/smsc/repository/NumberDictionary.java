@@ -0,0 +1,127 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import org.springframework.stereotype.Repository;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Interns phone numbers encoded by {@link PhoneNumbers}: every number gets a dense int id. Ids are never reused.
+ * Lookups never lock, new numbers are added under a lock.
+ */
+@Repository
+public class NumberDictionary {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = 0;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile long[] numbers = new long[INITIAL_CAPACITY / 2];
+    private int size;
+
+    public int find(long number) {
+        return number != EMPTY ? table.find(number) : NOT_FOUND;
+    }
+
+    public int idOf(long number) {
+        if (number == EMPTY) {
+            throw new IllegalArgumentException("Not an encoded phone number: " + number);
+        }
+        int id = table.find(number);
+        return id != NOT_FOUND ? id : add(number);
+    }
+
+    public long numberOf(int id) {
+        return numbers[id];
+    }
+
+    public long[] numbersOf(int[] ids) {
+        long[] current = numbers;
+        long[] idNumbers = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            idNumbers[i] = current[ids[i]];
+        }
+        return idNumbers;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(long encoded) {
+        int id = table.find(encoded);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+
+        id = size;
+        if (id == numbers.length) {
+            numbers = Arrays.copyOf(numbers, 2 * numbers.length);
+        }
+        numbers[id] = encoded;
+        if (2 * (size + 1) > table.capacity()) {
+            table = table.grow(numbers, size);
+        }
+        table.insert(encoded, id);
+        size++;
+        return id;
+    }
+
+    /**
+     * Open addressing table with linear probing. The id is written before the key is published,
+     * so a reader that sees the key sees its id as well.
+     */
+    private static final class Table {
+
+        private final AtomicLongArray keys;
+        private final int[] ids;
+        private final int mask;
+
+        private Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            ids = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return ids.length;
+        }
+
+        private int find(long key) {
+            for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+                long candidate = keys.get(slot);
+                if (candidate == key) {
+                    return ids[slot];
+                }
+                if (candidate == EMPTY) {
+                    return NOT_FOUND;
+                }
+            }
+        }
+
+        private void insert(long key, int id) {
+            int slot = slotOf(key);
+            while (keys.get(slot) != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            keys.set(slot, key);
+        }
+
+        private Table grow(long[] numbers, int size) {
+            Table grown = new Table(2 * capacity());
+            for (int id = 0; id < size; id++) {
+                grown.insert(numbers[id], id);
+            }
+            return grown;
+        }
+
+        private int slotOf(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ hash >>> 32) & mask;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.meltwater.smsc.repository;
 
+import com.meltwater.smsc.journal.NoOpRegistryJournal;
+import com.meltwater.smsc.journal.RegistryJournal;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.util.*;
@@ -8,9 +11,22 @@ import java.util.*;
 public class NumberGroupRepository {
 
     Map<String, List<String>> groups = new HashMap<String, List<String>>();
+    private final RegistryJournal journal;
+
+    public NumberGroupRepository() {
+        this(new NoOpRegistryJournal());
+    }
+
+    @Autowired
+    public NumberGroupRepository(RegistryJournal journal) {
+        this.journal = journal;
+        journal.recoverGroups(groups::put);
+    }
 
     public void save(String groupName, List<String> numberPatterns) {
-        groups.put(groupName, new ArrayList<>(numberPatterns));
+        List<String> saved = new ArrayList<>(numberPatterns);
+        groups.put(groupName, saved);
+        journal.groupSaved(groupName, saved);
     }
 
     public Optional<List<String>> findByGroupName(String groupName) {
@@ -18,6 +34,8 @@ public class NumberGroupRepository {
     }
 
     public void deleteByGroupName(String groupName) {
-        groups.remove(groupName);
+        if (groups.remove(groupName) != null) {
+            journal.groupDeleted(groupName);
+        }
     }
 }
@@ -1,37 +1,342 @@
 package com.meltwater.smsc.repository;
 
+import com.meltwater.smsc.journal.NoOpRedeliveryJournal;
+import com.meltwater.smsc.journal.RedeliveryJournal;
+import com.meltwater.smsc.model.PendingFanOut;
 import com.meltwater.smsc.model.Redelivery;
+import com.meltwater.smsc.model.RedeliveryAttempt;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
+/**
+ * Pending redeliveries in insertion order, kept off heap in a columnar {@link RedeliveryStore} of number ids and
+ * interned message references. Numbers are passed in and out encoded, they are never decoded here. Finders materialize snapshots which are safe to iterate while saving.
+ * A redelivery is addressed by a stable handle, under which its attempt count and next attempt time are recorded.
+ * Messages to many offline recipients are kept as {@link PendingFanOut} records until their recipients are taken out.
+ * Every change is recorded in a {@link RedeliveryJournal} and the pending items are recovered from it on creation.
+ * After each change the journal may compact itself to the pending items.
+ */
 @Repository
 public class RedeliveryRepository {
 
-    private List<Redelivery> redeliveries = new ArrayList<>();
+    public static final long NO_HANDLE = -1;
 
-    public List<Redelivery> findAll() {
+    private static final long NO_CREATION_DATE = Long.MIN_VALUE;
+
+    private final NumberDictionary numberDictionary;
+    private final RedeliveryStore store = new RedeliveryStore();
+    private final MessageTable messages = new MessageTable();
+    private final Set<PendingFanOut> fanOuts = new LinkedHashSet<>();
+    private final FanOutIndex fanOutsBySource = new FanOutIndex();
+    private final FanOutIndex fanOutsByRecipient = new FanOutIndex();
+    private final RedeliveryJournal journal;
+    private final JournalRecovery journalRecovery = new JournalRecovery();
+
+    public RedeliveryRepository(NumberDictionary numberDictionary) {
+        this(numberDictionary, new NoOpRedeliveryJournal());
+    }
+
+    @Autowired
+    public RedeliveryRepository(NumberDictionary numberDictionary, RedeliveryJournal journal) {
+        this.numberDictionary = numberDictionary;
+        this.journal = journal;
+        synchronized (this) {
+            journal.recover(journalRecovery);
+        }
+    }
+
+    public synchronized List<Redelivery> findAll() {
+        List<Redelivery> redeliveries = new ArrayList<>(store.size());
+        store.forEach(slot -> redeliveries.add(materialize(slot)));
         return redeliveries;
     }
 
-    public void save(Redelivery redelivery) {
-        redeliveries.add(redelivery);
+    public synchronized List<Redelivery> findAllByDestination(long destinationNumber) {
+        List<Redelivery> redeliveries = new ArrayList<>();
+        store.forEachByDestination(numberDictionary.find(destinationNumber), slot -> redeliveries.add(materialize(slot)));
+        return redeliveries;
     }
 
-    public Optional<Redelivery> findByItem(Redelivery redelivery) {
-        int index = redeliveries.indexOf(redelivery);
+    public synchronized List<Redelivery> findAllBySource(long sourceNumber) {
+        List<Redelivery> redeliveries = new ArrayList<>();
+        store.forEachBySource(numberDictionary.find(sourceNumber), slot -> redeliveries.add(materialize(slot)));
+        return redeliveries;
+    }
 
-        if (index > -1) {
-            return Optional.of(redeliveries.get(index));
-        } else {
+    public synchronized long countBySource(long sourceNumber) {
+        return store.countBySource(numberDictionary.find(sourceNumber));
+    }
+
+    public synchronized long count() {
+        return store.size();
+    }
+
+    public boolean save(Redelivery redelivery) {
+        long position;
+        synchronized (this) {
+            if (!insert(redelivery)) {
+                return false;
+            }
+            position = journal.enqueued(redelivery);
+            journal.compact(journalRecovery);
+        }
+        journal.awaitDurable(position);
+        return true;
+    }
+
+    public synchronized Optional<Redelivery> findByItem(Redelivery redelivery) {
+        int slot = find(redelivery);
+        return slot != RedeliveryStore.NOT_FOUND ? Optional.of(materialize(slot)) : Optional.empty();
+    }
+
+    public synchronized boolean delete(Redelivery redelivery) {
+        if (!remove(redelivery)) {
+            return false;
+        }
+        journal.delivered(redelivery);
+        journal.compact(journalRecovery);
+        return true;
+    }
+
+    public synchronized long handleOf(Redelivery redelivery) {
+        int slot = find(redelivery);
+        return slot != RedeliveryStore.NOT_FOUND ? store.position(slot) : NO_HANDLE;
+    }
+
+    public synchronized Optional<Redelivery> findByHandle(long handle) {
+        int slot = store.slotOf(handle);
+        return slot != RedeliveryStore.NOT_FOUND ? Optional.of(materialize(slot)) : Optional.empty();
+    }
+
+    /**
+     * Reads the redelivery with its attempt count and next attempt time at once, empty when it is no longer pending.
+     */
+    public synchronized Optional<RedeliveryAttempt> findAttemptByHandle(long handle) {
+        int slot = store.slotOf(handle);
+        if (slot == RedeliveryStore.NOT_FOUND) {
             return Optional.empty();
         }
+        return Optional.of(new RedeliveryAttempt(materialize(slot), store.attempt(slot), store.nextAttemptMillis(slot)));
+    }
+
+    /**
+     * Records the attempt, returns false when the redelivery is no longer pending.
+     */
+    public synchronized boolean recordAttempt(long handle, int attempt, long nextAttemptMillis) {
+        int slot = store.slotOf(handle);
+        if (slot == RedeliveryStore.NOT_FOUND) {
+            return false;
+        }
+        store.updateAttempt(slot, attempt, nextAttemptMillis);
+        return true;
+    }
+
+    public PendingFanOut saveFanOut(long sourceNumber, long[] destinationNumbers, String message, Instant creationDate) {
+        PendingFanOut fanOut = newFanOut(sourceNumber, destinationNumbers, message, creationDate);
+        long position;
+        synchronized (this) {
+            addFanOut(fanOut);
+            position = journal.fanOutEnqueued(fanOut, destinationNumbers);
+            journal.compact(journalRecovery);
+        }
+        journal.awaitDurable(position);
+        return fanOut;
+    }
+
+    /**
+     * Takes the recipient out of the fan-out into a single pending redelivery, returned when it was not pending yet.
+     */
+    public Optional<Redelivery> takeFromFanOut(PendingFanOut fanOut, long destinationNumber) {
+        List<Redelivery> enqueued = new ArrayList<>(1);
+        long position;
+        synchronized (this) {
+            if (!take(fanOut, destinationNumber)) {
+                return Optional.empty();
+            }
+            position = enqueueTaken(fanOut, new long[]{destinationNumber}, enqueued);
+            journal.compact(journalRecovery);
+        }
+        journal.awaitDurable(position);
+        return enqueued.stream().findFirst();
+    }
+
+    /**
+     * Takes the ready recipients out of the fan-out into single pending redeliveries, returns the ones not pending yet.
+     */
+    public List<Redelivery> takeAllFromFanOut(PendingFanOut fanOut, LongPredicate ready) {
+        List<Redelivery> enqueued = new ArrayList<>();
+        long position;
+        synchronized (this) {
+            int[] takenIds = fanOut.takeAll(id -> ready.test(numberDictionary.numberOf(id)));
+            if (takenIds.length == 0) {
+                return enqueued;
+            }
+            for (int id : takenIds) {
+                fanOutsByRecipient.remove(id, fanOut);
+            }
+            position = enqueueTaken(fanOut, numberDictionary.numbersOf(takenIds), enqueued);
+            journal.compact(journalRecovery);
+        }
+        journal.awaitDurable(position);
+        return enqueued;
+    }
+
+    public synchronized List<PendingFanOut> findAllFanOuts() {
+        return new ArrayList<>(fanOuts);
+    }
+
+    public synchronized List<PendingFanOut> findAllFanOutsBySource(long sourceNumber) {
+        return fanOutsBySource.find(numberDictionary.find(sourceNumber));
+    }
+
+    /**
+     * Finds the fan-outs the number is still an outstanding recipient of.
+     */
+    public synchronized List<PendingFanOut> findAllFanOutsByDestination(long destinationNumber) {
+        return fanOutsByRecipient.find(numberDictionary.find(destinationNumber));
+    }
+
+    public synchronized void deleteFanOut(PendingFanOut fanOut) {
+        removeFanOut(fanOut);
+    }
+
+    private boolean insert(Redelivery redelivery) {
+        if (find(redelivery) != RedeliveryStore.NOT_FOUND) {
+            return false;
+        }
+        Instant creationDate = redelivery.getCreationDate();
+        store.append(numberDictionary.idOf(redelivery.getSource()), numberDictionary.idOf(redelivery.getDestination()),
+                messages.acquire(redelivery.getMessage()), creationDate != null ? creationDate.toEpochMilli() : NO_CREATION_DATE);
+        return true;
+    }
 
+    private boolean remove(Redelivery redelivery) {
+        int slot = find(redelivery);
+        if (slot == RedeliveryStore.NOT_FOUND) {
+            return false;
+        }
+        int messageRef = store.messageRef(slot);
+        store.remove(slot);
+        messages.release(messageRef);
+        return true;
+    }
+
+    private void addFanOut(PendingFanOut fanOut) {
+        fanOuts.add(fanOut);
+        fanOutsBySource.add(numberDictionary.idOf(fanOut.getSource()), fanOut);
+        for (int id : fanOut.outstandingRecipientIds()) {
+            fanOutsByRecipient.add(id, fanOut);
+        }
+    }
+
+    private void removeFanOut(PendingFanOut fanOut) {
+        if (fanOuts.remove(fanOut)) {
+            fanOutsBySource.remove(numberDictionary.find(fanOut.getSource()), fanOut);
+            for (int id : fanOut.outstandingRecipientIds()) {
+                fanOutsByRecipient.remove(id, fanOut);
+            }
+        }
+    }
+
+    private PendingFanOut newFanOut(long sourceNumber, long[] destinationNumbers, String message, Instant creationDate) {
+        int[] recipientIds = Arrays.stream(destinationNumbers).mapToInt(numberDictionary::idOf).toArray();
+        return new PendingFanOut(sourceNumber, recipientIds, message, creationDate);
+    }
+
+    /**
+     * Journals the redeliveries of the taken recipients before the take, so after a crash in between the recipients
+     * are still pending in the fan-out and taking them again finds their redeliveries already pending.
+     */
+    private long enqueueTaken(PendingFanOut fanOut, long[] recipients, List<Redelivery> enqueued) {
+        for (long recipient : recipients) {
+            Redelivery redelivery = fanOut.redeliveryTo(recipient);
+            if (insert(redelivery)) {
+                journal.enqueued(redelivery);
+                enqueued.add(redelivery);
+            }
+        }
+        return journal.fanOutTaken(fanOut, recipients);
     }
 
-    public void delete(Redelivery redelivery) {
-        redeliveries.remove(redelivery);
+    private boolean take(PendingFanOut fanOut, long destinationNumber) {
+        int id = numberDictionary.find(destinationNumber);
+        if (id == NumberDictionary.NOT_FOUND || !fanOut.take(id)) {
+            return false;
+        }
+        fanOutsByRecipient.remove(id, fanOut);
+        return true;
+    }
+
+    private int find(Redelivery redelivery) {
+        int sourceId = numberDictionary.find(redelivery.getSource());
+        int destinationId = numberDictionary.find(redelivery.getDestination());
+        int messageRef = messages.find(redelivery.getMessage());
+        if (sourceId == NumberDictionary.NOT_FOUND || destinationId == NumberDictionary.NOT_FOUND || messageRef == MessageTable.NOT_FOUND) {
+            return RedeliveryStore.NOT_FOUND;
+        }
+        return store.find(sourceId, destinationId, messageRef);
+    }
+
+    private Redelivery materialize(int slot) {
+        long creationMillis = store.creationMillis(slot);
+        return new Redelivery(numberDictionary.numberOf(store.sourceId(slot)), numberDictionary.numberOf(store.destinationId(slot)),
+                messages.get(store.messageRef(slot)), creationMillis != NO_CREATION_DATE ? Instant.ofEpochMilli(creationMillis) : null);
+    }
+
+    /**
+     * Applies the journal to this repository without journaling it again.
+     */
+    private final class JournalRecovery implements RedeliveryJournal.Recovery {
+
+        @Override
+        public void enqueued(Redelivery redelivery) {
+            insert(redelivery);
+        }
+
+        @Override
+        public void delivered(Redelivery redelivery) {
+            remove(redelivery);
+        }
+
+        @Override
+        public PendingFanOut fanOutEnqueued(long source, long[] recipients, String message, Instant creationDate) {
+            PendingFanOut fanOut = newFanOut(source, recipients, message, creationDate);
+            addFanOut(fanOut);
+            return fanOut;
+        }
+
+        @Override
+        public void fanOutTaken(PendingFanOut fanOut, long[] recipients) {
+            for (long recipient : recipients) {
+                take(fanOut, recipient);
+            }
+            if (fanOut.isSettled()) {
+                removeFanOut(fanOut);
+            }
+        }
+
+        @Override
+        public long count() {
+            return store.size() + fanOuts.size();
+        }
+
+        @Override
+        public void forEachPending(Consumer<Redelivery> redeliveries, BiConsumer<PendingFanOut, long[]> pendingFanOuts) {
+            store.forEach(slot -> redeliveries.accept(materialize(slot)));
+            fanOuts.stream()
+                    .filter(fanOut -> !fanOut.isSettled())
+                    .forEach(fanOut -> pendingFanOuts.accept(fanOut, numberDictionary.numbersOf(fanOut.outstandingRecipientIds())));
+        }
     }
 }
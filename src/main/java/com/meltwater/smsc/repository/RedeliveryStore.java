@@ -0,0 +1,356 @@
+package com.meltwater.smsc.repository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Append-only columnar store of pending redeliveries in direct (off-heap) segments. An entry holds the number ids,
+ * a message reference, the attempt count and millisecond times; its position is a stable handle which is never reused.
+ * Removed entries are compacted away in place keeping the insertion order, and emptied segments are released.
+ * Not thread safe, guarded by its owner.
+ */
+class RedeliveryStore {
+
+    static final int NOT_FOUND = -1;
+
+    private static final int POSITION = 0;
+    private static final int SOURCE = 8;
+    private static final int DESTINATION = 12;
+    private static final int MESSAGE = 16;
+    private static final int ATTEMPT = 20;
+    private static final int CREATED = 24;
+    private static final int NEXT_ATTEMPT = 32;
+    private static final int NEXT_BY_DESTINATION = 40;
+    private static final int NEXT_BY_SOURCE = 44;
+    private static final int ENTRY_BYTES = 48;
+
+    private static final int REMOVED = -1;
+    private static final int NO_SLOT = -1;
+    private static final int DEFAULT_SEGMENT_SHIFT = 14;
+    private static final int MIN_REMOVED_TO_COMPACT = 1024;
+
+    private final int segmentShift;
+    private final int slotMask;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final Chains byDestination = new Chains(DESTINATION, NEXT_BY_DESTINATION);
+    private final Chains bySource = new Chains(SOURCE, NEXT_BY_SOURCE);
+
+    private int[] index = new int[64];
+    private int slots;
+    private int live;
+    private long nextPosition;
+
+    RedeliveryStore() {
+        this(DEFAULT_SEGMENT_SHIFT);
+    }
+
+    RedeliveryStore(int segmentShift) {
+        this.segmentShift = segmentShift;
+        this.slotMask = (1 << segmentShift) - 1;
+    }
+
+    int size() {
+        return live;
+    }
+
+    long offHeapBytes() {
+        return (long) segments.size() * (ENTRY_BYTES << segmentShift);
+    }
+
+    int find(int sourceId, int destinationId, int messageRef) {
+        for (int i = hash(sourceId, destinationId, messageRef) & mask(); index[i] != 0; i = (i + 1) & mask()) {
+            int slot = index[i] - 1;
+            if (matches(slot, sourceId, destinationId, messageRef)) {
+                return slot;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    int slotOf(long position) {
+        int low = 0;
+        int high = slots - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long candidate = getLong(middle, POSITION);
+            if (candidate < position) {
+                low = middle + 1;
+            } else if (candidate > position) {
+                high = middle - 1;
+            } else {
+                return isLive(middle) ? middle : NOT_FOUND;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    long append(int sourceId, int destinationId, int messageRef, long creationMillis) {
+        if (slots == segments.size() << segmentShift) {
+            segments.add(ByteBuffer.allocateDirect(ENTRY_BYTES << segmentShift));
+        }
+        int slot = slots++;
+        long position = nextPosition++;
+        putLong(slot, POSITION, position);
+        putInt(slot, SOURCE, sourceId);
+        putInt(slot, DESTINATION, destinationId);
+        putInt(slot, MESSAGE, messageRef);
+        putInt(slot, ATTEMPT, 0);
+        putLong(slot, CREATED, creationMillis);
+        putLong(slot, NEXT_ATTEMPT, creationMillis);
+
+        byDestination.append(slot);
+        bySource.append(slot);
+        live++;
+        addToIndex(slot);
+        return position;
+    }
+
+    void remove(int slot) {
+        removeFromIndex(slot);
+        byDestination.removed(slot);
+        bySource.removed(slot);
+        putInt(slot, MESSAGE, REMOVED);
+        live--;
+
+        int removed = slots - live;
+        if (removed >= MIN_REMOVED_TO_COMPACT && removed >= live) {
+            compact();
+        }
+    }
+
+    long position(int slot) {
+        return getLong(slot, POSITION);
+    }
+
+    int sourceId(int slot) {
+        return getInt(slot, SOURCE);
+    }
+
+    int destinationId(int slot) {
+        return getInt(slot, DESTINATION);
+    }
+
+    int messageRef(int slot) {
+        return getInt(slot, MESSAGE);
+    }
+
+    long creationMillis(int slot) {
+        return getLong(slot, CREATED);
+    }
+
+    int attempt(int slot) {
+        return getInt(slot, ATTEMPT);
+    }
+
+    long nextAttemptMillis(int slot) {
+        return getLong(slot, NEXT_ATTEMPT);
+    }
+
+    void updateAttempt(int slot, int attempt, long nextAttemptMillis) {
+        putInt(slot, ATTEMPT, attempt);
+        putLong(slot, NEXT_ATTEMPT, nextAttemptMillis);
+    }
+
+    void forEach(IntConsumer action) {
+        for (int slot = 0; slot < slots; slot++) {
+            if (isLive(slot)) {
+                action.accept(slot);
+            }
+        }
+    }
+
+    void forEachByDestination(int destinationId, IntConsumer action) {
+        byDestination.forEach(destinationId, action);
+    }
+
+    void forEachBySource(int sourceId, IntConsumer action) {
+        bySource.forEach(sourceId, action);
+    }
+
+    int countBySource(int sourceId) {
+        return bySource.count(sourceId);
+    }
+
+    void compact() {
+        int target = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (isLive(slot)) {
+                if (slot != target) {
+                    copy(slot, target);
+                }
+                target++;
+            }
+        }
+        slots = target;
+        while (segments.size() > (slots + slotMask) >>> segmentShift) {
+            segments.remove(segments.size() - 1);
+        }
+
+        byDestination.clear();
+        bySource.clear();
+        index = new int[Math.max(64, Integer.highestOneBit(Math.max(1, live)) << 2)];
+        for (int slot = 0; slot < slots; slot++) {
+            byDestination.append(slot);
+            bySource.append(slot);
+            addToIndex(slot);
+        }
+    }
+
+    private boolean isLive(int slot) {
+        return getInt(slot, MESSAGE) != REMOVED;
+    }
+
+    private boolean matches(int slot, int sourceId, int destinationId, int messageRef) {
+        return getInt(slot, MESSAGE) == messageRef && getInt(slot, DESTINATION) == destinationId && getInt(slot, SOURCE) == sourceId;
+    }
+
+    private void copy(int from, int to) {
+        for (int offset = 0; offset < ENTRY_BYTES; offset += Long.BYTES) {
+            putLong(to, offset, getLong(from, offset));
+        }
+    }
+
+    private void addToIndex(int slot) {
+        if (2 * live > index.length) {
+            int[] previous = index;
+            index = new int[2 * previous.length];
+            for (int entry : previous) {
+                if (entry != 0) {
+                    insertIntoIndex(entry - 1);
+                }
+            }
+        }
+        insertIntoIndex(slot);
+    }
+
+    private void insertIntoIndex(int slot) {
+        int i = hashOf(slot) & mask();
+        while (index[i] != 0) {
+            i = (i + 1) & mask();
+        }
+        index[i] = slot + 1;
+    }
+
+    private void removeFromIndex(int slot) {
+        int i = hashOf(slot) & mask();
+        while (index[i] != slot + 1) {
+            i = (i + 1) & mask();
+        }
+        index[i] = 0;
+
+        for (int j = (i + 1) & mask(); index[j] != 0; j = (j + 1) & mask()) {
+            int home = hashOf(index[j] - 1) & mask();
+            boolean reachable = i <= j ? (home <= i || home > j) : (home <= i && home > j);
+            if (reachable) {
+                index[i] = index[j];
+                index[j] = 0;
+                i = j;
+            }
+        }
+    }
+
+    private int mask() {
+        return index.length - 1;
+    }
+
+    private int hashOf(int slot) {
+        return hash(getInt(slot, SOURCE), getInt(slot, DESTINATION), getInt(slot, MESSAGE));
+    }
+
+    private static int hash(int sourceId, int destinationId, int messageRef) {
+        long key = ((long) sourceId << 32 | destinationId & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L + messageRef;
+        key *= 0xBF58476D1CE4E5B9L;
+        return (int) (key ^ key >>> 31);
+    }
+
+    private ByteBuffer segment(int slot) {
+        return segments.get(slot >>> segmentShift);
+    }
+
+    private int offset(int slot, int column) {
+        return (slot & slotMask) * ENTRY_BYTES + column;
+    }
+
+    private int getInt(int slot, int column) {
+        return segment(slot).getInt(offset(slot, column));
+    }
+
+    private long getLong(int slot, int column) {
+        return segment(slot).getLong(offset(slot, column));
+    }
+
+    private void putInt(int slot, int column, int value) {
+        segment(slot).putInt(offset(slot, column), value);
+    }
+
+    private void putLong(int slot, int column, long value) {
+        segment(slot).putLong(offset(slot, column), value);
+    }
+
+    /**
+     * Per number id chains of slots in insertion order, linked through a column. Removed slots stay linked
+     * until the next compaction and are skipped.
+     */
+    private final class Chains {
+
+        private final int idColumn;
+        private final int linkColumn;
+        private int[] heads = new int[0];
+        private int[] tails = new int[0];
+        private int[] counts = new int[0];
+
+        private Chains(int idColumn, int linkColumn) {
+            this.idColumn = idColumn;
+            this.linkColumn = linkColumn;
+        }
+
+        private void append(int slot) {
+            int id = getInt(slot, idColumn);
+            if (id >= heads.length) {
+                int length = Math.max(id + 1, 2 * heads.length);
+                int previousLength = heads.length;
+                heads = Arrays.copyOf(heads, length);
+                tails = Arrays.copyOf(tails, length);
+                counts = Arrays.copyOf(counts, length);
+                Arrays.fill(heads, previousLength, length, NO_SLOT);
+                Arrays.fill(tails, previousLength, length, NO_SLOT);
+            }
+            if (tails[id] == NO_SLOT) {
+                heads[id] = slot;
+            } else {
+                putInt(tails[id], linkColumn, slot);
+            }
+            putInt(slot, linkColumn, NO_SLOT);
+            tails[id] = slot;
+            counts[id]++;
+        }
+
+        private void removed(int slot) {
+            counts[getInt(slot, idColumn)]--;
+        }
+
+        private int count(int id) {
+            return id >= 0 && id < counts.length ? counts[id] : 0;
+        }
+
+        private void forEach(int id, IntConsumer action) {
+            if (count(id) == 0) {
+                return;
+            }
+            for (int slot = heads[id]; slot != NO_SLOT; slot = getInt(slot, linkColumn)) {
+                if (isLive(slot)) {
+                    action.accept(slot);
+                }
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(heads, NO_SLOT);
+            Arrays.fill(tails, NO_SLOT);
+            Arrays.fill(counts, 0);
+        }
+    }
+}
@@ -1,32 +1,124 @@
 package com.meltwater.smsc.repository;
 
+import com.meltwater.smsc.index.ConcurrentBitmap;
+import com.meltwater.smsc.journal.NoOpRegistryJournal;
+import com.meltwater.smsc.journal.RegistryJournal;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
+/**
+ * Subscriptions by name with a bitmap of the subscribed numbers over their dictionary ids. Writers are serialized,
+ * readers never lock: a number becomes subscribed before its name and stops being subscribed after it.
+ * Numbers are encoded by {@link com.meltwater.smsc.index.PhoneNumbers}.
+ */
 @Repository
 public class SubscriptionRepository {
 
-    Map<String, String> subscriptions = new HashMap<>();
+    private final NumberDictionary numberDictionary;
+    private final ConcurrentMap<String, Long> subscriptions = new ConcurrentHashMap<>();
+    private final ConcurrentBitmap subscribedNumbers = new ConcurrentBitmap();
+    private final RegistryJournal journal;
+    private int[] subscribedNameCounts = new int[0];
+
+    public SubscriptionRepository(NumberDictionary numberDictionary) {
+        this(numberDictionary, new NoOpRegistryJournal());
+    }
+
+    @Autowired
+    public SubscriptionRepository(NumberDictionary numberDictionary, RegistryJournal journal) {
+        this.numberDictionary = numberDictionary;
+        this.journal = journal;
+        journal.recoverSubscriptions(this::put);
+    }
 
     public long countByName(String name) {
-        return subscriptions.keySet().stream()
-                .filter(s -> s.equals(name))
-                .count();
+        return subscriptions.containsKey(name) ? 1 : 0;
+    }
+
+    public OptionalLong findNumberByName(String name) {
+        Long number = subscriptions.get(name);
+        return number != null ? OptionalLong.of(number) : OptionalLong.empty();
+    }
+
+    public synchronized long countByNumber(long number) {
+        int id = numberDictionary.find(number);
+        return id >= 0 && id < subscribedNameCounts.length ? subscribedNameCounts[id] : 0;
+    }
+
+    public boolean isSubscribed(long number) {
+        return subscribedNumbers.get(numberDictionary.find(number));
+    }
+
+    public void forEachSubscribedNumber(LongConsumer action) {
+        subscribedNumbers.forEachSetBit(false, id -> action.accept(numberDictionary.numberOf(id)));
+    }
+
+    /**
+     * Passes the subscribed numbers to the action in batches, which are run in parallel from the threshold on.
+     */
+    public void forEachSubscribedBatch(long parallelismThreshold, Consumer<long[]> action) {
+        subscribedNumbers.forEachSetBitBatch(subscribedNumbers.cardinality() >= parallelismThreshold,
+                ids -> action.accept(numberDictionary.numbersOf(ids)));
+    }
+
+    /**
+     * Passes the numbers with the given ids of the same dictionary which are not subscribed to the action.
+     */
+    public void forEachUnsubscribedNumber(NumberDictionary numberIdDictionary, ConcurrentBitmap numberIds, LongConsumer action) {
+        if (numberIdDictionary != numberDictionary) {
+            throw new IllegalArgumentException("Number ids of another dictionary");
+        }
+        numberIds.forEachSetBitNotIn(subscribedNumbers, id -> action.accept(numberDictionary.numberOf(id)));
+    }
+
+    public synchronized void save(String name, long number) {
+        put(name, number);
+        journal.subscriptionSaved(name, number);
+    }
+
+    public synchronized void saveAll(Map<String, Long> numbersByName) {
+        numbersByName.forEach(this::put);
+        journal.subscriptionsSaved(numbersByName);
+    }
+
+    public synchronized void delete(String name) {
+        Long number = subscriptions.remove(name);
+        if (number != null) {
+            removeFromNumberIndex(number);
+            journal.subscriptionDeleted(name);
+        }
     }
 
-    public long countByNumber(String number) {
-        return subscriptions.values().stream()
-                .filter(s -> s.equals(number))
-                .count();
+    private void put(String name, long number) {
+        addToNumberIndex(number);
+        Long previousNumber = subscriptions.put(name, number);
+        if (previousNumber != null) {
+            removeFromNumberIndex(previousNumber);
+        }
     }
 
-    public void save(String name, String number) {
-        subscriptions.put(name, number);
+    private void addToNumberIndex(long number) {
+        int id = numberDictionary.idOf(number);
+        if (id >= subscribedNameCounts.length) {
+            subscribedNameCounts = Arrays.copyOf(subscribedNameCounts, Math.max(id + 1, 2 * subscribedNameCounts.length));
+        }
+        if (subscribedNameCounts[id]++ == 0) {
+            subscribedNumbers.set(id);
+        }
     }
 
-    public void delete(String name) {
-        subscriptions.remove(name);
+    private void removeFromNumberIndex(long number) {
+        int id = numberDictionary.find(number);
+        if (--subscribedNameCounts[id] == 0) {
+            subscribedNumbers.clear(id);
+        }
     }
 }
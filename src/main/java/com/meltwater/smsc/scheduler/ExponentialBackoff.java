@@ -0,0 +1,61 @@
+package com.meltwater.smsc.scheduler;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Attempt n is due at {@code origin + d(0) + ... + d(n)} where {@code d(i) = min(max, initial * multiplier^i)},
+ * the last delay being shifted randomly by at most {@code jitter * d(n)}.
+ */
+public class ExponentialBackoff {
+
+    private final long initialDelayMillis;
+    private final double multiplier;
+    private final long maxDelayMillis;
+    private final double jitter;
+
+    public ExponentialBackoff(long initialDelayMillis, double multiplier, long maxDelayMillis, double jitter) {
+        if (initialDelayMillis < 0 || multiplier < 1 || maxDelayMillis < initialDelayMillis || jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Invalid backoff settings");
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.multiplier = multiplier;
+        this.maxDelayMillis = maxDelayMillis;
+        this.jitter = jitter;
+    }
+
+    public Instant attemptTime(Instant origin, int attempt) {
+        long delay = delayMillis(attempt);
+        long jitterMillis = (long) (delay * jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+        return origin.plusMillis(cumulativeDelayMillis(attempt) + jitterMillis);
+    }
+
+    long delayMillis(int attempt) {
+        return (long) Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, attempt));
+    }
+
+    long cumulativeDelayMillis(int attempt) {
+        if (initialDelayMillis == 0) {
+            return 0;
+        }
+        int cappedAttempt = firstCappedAttempt();
+        if (attempt < cappedAttempt) {
+            return geometricSum(attempt + 1);
+        }
+        return geometricSum(cappedAttempt) + (attempt - cappedAttempt + 1) * maxDelayMillis;
+    }
+
+    private int firstCappedAttempt() {
+        if (multiplier == 1) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.ceil(Math.log((double) maxDelayMillis / initialDelayMillis) / Math.log(multiplier));
+    }
+
+    private long geometricSum(int terms) {
+        if (multiplier == 1) {
+            return initialDelayMillis * terms;
+        }
+        return (long) (initialDelayMillis * (Math.pow(multiplier, terms) - 1) / (multiplier - 1));
+    }
+}
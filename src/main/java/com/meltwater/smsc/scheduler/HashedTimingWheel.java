@@ -0,0 +1,93 @@
+package com.meltwater.smsc.scheduler;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+/**
+ * Hashed timing wheel of primitive long items: O(1) scheduling, expiration cost proportional to the entries of the elapsed ticks.
+ * Deadlines beyond one wheel revolution are kept in their bucket with a remaining round count.
+ */
+public class HashedTimingWheel {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final int mask;
+    private final Bucket[] buckets;
+
+    private long nextTick;
+    private int size;
+
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Tick must be positive and wheel size must be a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.mask = wheelSize - 1;
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    public synchronized void schedule(long item, long deadlineMillis) {
+        long deadlineTick = Math.max(nextTick, ceilDiv(deadlineMillis - startMillis, tickMillis));
+        long remainingRounds = (deadlineTick - nextTick) / buckets.length;
+        buckets[(int) (deadlineTick & mask)].add(item, remainingRounds);
+        size++;
+    }
+
+    public synchronized long[] expire(long nowMillis) {
+        LongStream.Builder expired = LongStream.builder();
+        long lastTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        for (; nextTick <= lastTick; nextTick++) {
+            size -= buckets[(int) (nextTick & mask)].expire(expired);
+        }
+        return expired.build().toArray();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    private static final class Bucket {
+
+        private long[] items = new long[4];
+        private long[] remainingRounds = new long[4];
+        private int size;
+
+        private void add(long item, long rounds) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, 2 * size);
+                remainingRounds = Arrays.copyOf(remainingRounds, 2 * size);
+            }
+            items[size] = item;
+            remainingRounds[size] = rounds;
+            size++;
+        }
+
+        private int expire(LongStream.Builder expired) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (remainingRounds[i] == 0) {
+                    expired.add(items[i]);
+                } else {
+                    items[kept] = items[i];
+                    remainingRounds[kept] = remainingRounds[i] - 1;
+                    kept++;
+                }
+            }
+            int expiredCount = size - kept;
+            size = kept;
+            return expiredCount;
+        }
+    }
+}
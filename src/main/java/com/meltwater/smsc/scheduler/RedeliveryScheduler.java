@@ -0,0 +1,91 @@
+package com.meltwater.smsc.scheduler;
+
+import com.meltwater.smsc.model.Redelivery;
+import com.meltwater.smsc.model.RedeliveryAttempt;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Predicate;
+
+/**
+ * Schedules redelivery attempts by their repository handle; the attempt count and time live with the pending redelivery.
+ * Redeliveries already pending in the repository, e.g. recovered from its journal, are scheduled on creation.
+ */
+@Slf4j
+public class RedeliveryScheduler {
+
+    private final HashedTimingWheel wheel;
+    private final ExponentialBackoff backoff;
+    private final RedeliveryRepository redeliveryRepository;
+    private final Clock clock;
+
+    public RedeliveryScheduler(long tickMillis, int wheelSize, ExponentialBackoff backoff, RedeliveryRepository redeliveryRepository) {
+        this(tickMillis, wheelSize, backoff, redeliveryRepository, Clock.systemUTC());
+    }
+
+    public RedeliveryScheduler(long tickMillis, int wheelSize, ExponentialBackoff backoff, RedeliveryRepository redeliveryRepository,
+                               Clock clock) {
+        this.wheel = new HashedTimingWheel(tickMillis, wheelSize, clock.millis());
+        this.backoff = backoff;
+        this.redeliveryRepository = redeliveryRepository;
+        this.clock = clock;
+        redeliveryRepository.findAll().forEach(this::schedule);
+    }
+
+    public void schedule(Redelivery redelivery) {
+        long handle = redeliveryRepository.handleOf(redelivery);
+        if (handle != RedeliveryRepository.NO_HANDLE) {
+            schedule(handle, origin(redelivery), 0);
+        }
+    }
+
+    /**
+     * Attempts the due redeliveries, a redelivery deleted meanwhile counts as settled. An attempt failing
+     * with an exception is rescheduled like an unsettled one, so the other due redeliveries are still attempted.
+     */
+    public void retryDue(Predicate<Redelivery> settled) {
+        Instant now = clock.instant();
+        for (long handle : wheel.expire(now.toEpochMilli())) {
+            redeliveryRepository.findAttemptByHandle(handle)
+                    .filter(pending -> pending.getNextAttemptMillis() <= now.toEpochMilli())
+                    .ifPresent(pending -> retry(handle, pending, settled, now));
+        }
+    }
+
+    public int size() {
+        return wheel.size();
+    }
+
+    public Duration getTick() {
+        return Duration.ofMillis(wheel.getTickMillis());
+    }
+
+    private void retry(long handle, RedeliveryAttempt pending, Predicate<Redelivery> settled, Instant now) {
+        Redelivery redelivery = pending.getRedelivery();
+        log.debug("Redelivery attempt {} of {} aged {}", pending.getAttempt(), redelivery, Duration.between(origin(redelivery), now));
+        boolean delivered;
+        try {
+            delivered = settled.test(redelivery);
+        } catch (RuntimeException ex) {
+            log.error("Redelivery attempt of {} failed", redelivery, ex);
+            delivered = false;
+        }
+        if (!delivered) {
+            schedule(handle, origin(redelivery), pending.getAttempt() + 1);
+        }
+    }
+
+    private void schedule(long handle, Instant origin, int attempt) {
+        long attemptMillis = backoff.attemptTime(origin, attempt).toEpochMilli();
+        if (redeliveryRepository.recordAttempt(handle, attempt, attemptMillis)) {
+            wheel.schedule(handle, attemptMillis);
+        }
+    }
+
+    private Instant origin(Redelivery redelivery) {
+        return redelivery.getCreationDate() != null ? redelivery.getCreationDate() : clock.instant();
+    }
+}
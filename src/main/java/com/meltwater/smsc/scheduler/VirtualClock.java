@@ -0,0 +1,80 @@
+package com.meltwater.smsc.scheduler;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock which only moves when advanced, e.g. by the sleep command of a replayed script, so replays run at full speed
+ * and deterministically. The advance listeners run on the advancing thread once the new time is visible.
+ * A listener registered with a step makes the clock advance by at most that step at a time, running the listeners
+ * after each, so periodic work sees the same times as it would on wall time.
+ */
+public class VirtualClock extends Clock {
+
+    private final AtomicLong millis;
+    private final List<Runnable> advanceListeners;
+    private final AtomicLong stepMillis;
+    private final ZoneId zone;
+
+    public VirtualClock(Instant start) {
+        this(new AtomicLong(start.toEpochMilli()), new CopyOnWriteArrayList<>(), new AtomicLong(Long.MAX_VALUE), ZoneOffset.UTC);
+    }
+
+    private VirtualClock(AtomicLong millis, List<Runnable> advanceListeners, AtomicLong stepMillis, ZoneId zone) {
+        this.millis = millis;
+        this.advanceListeners = advanceListeners;
+        this.stepMillis = stepMillis;
+        this.zone = zone;
+    }
+
+    public void advance(Duration duration) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Virtual time cannot go backwards: " + duration);
+        }
+        long remaining = duration.toMillis();
+        do {
+            long elapsed = Math.min(remaining, stepMillis.get());
+            millis.addAndGet(elapsed);
+            remaining -= elapsed;
+            advanceListeners.forEach(Runnable::run);
+        } while (remaining > 0);
+    }
+
+    public void onAdvance(Runnable listener) {
+        advanceListeners.add(listener);
+    }
+
+    public void onAdvance(Duration step, Runnable listener) {
+        if (step.isNegative() || step.isZero()) {
+            throw new IllegalArgumentException("Step must be positive: " + step);
+        }
+        stepMillis.accumulateAndGet(step.toMillis(), Math::min);
+        advanceListeners.add(listener);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new VirtualClock(millis, advanceListeners, stepMillis, zone);
+    }
+
+    @Override
+    public long millis() {
+        return millis.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis.get());
+    }
+}
@@ -0,0 +1,129 @@
+package com.meltwater.smsc.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of a client connection. Reading and flushing belong to the selector thread, the numbers are bound by the thread
+ * executing the commands and {@link #send(ByteBuffer)} may be called from any thread.
+ */
+class ClientConnection {
+
+    private final CommandServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final long maxPendingBytes;
+    private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Map<String, Long> boundNumbersByName = new ConcurrentHashMap<>();
+    private volatile boolean overflowed;
+    private volatile boolean rejected;
+    private ByteBuffer input;
+
+    ClientConnection(CommandServer server, SocketChannel channel, SelectionKey key, int inputBufferBytes, long maxPendingBytes) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        this.maxPendingBytes = maxPendingBytes;
+        this.input = ByteBuffer.allocate(inputBufferBytes);
+    }
+
+    /**
+     * Queues the bytes and asks the selector thread to write them. A client which does not read
+     * its acknowledgements is disconnected once the queued bytes exceed the limit.
+     */
+    boolean send(ByteBuffer bytes) {
+        if (overflowed || rejected || !channel.isOpen()) {
+            return false;
+        }
+        if (pendingBytes.addAndGet(bytes.remaining()) > maxPendingBytes) {
+            overflowed = true;
+        } else {
+            output.add(bytes);
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            server.scheduleFlush(this);
+        }
+        return !overflowed;
+    }
+
+    /**
+     * Writes as much of the queued output as the socket accepts, registering for writability when it is full.
+     */
+    void flush() throws IOException {
+        flushScheduled.set(false);
+        if (rejected) {
+            return;
+        }
+        if (overflowed) {
+            throw new IOException("Client does not read its acknowledgements, " + pendingBytes.get() + " bytes pending");
+        }
+        ByteBuffer bytes;
+        while ((bytes = output.peek()) != null) {
+            int written = channel.write(bytes);
+            pendingBytes.addAndGet(-written);
+            if (bytes.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            output.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Stops queueing output and drops the buffered input of a connection which is being rejected.
+     */
+    void reject() {
+        rejected = true;
+        output.clear();
+        input.clear();
+    }
+
+    boolean isRejected() {
+        return rejected;
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    SelectionKey key() {
+        return key;
+    }
+
+    ByteBuffer input() {
+        return input;
+    }
+
+    void growInput(int capacity) {
+        input.flip();
+        input = ByteBuffer.allocate(capacity).put(input);
+    }
+
+    Long bound(String name, long number) {
+        return boundNumbersByName.put(name, number);
+    }
+
+    Long unbound(String name) {
+        return boundNumbersByName.remove(name);
+    }
+
+    Collection<Long> boundNumbers() {
+        return boundNumbersByName.values();
+    }
+}
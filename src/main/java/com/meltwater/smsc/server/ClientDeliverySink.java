@@ -0,0 +1,26 @@
+package com.meltwater.smsc.server;
+
+import com.meltwater.smsc.delivery.DeliverySink;
+import com.meltwater.smsc.index.PhoneNumbers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pushes the acknowledgements to the connection which subscribed the receiving number.
+ * Acknowledgements for receivers without a connection are dropped.
+ */
+public class ClientDeliverySink implements DeliverySink {
+
+    private final ClientRegistry clients;
+
+    public ClientDeliverySink(ClientRegistry clients) {
+        this.clients = clients;
+    }
+
+    @Override
+    public void deliver(long sourceNumber, long destinationNumber, String message) {
+        String acknowledgement = PhoneNumbers.decode(sourceNumber) + " -> " + PhoneNumbers.decode(destinationNumber) + " : " + message + "\n";
+        clients.push(destinationNumber, ByteBuffer.wrap(acknowledgement.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.meltwater.smsc.server;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows which client connection subscribed each number, so acknowledgements can be pushed back to the receiver.
+ * Pushing is safe from any thread; a number stays bound to the first connection subscribing it until that connection
+ * unsubscribes it or disconnects.
+ */
+@Component
+public class ClientRegistry {
+
+    private final Map<Long, ClientConnection> connectionsByNumber = new ConcurrentHashMap<>();
+
+    /**
+     * Queues the bytes on the connection of the number, returns false when the number has no connection.
+     */
+    public boolean push(long number, ByteBuffer bytes) {
+        ClientConnection connection = connectionsByNumber.get(number);
+        return connection != null && connection.send(bytes);
+    }
+
+    public int size() {
+        return connectionsByNumber.size();
+    }
+
+    /**
+     * Binds the number the name subscribed to the connection, returns false when another open connection holds it.
+     */
+    boolean bind(String name, long number, ClientConnection connection) {
+        ClientConnection holder = connectionsByNumber.compute(number,
+                (key, current) -> current == null || !current.isOpen() ? connection : current);
+        if (holder != connection) {
+            return false;
+        }
+        Long previousNumber = connection.bound(name, number);
+        if (previousNumber != null && previousNumber != number) {
+            release(previousNumber, connection);
+        }
+        if (!connection.isOpen()) {
+            unbindAll(connection);
+        }
+        return true;
+    }
+
+    void unbind(String name, ClientConnection connection) {
+        Long number = connection.unbound(name);
+        if (number != null) {
+            release(number, connection);
+        }
+    }
+
+    /**
+     * Unbinds every number of a connection, which must be closed first so a concurrent bind cannot be missed.
+     */
+    void unbindAll(ClientConnection connection) {
+        connection.boundNumbers().forEach(number -> connectionsByNumber.remove(number, connection));
+    }
+
+    private void release(long number, ClientConnection connection) {
+        if (!connection.boundNumbers().contains(number)) {
+            connectionsByNumber.remove(number, connection);
+        }
+    }
+}
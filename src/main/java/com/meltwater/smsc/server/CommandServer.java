@@ -0,0 +1,344 @@
+package com.meltwater.smsc.server;
+
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.CommandParser;
+import com.meltwater.smsc.command.CommandType;
+import com.meltwater.smsc.index.PhoneNumbers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Accepts commands in the line protocol of the input files over TCP. A single selector thread serves every connection:
+ * it splits the received bytes into lines, so a client may pipeline any number of commands, and writes the
+ * acknowledgements pushed to the connections through the {@link ClientRegistry}. A connection which subscribed
+ * a name receives the acknowledgements of the messages delivered to its number.
+ * <p>
+ * Parsed commands are handed over to {@link #serve(Consumer, Function)} through a bounded queue. The selector thread
+ * never waits for it: a connection whose command does not fit stops being read until the queue has room again,
+ * while the other connections keep being accepted and flushed.
+ */
+@Slf4j
+public class CommandServer implements Closeable {
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int INPUT_BUFFER_BYTES = 8 * 1024;
+    private static final Received STOP = new Received(Command.unknown("", ""), null);
+
+    private final CommandParser commandParser;
+    private final ClientRegistry clients;
+    private final int maxLineBytes;
+    private final long maxPendingBytes;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final BlockingQueue<Received> commands;
+    private final Queue<ClientConnection> flushes = new ConcurrentLinkedQueue<>();
+    private final Queue<ClientConnection> stalled = new ArrayDeque<>();
+    private final Thread selectorThread;
+    private volatile boolean readingStalled;
+    private volatile boolean closed;
+
+    public CommandServer(InetSocketAddress address, CommandParser commandParser, ClientRegistry clients, int queueCapacity,
+                         int maxLineBytes, long maxPendingBytes) throws IOException {
+        if (queueCapacity < 1 || maxLineBytes < 1 || maxPendingBytes < 1) {
+            throw new IllegalArgumentException("Queue capacity, line length and pending bytes must be positive");
+        }
+        this.commandParser = commandParser;
+        this.clients = clients;
+        this.maxLineBytes = maxLineBytes;
+        this.maxPendingBytes = maxPendingBytes;
+        this.commands = new ArrayBlockingQueue<>(queueCapacity);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        log.info("Accepting commands on {}", serverChannel.getLocalAddress());
+
+        selectorThread = new Thread(this::select, "command-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Passes the received commands to the consumer in the order they were read, until the server is closed,
+     * without binding the subscribing connections.
+     */
+    public void serve(Consumer<Command> consumer) throws InterruptedException {
+        serve(consumer, name -> OptionalLong.empty());
+    }
+
+    /**
+     * Passes the received commands to the consumer in the order they were read, until the server is closed.
+     * Commands not yet passed on when the server is closed are discarded. Once the consumer returned from a subscribe
+     * or unsubscribe, the number the name is subscribed with is bound to the connection or unbound from it.
+     */
+    public void serve(Consumer<Command> consumer, Function<String, OptionalLong> subscribedNumber) throws InterruptedException {
+        Received received;
+        while ((received = commands.take()) != STOP) {
+            if (readingStalled) {
+                selector.wakeup();
+            }
+            consumer.accept(received.command);
+            CommandType type = received.command.getType();
+            if (received.command.isValid() && (type == CommandType.SUBSCRIBE || type == CommandType.UNSUBSCRIBE)) {
+                bindExecuted(received.command, received.connection, subscribedNumber);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        selector.wakeup();
+        selectorThread.interrupt();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        commands.clear();
+        commands.add(STOP);
+    }
+
+    private void bindExecuted(Command command, ClientConnection connection, Function<String, OptionalLong> subscribedNumber) {
+        OptionalLong number = subscribedNumber.apply(command.getName());
+        if (command.getType() == CommandType.SUBSCRIBE && number.isPresent()
+                && !clients.bind(command.getName(), number.getAsLong(), connection)) {
+            log.warn("{} is already bound to another client", PhoneNumbers.decode(number.getAsLong()));
+        } else if (command.getType() == CommandType.UNSUBSCRIBE && !number.isPresent()) {
+            clients.unbind(command.getName(), connection);
+        }
+    }
+
+    void scheduleFlush(ClientConnection connection) {
+        flushes.add(connection);
+        selector.wakeup();
+    }
+
+    private void select() {
+        try {
+            while (!closed) {
+                resumeStalled();
+                selector.select();
+                ClientConnection connection;
+                while ((connection = flushes.poll()) != null) {
+                    flush(connection);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        if (key.isReadable()) {
+                            read((ClientConnection) key.attachment());
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush((ClientConnection) key.attachment());
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException ex) {
+            log.error("Command server stopped", ex);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() != null) {
+                    disconnect((ClientConnection) key.attachment());
+                } else {
+                    closeQuietly(key);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                log.error("Failed to close the selector", ex);
+            }
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new ClientConnection(this, channel, key, Math.min(INPUT_BUFFER_BYTES, maxLineBytes), maxPendingBytes));
+                log.debug("Accepted client {}", channel.getRemoteAddress());
+            }
+        } catch (IOException ex) {
+            log.error("Failed to accept client", ex);
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void read(ClientConnection connection) {
+        try {
+            int read = connection.channel().read(connection.input());
+            if (read < 0) {
+                disconnect(connection);
+                return;
+            }
+            if (connection.isRejected()) {
+                connection.input().clear();
+            } else {
+                handOver(connection);
+            }
+        } catch (IOException ex) {
+            log.warn("Disconnecting client: {}", ex.getMessage());
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * Queues the complete lines read from the connection. When the queue is full the remaining lines are kept
+     * and the connection stops being read until {@link #resumeStalled()} hands them over.
+     */
+    private boolean handOver(ClientConnection connection) throws IOException {
+        ByteBuffer input = connection.input();
+        input.flip();
+        int lineStart = 0;
+        boolean queued = true;
+        for (int i = 0; i < input.limit() && queued; i++) {
+            byte value = input.get(i);
+            if (value == LINE_FEED || value == CARRIAGE_RETURN) {
+                queued = i == lineStart || commands.offer(new Received(commandParser.parse(decode(input, lineStart, i)), connection));
+                if (queued) {
+                    lineStart = i + 1;
+                }
+            }
+        }
+        input.position(lineStart);
+        input.compact();
+        if (!queued) {
+            connection.key().interestOps(connection.key().interestOps() & ~SelectionKey.OP_READ);
+            stalled.add(connection);
+            readingStalled = true;
+            return false;
+        }
+        if (!input.hasRemaining()) {
+            if (input.capacity() >= maxLineBytes) {
+                log.warn("Disconnecting client sending a line longer than {} bytes", maxLineBytes);
+                reject(connection);
+                return true;
+            }
+            connection.growInput(Math.min(2 * input.capacity(), maxLineBytes));
+        }
+        return true;
+    }
+
+    /**
+     * Shuts the output of a connection down, so its client reads the end of the stream, and discards its input
+     * until the client closes. Closing the channel right away with unread input would reset the connection.
+     */
+    private void reject(ClientConnection connection) throws IOException {
+        clients.unbindAll(connection);
+        connection.reject();
+        connection.channel().shutdownOutput();
+        connection.key().interestOps(SelectionKey.OP_READ);
+    }
+
+    private void resumeStalled() {
+        while (!stalled.isEmpty() && commands.remainingCapacity() > 0) {
+            ClientConnection connection = stalled.poll();
+            if (!connection.key().isValid()) {
+                continue;
+            }
+            try {
+                if (handOver(connection)) {
+                    connection.key().interestOps(connection.key().interestOps() | SelectionKey.OP_READ);
+                }
+            } catch (IOException ex) {
+                log.warn("Disconnecting client: {}", ex.getMessage());
+                disconnect(connection);
+            }
+        }
+        readingStalled = !stalled.isEmpty();
+    }
+
+    private void flush(ClientConnection connection) {
+        if (!connection.key().isValid()) {
+            return;
+        }
+        try {
+            connection.flush();
+        } catch (IOException ex) {
+            log.warn("Disconnecting client: {}", ex.getMessage());
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(ClientConnection connection) {
+        closeQuietly(connection.key());
+        clients.unbindAll(connection);
+    }
+
+    private static String decode(ByteBuffer input, int start, int end) {
+        ByteBuffer line = input.duplicate();
+        line.position(start).limit(end);
+        return StandardCharsets.UTF_8.decode(line).toString();
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        if (key == null) {
+            return;
+        }
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.debug("Failed to close channel", ex);
+        }
+    }
+
+    private static final class Received {
+
+        private final Command command;
+        private final ClientConnection connection;
+
+        private Received(Command command, ClientConnection connection) {
+            this.command = command;
+            this.connection = connection;
+        }
+    }
+}
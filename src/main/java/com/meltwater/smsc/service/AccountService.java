@@ -1,5 +1,6 @@
 package com.meltwater.smsc.service;
 
+import com.meltwater.smsc.command.Syntax;
 import com.meltwater.smsc.exception.InvalidAccountArgumentsException;
 import com.meltwater.smsc.exception.InvalidGroupNameException;
 import com.meltwater.smsc.exception.InvalidGroupNumberPatternException;
@@ -10,7 +11,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -19,20 +22,41 @@ public class AccountService {
 
     private AccountRepository accountRepository;
     private NumberGroupRepository numberGroupRepository;
+    private GroupMembershipCache groupMembershipCache;
 
-    public AccountService(AccountRepository accountRepository, NumberGroupRepository numberGroupRepository) {
+    public AccountService(AccountRepository accountRepository, NumberGroupRepository numberGroupRepository, GroupMembershipCache groupMembershipCache) {
         this.accountRepository = accountRepository;
         this.numberGroupRepository = numberGroupRepository;
+        this.groupMembershipCache = groupMembershipCache;
     }
 
     public void registerNumber(Account account) {
-        log.info("Registering account: " + account);
+        log.info("Registering account: {}", account);
 
         validateAccount(account);
 
         removeAccountIfAlreadyExists(account);
 
         accountRepository.save(account);
+        groupMembershipCache.accountRegistered(account);
+    }
+
+    /**
+     * Registers the accounts at once, or none of them when any is invalid. Registering an account again overwrites it
+     * like {@link #registerNumber(Account)}, the last one of a number wins.
+     */
+    public void registerNumbers(Collection<Account> accounts) {
+        log.info("Registering {} accounts", accounts.size());
+
+        accounts.parallelStream()
+                .filter(this::isInvalidAccount)
+                .findAny()
+                .ifPresent(account -> {
+                    throw new InvalidAccountArgumentsException("Invalid name or number format: " + account);
+                });
+
+        accountRepository.saveAll(accounts);
+        groupMembershipCache.accountsRegistered(accounts);
     }
 
     public void registerGroup(String groupName, List<String> numberPatterns) {
@@ -40,24 +64,45 @@ public class AccountService {
 
         validateGroup(groupName, numberPatterns);
 
+        saveGroup(groupName, numberPatterns);
+    }
+
+    /**
+     * Registers the groups with their number patterns, or none of them when any is invalid.
+     */
+    public void registerGroups(Map<String, List<String>> numberPatternsByGroupName) {
+        log.info("Registering {} groups", numberPatternsByGroupName.size());
+
+        numberPatternsByGroupName.entrySet().parallelStream()
+                .forEach(group -> validateGroup(group.getKey(), group.getValue()));
+
+        numberPatternsByGroupName.forEach(this::saveGroup);
+    }
+
+    private void saveGroup(String groupName, List<String> numberPatterns) {
         List<String> mergedNumberPatterns = mergeWithExistingNumberPatterns(groupName, numberPatterns);
 
         numberGroupRepository.save(groupName, mergedNumberPatterns);
+        groupMembershipCache.patternsAdded(groupName, numberPatterns);
     }
 
 
     private void validateAccount(Account account) {
-        if (hasInvalidName(account) || hasInvalidNumberFormat(account)) {
+        if (isInvalidAccount(account)) {
             throw  new InvalidAccountArgumentsException("Invalid name or number format");
         }
     }
 
+    private boolean isInvalidAccount(Account account) {
+        return hasInvalidName(account) || hasInvalidNumberFormat(account);
+    }
+
     private boolean hasInvalidNumberFormat(Account account) {
-        return !account.getNumber().matches("^\\+\\d{11}$");
+        return !Syntax.isPhoneNumber(account.getNumber());
     }
 
     private boolean hasInvalidName(Account account) {
-        return !account.getName().matches("^number\\d+$");
+        return !Syntax.isNumberName(account.getName());
     }
 
     private void removeAccountIfAlreadyExists(Account account) {
@@ -71,13 +116,13 @@ public class AccountService {
     }
 
     private void hasInvalidNumberPatterns(List<String> numberPatterns) {
-        if (!numberPatterns.stream().anyMatch(p -> p.matches("^\\+\\d{2,11}\\*?$"))) {
+        if (!numberPatterns.stream().anyMatch(Syntax::isNumberPattern)) {
             throw new InvalidGroupNumberPatternException("Invalid number pattern");
         }
     }
 
     private void hasInvalidGroupName(String groupName) {
-        if (!groupName.matches("^group\\d+$")) {
+        if (!Syntax.isGroupName(groupName)) {
             throw new InvalidGroupNameException("Invalid group name");
         }
     }
@@ -0,0 +1,107 @@
+package com.meltwater.smsc.service;
+
+import com.meltwater.smsc.index.NumberPatternTrie;
+import com.meltwater.smsc.model.Account;
+import com.meltwater.smsc.repository.AccountRepository;
+import com.meltwater.smsc.repository.NumberGroupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@Slf4j
+public class GroupMembershipCache {
+
+    private static final int BULK_INVALIDATION_THRESHOLD = 1024;
+
+    private final AccountRepository accountRepository;
+    private final NumberGroupRepository numberGroupRepository;
+
+    private final Map<String, GroupMembers> groups = new HashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public GroupMembershipCache(AccountRepository accountRepository, NumberGroupRepository numberGroupRepository) {
+        this.accountRepository = accountRepository;
+        this.numberGroupRepository = numberGroupRepository;
+    }
+
+    public synchronized List<Account> findMembers(String groupName) {
+        GroupMembers members = groups.get(groupName);
+        if (members != null) {
+            hitCount.incrementAndGet();
+            return new ArrayList<>(members.accountsByNumber.values());
+        }
+
+        missCount.incrementAndGet();
+        Optional<List<String>> numberPatterns = numberGroupRepository.findByGroupName(groupName);
+        if (!numberPatterns.isPresent()) {
+            return Collections.emptyList();
+        }
+
+        log.debug("Resolving members of group {}", groupName);
+        members = new GroupMembers(NumberPatternTrie.compile(numberPatterns.get()));
+        members.addAll(accountRepository.findAllByPatterns(members.patterns));
+        groups.put(groupName, members);
+        return new ArrayList<>(members.accountsByNumber.values());
+    }
+
+    public synchronized void accountRegistered(Account account) {
+        groups.values().forEach(members -> {
+            members.accountsByNumber.remove(account.getNumber());
+            if (members.patterns.matches(account.getNumber())) {
+                members.accountsByNumber.put(account.getNumber(), account);
+            }
+        });
+    }
+
+    /**
+     * Updates the cached groups with a batch of accounts; a large batch drops them instead, to be resolved again on use.
+     */
+    public synchronized void accountsRegistered(Collection<Account> accounts) {
+        if (accounts.size() >= BULK_INVALIDATION_THRESHOLD) {
+            groups.clear();
+        } else {
+            accounts.forEach(this::accountRegistered);
+        }
+    }
+
+    public synchronized void patternsAdded(String groupName, List<String> numberPatterns) {
+        GroupMembers members = groups.get(groupName);
+        if (members != null) {
+            numberPatterns.forEach(members.patterns::add);
+            members.addAll(accountRepository.findAllByPatterns(NumberPatternTrie.compile(numberPatterns)));
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private static final class GroupMembers {
+
+        private final NumberPatternTrie patterns;
+        private final Map<Long, Account> accountsByNumber = new LinkedHashMap<>();
+
+        private GroupMembers(NumberPatternTrie patterns) {
+            this.patterns = patterns;
+        }
+
+        private void addAll(List<Account> accounts) {
+            accounts.forEach(account -> accountsByNumber.putIfAbsent(account.getNumber(), account));
+        }
+    }
+}
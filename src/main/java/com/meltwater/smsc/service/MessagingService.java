@@ -1,60 +1,247 @@
 package com.meltwater.smsc.service;
 
+import com.meltwater.smsc.delivery.DeliverySink;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.metrics.SmscMetrics;
+import com.meltwater.smsc.model.PendingFanOut;
 import com.meltwater.smsc.model.Redelivery;
 import com.meltwater.smsc.repository.RedeliveryRepository;
 import com.meltwater.smsc.repository.SubscriptionRepository;
+import com.meltwater.smsc.scheduler.RedeliveryScheduler;
+import com.meltwater.smsc.scheduler.VirtualClock;
+import com.meltwater.smsc.tracing.MessageTracer;
+import com.meltwater.smsc.tracing.NoOpMessageTracer;
+import com.meltwater.smsc.tracing.Trace;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Optional;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
 
+/**
+ * Delivers messages between numbers encoded by {@link PhoneNumbers}, keeping the ones to offline numbers for redelivery.
+ */
 @Service
 @Slf4j
 public class MessagingService {
 
+    private static final long BROADCAST_PARALLELISM_THRESHOLD = 1024;
+
     private SubscriptionRepository subscriptionRepository;
     private RedeliveryRepository redeliveryRepository;
+    private RedeliveryScheduler redeliveryScheduler;
+    private DeliverySink deliverySink;
+    private Clock clock;
+    private SmscMetrics metrics;
+    private MessageTracer tracer;
+
+    public MessagingService(SubscriptionRepository subscriptionRepository, RedeliveryRepository redeliveryRepository, RedeliveryScheduler redeliveryScheduler,
+                            DeliverySink deliverySink) {
+        this(subscriptionRepository, redeliveryRepository, redeliveryScheduler, deliverySink, Clock.systemUTC());
+    }
+
+    public MessagingService(SubscriptionRepository subscriptionRepository, RedeliveryRepository redeliveryRepository, RedeliveryScheduler redeliveryScheduler,
+                            DeliverySink deliverySink, Clock clock) {
+        this(subscriptionRepository, redeliveryRepository, redeliveryScheduler, deliverySink, clock, new SmscMetrics(clock));
+    }
+
+    public MessagingService(SubscriptionRepository subscriptionRepository, RedeliveryRepository redeliveryRepository, RedeliveryScheduler redeliveryScheduler,
+                            DeliverySink deliverySink, Clock clock, SmscMetrics metrics) {
+        this(subscriptionRepository, redeliveryRepository, redeliveryScheduler, deliverySink, clock, metrics, new NoOpMessageTracer());
+    }
 
-    public MessagingService(SubscriptionRepository subscriptionRepository, RedeliveryRepository redeliveryRepository) {
+    @Autowired
+    public MessagingService(SubscriptionRepository subscriptionRepository, RedeliveryRepository redeliveryRepository, RedeliveryScheduler redeliveryScheduler,
+                            DeliverySink deliverySink, Clock clock, SmscMetrics metrics, MessageTracer tracer) {
 
         this.subscriptionRepository = subscriptionRepository;
         this.redeliveryRepository = redeliveryRepository;
+        this.redeliveryScheduler = redeliveryScheduler;
+        this.deliverySink = deliverySink;
+        this.clock = clock;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        if (clock instanceof VirtualClock) {
+            ((VirtualClock) clock).onAdvance(redeliveryScheduler.getTick(), this::retryDue);
+        }
     }
 
-    public void send(String sourceNumber, String destinationNumber, String message) {
-        log.info("Sending message {} -> {} : {}", sourceNumber, destinationNumber, message);
-
-        Redelivery redelivery = new Redelivery(sourceNumber, destinationNumber, message, Instant.now());
-        if (bothSidesAreSubscribed(sourceNumber, destinationNumber)) {
-            System.out.println(sourceNumber + " -> " + destinationNumber + " : " + message);
+    public void send(long sourceNumber, long destinationNumber, String message) {
+        Trace trace = tracer.beginMessage();
+        Redelivery redelivery = new Redelivery(sourceNumber, destinationNumber, message, clock.instant());
+        log.debug("Sending message {}", redelivery);
+        boolean delivered = bothSidesAreSubscribed(sourceNumber, destinationNumber);
+        if (delivered) {
+            deliver(redelivery);
             redeliveryRepository.delete(redelivery);
         } else {
             saveForRedelivery(redelivery);
+            delivered = redeliverIfSubscribedMeanwhile(redelivery);
+        }
+        tracer.messageSent(trace, sourceNumber, destinationNumber, delivered);
+    }
+
+    public void fanOut(long sourceNumber, long[] destinationNumbers, String message) {
+        if (log.isDebugEnabled()) {
+            log.debug("Fanning out message {} -> {} numbers : {}", PhoneNumbers.decode(sourceNumber), destinationNumbers.length, message);
         }
 
+        LongStream.Builder offline = LongStream.builder();
+        for (long destinationNumber : destinationNumbers) {
+            if (bothSidesAreSubscribed(sourceNumber, destinationNumber)) {
+                send(sourceNumber, destinationNumber, message);
+            } else {
+                offline.add(destinationNumber);
+            }
+        }
+
+        long[] offlineNumbers = offline.build().toArray();
+        if (offlineNumbers.length == 1) {
+            send(sourceNumber, offlineNumbers[0], message);
+        } else if (offlineNumbers.length > 1) {
+            PendingFanOut fanOut = redeliveryRepository.saveFanOut(sourceNumber, offlineNumbers, message, clock.instant());
+            materialize(fanOut, destinationNumber -> bothSidesAreSubscribed(sourceNumber, destinationNumber));
+        }
+    }
+
+    /**
+     * Sends the message to every subscribed number and returns how many they were.
+     */
+    public int broadcast(long sourceNumber, String message) {
+        if (log.isDebugEnabled()) {
+            log.debug("Broadcasting message {} : {}", PhoneNumbers.decode(sourceNumber), message);
+        }
+
+        if (!subscriptionRepository.isSubscribed(sourceNumber)) {
+            LongStream.Builder subscribedNumbers = LongStream.builder();
+            subscriptionRepository.forEachSubscribedNumber(subscribedNumbers::add);
+            long[] destinationNumbers = subscribedNumbers.build().toArray();
+            fanOut(sourceNumber, destinationNumbers, message);
+            return destinationNumbers.length;
+        }
+
+        boolean supersedesPending = redeliveryRepository.countBySource(sourceNumber) > 0;
+        long creationMillis = clock.millis();
+        AtomicInteger recipients = new AtomicInteger();
+        subscriptionRepository.forEachSubscribedBatch(BROADCAST_PARALLELISM_THRESHOLD, destinationNumbers -> {
+            deliverySink.deliverAll(sourceNumber, destinationNumbers, message);
+            for (long destinationNumber : destinationNumbers) {
+                metrics.delivered(creationMillis);
+                if (supersedesPending) {
+                    redeliveryRepository.delete(new Redelivery(sourceNumber, destinationNumber, message));
+                }
+            }
+            recipients.addAndGet(destinationNumbers.length);
+        });
+        return recipients.get();
     }
 
-    @Scheduled(fixedRate = 3000)
-    public void redeliver() {
-        log.info("Redelivering messages");
+    /**
+     * Retries the due redeliveries on wall time. Under a {@link VirtualClock} they are retried at every tick the clock advances by instead.
+     */
+    @Scheduled(fixedRateString = "${smsc.redelivery.tick-millis:100}")
+    public void redeliverDue() {
+        if (!(clock instanceof VirtualClock)) {
+            retryDue();
+        }
+    }
 
-        ArrayList<Redelivery> redeliveries = new ArrayList<>(redeliveryRepository.findAll());
+    public void redeliverTo(long number) {
+        if (log.isDebugEnabled()) {
+            log.debug("Redelivering messages of {}", PhoneNumbers.decode(number));
+        }
+
+        Trace trace = tracer.beginRedelivery();
+        redeliveryRepository.findAllFanOutsByDestination(number).forEach(fanOut -> materialize(fanOut, number));
+        redeliveryRepository.findAllFanOutsBySource(number).forEach(fanOut -> materialize(fanOut, subscriptionRepository::isSubscribed));
+        redeliverAll(redeliveryRepository.findAllByDestination(number));
+        redeliverAll(redeliveryRepository.findAllBySource(number));
+        tracer.redelivered(trace, 1);
+    }
+
+    /**
+     * Redelivers the pending messages of numbers which subscribed together, taking them out of each of their fan-outs at once.
+     */
+    public void redeliverToAll(long[] numbers) {
+        log.debug("Redelivering messages of {} numbers", numbers.length);
+
+        Trace trace = tracer.beginRedelivery();
+        long[] sortedNumbers = LongStream.of(numbers).sorted().distinct().toArray();
+        Set<PendingFanOut> fanOuts = new LinkedHashSet<>();
+        for (long number : sortedNumbers) {
+            fanOuts.addAll(redeliveryRepository.findAllFanOutsByDestination(number));
+        }
+        fanOuts.forEach(fanOut -> materialize(fanOut, destinationNumber -> Arrays.binarySearch(sortedNumbers, destinationNumber) >= 0));
+        for (long number : sortedNumbers) {
+            redeliveryRepository.findAllFanOutsBySource(number).forEach(fanOut -> materialize(fanOut, subscriptionRepository::isSubscribed));
+            redeliverAll(redeliveryRepository.findAllByDestination(number));
+            redeliverAll(redeliveryRepository.findAllBySource(number));
+        }
+        tracer.redelivered(trace, sortedNumbers.length);
+    }
+
+    private void retryDue() {
+        redeliveryScheduler.retryDue(this::retryRedelivery);
+    }
+
+    private boolean bothSidesAreSubscribed(long sourceNumber, long destinationNumber) {
+        return subscriptionRepository.isSubscribed(sourceNumber) && subscriptionRepository.isSubscribed(destinationNumber);
+    }
+
+    private void redeliverAll(List<Redelivery> redeliveries) {
         log.debug("{} messages needs to be redelivered: {}", redeliveries.size(), redeliveries);
+        redeliveries.forEach(this::redeliverIfSubscribedMeanwhile);
+    }
+
+    private boolean retryRedelivery(Redelivery redelivery) {
+        metrics.redeliveryAttempted();
+        return redeliverIfSubscribedMeanwhile(redelivery);
+    }
+
+    private boolean redeliverIfSubscribedMeanwhile(Redelivery redelivery) {
+        if (bothSidesAreSubscribed(redelivery.getSource(), redelivery.getDestination())
+                && redeliveryRepository.delete(redelivery)) {
+            deliver(redelivery);
+            return true;
+        }
+        return false;
+    }
 
-        redeliveries.forEach(r -> send(r.getSource(), r.getDestination(), r.getMessage()));
+    private void deliver(Redelivery redelivery) {
+        deliverySink.deliver(redelivery.getSource(), redelivery.getDestination(), redelivery.getMessage());
+        metrics.delivered(redelivery.getCreationDate() != null ? redelivery.getCreationDate().toEpochMilli() : clock.millis());
     }
 
-    private boolean bothSidesAreSubscribed(String sourceNumber, String destinationNumber) {
-        return subscriptionRepository.countByNumber(sourceNumber) > 0 && subscriptionRepository.countByNumber(destinationNumber) > 0;
+    private void materialize(PendingFanOut fanOut, long destinationNumber) {
+        redeliveryRepository.takeFromFanOut(fanOut, destinationNumber).ifPresent(redeliveryScheduler::schedule);
+        deleteIfSettled(fanOut);
+    }
+
+    private void materialize(PendingFanOut fanOut, LongPredicate ready) {
+        redeliveryRepository.takeAllFromFanOut(fanOut, ready).forEach(redelivery -> {
+            redeliveryScheduler.schedule(redelivery);
+            redeliverIfSubscribedMeanwhile(redelivery);
+        });
+        deleteIfSettled(fanOut);
+    }
+
+    private void deleteIfSettled(PendingFanOut fanOut) {
+        if (fanOut.isSettled()) {
+            redeliveryRepository.deleteFanOut(fanOut);
+        }
     }
 
     private void saveForRedelivery(Redelivery redelivery) {
-        Optional<Redelivery> savedRedelivery = redeliveryRepository.findByItem(redelivery);
-        if (!savedRedelivery.isPresent()) {
-            redeliveryRepository.save(redelivery);
+        if (redeliveryRepository.save(redelivery)) {
+            redeliveryScheduler.schedule(redelivery);
         }
     }
 
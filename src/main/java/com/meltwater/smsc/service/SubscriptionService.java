@@ -2,18 +2,26 @@ package com.meltwater.smsc.service;
 
 import com.meltwater.smsc.exception.NumberMustBeSubscribedException;
 import com.meltwater.smsc.exception.NumberNotRegisteredException;
+import com.meltwater.smsc.metrics.SmscMetrics;
 import com.meltwater.smsc.model.Account;
 import com.meltwater.smsc.repository.AccountRepository;
-import com.meltwater.smsc.repository.NumberGroupRepository;
 import com.meltwater.smsc.repository.SubscriptionRepository;
+import com.meltwater.smsc.tracing.MessageTracer;
+import com.meltwater.smsc.tracing.NoOpMessageTracer;
+import com.meltwater.smsc.tracing.Trace;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.OptionalLong;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 @Service
 @Slf4j
@@ -21,29 +29,66 @@ public class SubscriptionService {
 
     private SubscriptionRepository subscriptionRepository;
     private AccountRepository accountRepository;
-    private NumberGroupRepository numberGroupRepository;
+    private GroupMembershipCache groupMembershipCache;
     private MessagingService messagingService;
+    private SmscMetrics metrics;
+    private MessageTracer tracer;
 
-    public SubscriptionService(SubscriptionRepository subscriptionRepository, AccountRepository accountRepository, NumberGroupRepository numberGroupRepository, MessagingService messagingService) {
+    public SubscriptionService(SubscriptionRepository subscriptionRepository, AccountRepository accountRepository, GroupMembershipCache groupMembershipCache, MessagingService messagingService) {
+        this(subscriptionRepository, accountRepository, groupMembershipCache, messagingService, new SmscMetrics(Clock.systemUTC()));
+    }
+
+    public SubscriptionService(SubscriptionRepository subscriptionRepository, AccountRepository accountRepository, GroupMembershipCache groupMembershipCache, MessagingService messagingService,
+                               SmscMetrics metrics) {
+        this(subscriptionRepository, accountRepository, groupMembershipCache, messagingService, metrics, new NoOpMessageTracer());
+    }
+
+    @Autowired
+    public SubscriptionService(SubscriptionRepository subscriptionRepository, AccountRepository accountRepository, GroupMembershipCache groupMembershipCache, MessagingService messagingService,
+                               SmscMetrics metrics, MessageTracer tracer) {
         this.subscriptionRepository = subscriptionRepository;
         this.accountRepository = accountRepository;
-        this.numberGroupRepository = numberGroupRepository;
+        this.groupMembershipCache = groupMembershipCache;
         this.messagingService = messagingService;
+        this.metrics = metrics;
+        this.tracer = tracer;
     }
 
     public void subscribeNumber(String name) {
-        log.info("Subsribe name: " + name);
+        log.info("Subscribe name: {}", name);
 
         Account account = getAccountNumberByName(name);
 
         subscriptionRepository.save(account.getName(), account.getNumber());
+        messagingService.redeliverTo(account.getNumber());
+    }
+
+    /**
+     * Subscribes the names at once, or none of them when any is not registered, then redelivers the pending messages
+     * of the subscribed numbers in a single pass.
+     */
+    public void subscribeAll(Collection<String> names) {
+        log.info("Subscribing {} names", names.size());
+
+        Map<String, Long> numbersByName = new LinkedHashMap<>();
+        for (String name : names) {
+            Account account = getAccountNumberByName(name);
+            numbersByName.put(account.getName(), account.getNumber());
+        }
+
+        subscriptionRepository.saveAll(numbersByName);
+        messagingService.redeliverToAll(numbersByName.values().stream().mapToLong(Long::longValue).toArray());
     }
 
     public void unsubscribeNumber(String name) {
-        log.info("Unsubscribe name: " + name);
+        log.info("Unsubscribe name: {}", name);
         subscriptionRepository.delete(name);
     }
 
+    public OptionalLong findSubscribedNumber(String name) {
+        return subscriptionRepository.findNumberByName(name);
+    }
+
     public void sendMessage(String sourceName, List<String> destinationNames, String message) {
         log.info("Sending message(s) {} -> {} : {}", sourceName, destinationNames, message);
 
@@ -58,22 +103,35 @@ public class SubscriptionService {
     public void sendGroupMessage(String sourceName, String groupName, String message) {
         log.debug("Sending group message {} -> {} : {}", sourceName, groupName, message);
 
+        Trace trace = tracer.beginGroupMessage();
         isValidSubscription(sourceName);
 
         Account source = getAccountNumberByName(sourceName);
 
-        List<Account> allDestinationAccounts = getAllAccountsByGroup(groupName);
+        long resolutionStart = System.nanoTime();
+        long[] destinationNumbers = groupMembershipCache.findMembers(groupName).stream()
+                .mapToLong(Account::getNumber)
+                .toArray();
+        metrics.groupResolved(System.nanoTime() - resolutionStart);
 
-        allDestinationAccounts.forEach(destination -> sendMessageToDestinations(source, destination.getName(), message));
+        messagingService.fanOut(source.getNumber(), destinationNumbers, message);
+        tracer.groupMessageSent(trace, source.getNumber(), groupName, destinationNumbers.length);
     }
 
     public void broadCastMessage(String sourceName, String message) {
         log.info("Broadcasting message {} : {}", sourceName, message);
 
+        Trace trace = tracer.beginBroadcast();
         isValidSubscription(sourceName);
 
         Account source = getAccountNumberByName(sourceName);
-        accountRepository.findAll().forEach(destination -> sendMessageToDestinations(source, destination.getName(), message));
+        LongStream.Builder offline = LongStream.builder();
+        accountRepository.forEachUnsubscribedNumber(subscriptionRepository, offline::add);
+        long[] offlineNumbers = offline.build().toArray();
+
+        messagingService.fanOut(source.getNumber(), offlineNumbers, message);
+        int subscribedRecipients = messagingService.broadcast(source.getNumber(), message);
+        tracer.broadcast(trace, source.getNumber(), offlineNumbers.length + subscribedRecipients);
     }
 
 
@@ -89,32 +147,6 @@ public class SubscriptionService {
                 .orElseThrow(throwNumberNotRegistered());
     }
 
-    private List<Account> getAllAccountsByGroup(String groupName) {
-        Optional<List<String>> numbersByGroup = numberGroupRepository.findByGroupName(groupName);
-        List<Account> allDestinationAccounts = new ArrayList<>();
-        numbersByGroup.ifPresent(numbers -> {
-            List<String> wildcardNumbers = getWildcardNumbers(numbers);
-            numbers.removeAll(wildcardNumbers);
-            allDestinationAccounts.addAll(accountRepository.findAllByNumbers(numbers));
-            allDestinationAccounts.addAll(unfold(wildcardNumbers));
-        });
-        return allDestinationAccounts;
-    }
-
-    private List<Account> unfold(List<String> numbers) {
-        return numbers.stream()
-                .map(n -> n.replace("*",""))
-                .map(accountRepository::findByNumbersLike)
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
-    }
-
-    private List<String> getWildcardNumbers(List<String> numbers) {
-        return numbers.stream()
-                        .filter(number -> number.endsWith("*"))
-                        .collect(Collectors.toList());
-    }
-
     private Supplier<NumberNotRegisteredException> throwNumberNotRegistered() {
         return () -> new NumberNotRegisteredException("Number is not registered");
     }
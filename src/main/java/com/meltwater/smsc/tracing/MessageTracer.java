@@ -0,0 +1,31 @@
+package com.meltwater.smsc.tracing;
+
+import com.meltwater.smsc.command.CommandType;
+
+/**
+ * Traces the lifecycle of commands and messages for profiling. Callers begin a trace when the operation starts and pass
+ * it back with the numbers encoded when the operation ended, so a disabled tracer costs nothing beyond those calls and
+ * must not allocate: it returns {@link Trace#NONE}.
+ */
+public interface MessageTracer {
+
+    Trace beginCommand();
+
+    void commandExecuted(Trace trace, CommandType type);
+
+    Trace beginMessage();
+
+    void messageSent(Trace trace, long sourceNumber, long destinationNumber, boolean delivered);
+
+    Trace beginGroupMessage();
+
+    void groupMessageSent(Trace trace, long sourceNumber, String groupName, int recipients);
+
+    Trace beginBroadcast();
+
+    void broadcast(Trace trace, long sourceNumber, int recipients);
+
+    Trace beginRedelivery();
+
+    void redelivered(Trace trace, int destinations);
+}
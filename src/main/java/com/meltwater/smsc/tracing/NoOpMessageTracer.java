@@ -0,0 +1,54 @@
+package com.meltwater.smsc.tracing;
+
+import com.meltwater.smsc.command.CommandType;
+
+/**
+ * Traces nothing, the default.
+ */
+public class NoOpMessageTracer implements MessageTracer {
+
+    @Override
+    public Trace beginCommand() {
+        return Trace.NONE;
+    }
+
+    @Override
+    public void commandExecuted(Trace trace, CommandType type) {
+    }
+
+    @Override
+    public Trace beginMessage() {
+        return Trace.NONE;
+    }
+
+    @Override
+    public void messageSent(Trace trace, long sourceNumber, long destinationNumber, boolean delivered) {
+    }
+
+    @Override
+    public Trace beginGroupMessage() {
+        return Trace.NONE;
+    }
+
+    @Override
+    public void groupMessageSent(Trace trace, long sourceNumber, String groupName, int recipients) {
+    }
+
+    @Override
+    public Trace beginBroadcast() {
+        return Trace.NONE;
+    }
+
+    @Override
+    public void broadcast(Trace trace, long sourceNumber, int recipients) {
+    }
+
+    @Override
+    public Trace beginRedelivery() {
+        return Trace.NONE;
+    }
+
+    @Override
+    public void redelivered(Trace trace, int destinations) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.meltwater.smsc.tracing;
+
+/**
+ * An operation being traced, begun by a {@link MessageTracer} when the operation started and passed back to it when
+ * the operation ended.
+ */
+public interface Trace {
+
+    Trace NONE = new Trace() {
+    };
+}
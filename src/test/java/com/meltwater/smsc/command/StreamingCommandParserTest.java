@@ -0,0 +1,128 @@
+package com.meltwater.smsc.command;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingCommandParserTest {
+
+    private static final List<String> LINES = Arrays.asList(
+            "number1 +36991212321",
+            "number12 +3699121232",
+            "number +36991212321",
+            "1number +36991212321",
+            "number1 +36991212321 ",
+            "number1  +36991212321",
+            "subscribe number1",
+            "subscribe number1 ",
+            "subscribe1 number1",
+            "unsubscribe number3",
+            "unsubscribe numberx",
+            "group1 +3699123*",
+            "group1 +3699123*,+36991212321,,",
+            "group1 ,,",
+            "group1 ",
+            "group1",
+            "groupx +3699123*",
+            "message number1 number2 \"Hi Ann, pub this evening will be fine\"",
+            "message number1 number2,number4 \"guys, I'm back at work now...\"",
+            "message number1 number2,number3 \"say \"hi\" to \"them\"\" trailing",
+            "message number1  \"empty destinations\"",
+            "message number1 , \"only separator\"",
+            "message number1 number2 \"unterminated",
+            "message group1 \"The world is great, still haven't planned your vacation?\"",
+            "message number5 broadcast \"New phone service... check it out now!\"",
+            "message1 number5 broadcast \"x\"",
+            "sleep 2",
+            "sleep +5 seconds",
+            "sleep",
+            "sleep  5",
+            "sleep five",
+            "sle1ep 3",
+            "unknown operation",
+            "send number1",
+            " number1 +36991212321",
+            "4 2");
+
+    private final RegexCommandParser regexCommandParser = new RegexCommandParser();
+    private final StreamingCommandParser streamingCommandParser = new StreamingCommandParser();
+
+    @Test
+    public void shouldParseSameCommandsAsRegexParser() {
+        LINES.forEach(this::assertSameCommand);
+    }
+
+    @Test
+    public void shouldParseSameCommandsAsRegexParserForRandomLines() {
+        Random random = new Random(42);
+        String[] tokens = {"number1", "number", "group2", "subscribe", "unsubscribe", "message", "sleep", "broadcast",
+                "+36991212321", "+3699123*", "7", "\"", " \"", ",", " ", "", "x"};
+
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder line = new StringBuilder(tokens[random.nextInt(7)]);
+            for (int j = random.nextInt(6); j > 0; j--) {
+                line.append(random.nextBoolean() ? " " : "").append(tokens[random.nextInt(tokens.length)]);
+            }
+            if (line.length() > 0) {
+                assertSameCommand(line.toString());
+            }
+        }
+    }
+
+    @Test
+    public void shouldExtractMessageFields() {
+        Command command = streamingCommandParser.parse("message number1 number2,number4 \"guys, I'm back at work now...\"");
+
+        assertTrue(command.isValid());
+        assertEquals(CommandType.MESSAGE, command.getType());
+        assertEquals("number1", command.getName());
+        assertEquals(Arrays.asList("number2", "number4"), command.getTargets());
+        assertEquals("guys, I'm back at work now...", command.getMessage());
+    }
+
+    @Test
+    public void shouldRejectMalformedLineOfKnownOperation() {
+        Command command = streamingCommandParser.parse("number1 3699");
+
+        assertFalse(command.isValid());
+        assertEquals(CommandType.NUMBER, command.getType());
+    }
+
+    @Test
+    public void shouldReportUnknownOperationWithoutDigits() {
+        Command command = streamingCommandParser.parse("send1 number1");
+
+        assertEquals(CommandType.UNKNOWN, command.getType());
+        assertEquals("send", command.getName());
+    }
+
+    @Test
+    public void shouldValidateSyntaxElementsLikeRegularExpressions() {
+        for (String text : Arrays.asList("+36991212321", "+3699121232", "+369912123211", "36991212321", "+3699123*", "+36*", "+3*",
+                "+36991212321*", "+369912123211*", "+", "*", "", "number1", "number", "numbers1", "group12", "group", "group1a")) {
+            assertEquals(text, text.matches("^\\+\\d{11}$"), Syntax.isPhoneNumber(text));
+            assertEquals(text, text.matches("^\\+\\d{2,11}\\*?$"), Syntax.isNumberPattern(text));
+            assertEquals(text, text.matches("^number\\d+$"), Syntax.isNumberName(text));
+            assertEquals(text, text.matches("^group\\d+$"), Syntax.isGroupName(text));
+        }
+    }
+
+    private void assertSameCommand(String line) {
+        Command expected = regexCommandParser.parse(line);
+        Command actual = streamingCommandParser.parse(line);
+
+        assertEquals(line, expected.getType(), actual.getType());
+        assertEquals(line, expected.isValid(), actual.isValid());
+        assertEquals(line, expected.getName(), actual.getName());
+        assertEquals(line, expected.getNumber(), actual.getNumber());
+        assertEquals(line, expected.getTargets(), actual.getTargets());
+        assertEquals(line, expected.getMessage(), actual.getMessage());
+        assertEquals(line, expected.getSeconds(), actual.getSeconds());
+    }
+}
@@ -0,0 +1,85 @@
+package com.meltwater.smsc.delivery;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelDeliverySinkTest {
+
+    private Path outputFile;
+
+    @Before
+    public void setUp() throws IOException {
+        outputFile = Files.createTempFile("deliveries", ".log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Test
+    public void shouldWriteAcknowledgementsInConsoleFormatOnClose() throws IOException {
+        try (ChannelDeliverySink sink = ChannelDeliverySink.file(outputFile, 1 << 16, 60_000)) {
+            sink.deliver(PhoneNumbers.encode("+36991212321"), PhoneNumbers.encode("+36991234321"), "Hi Ann, pub this evening will be fine");
+            sink.deliver(PhoneNumbers.encode("+36991234567"), PhoneNumbers.encode("+36991212121"), "guys, I'm back at work now...");
+
+            assertEquals(0, Files.size(outputFile));
+        }
+
+        assertEquals(Arrays.asList(
+                "+36991212321 -> +36991234321 : Hi Ann, pub this evening will be fine",
+                "+36991234567 -> +36991212121 : guys, I'm back at work now..."),
+                Files.readAllLines(outputFile, Charset.defaultCharset()));
+    }
+
+    @Test
+    public void shouldWriteAnAcknowledgementPerDestination() throws IOException {
+        try (ChannelDeliverySink sink = ChannelDeliverySink.file(outputFile, 1 << 16, 60_000)) {
+            sink.deliverAll(PhoneNumbers.encode("+36991212321"),
+                    new long[]{PhoneNumbers.encode("+36991234321"), PhoneNumbers.encode("+36991212121")}, "Hello everyone");
+        }
+
+        assertEquals(Arrays.asList(
+                "+36991212321 -> +36991234321 : Hello everyone",
+                "+36991212321 -> +36991212121 : Hello everyone"),
+                Files.readAllLines(outputFile, Charset.defaultCharset()));
+    }
+
+    @Test
+    public void shouldFlushWhenBatchIsFull() throws IOException {
+        try (ChannelDeliverySink sink = ChannelDeliverySink.file(outputFile, 64, 60_000)) {
+            for (int i = 0; i < 10; i++) {
+                sink.deliver(PhoneNumbers.encode("+36991212321"), PhoneNumbers.encode("+36991234321"), "message " + i);
+            }
+
+            assertTrue(Files.size(outputFile) > 0);
+        }
+
+        assertEquals(10, Files.readAllLines(outputFile, Charset.defaultCharset()).size());
+    }
+
+    @Test
+    public void shouldFlushWhenIntervalElapses() throws IOException, InterruptedException {
+        try (ChannelDeliverySink sink = ChannelDeliverySink.file(outputFile, 1 << 16, 10)) {
+            sink.deliver(PhoneNumbers.encode("+36991212321"), PhoneNumbers.encode("+36991234321"), "anyMessage");
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (Files.size(outputFile) == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(Files.size(outputFile) > 0);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.meltwater.smsc.execution;
+
+import com.meltwater.smsc.command.Command;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedCommandExecutorTest {
+
+    @Test
+    public void shouldKeepMessageOrderOfEachSender() {
+        Map<String, List<String>> messagesBySender = new ConcurrentHashMap<>();
+
+        try (PartitionedCommandExecutor executor = new PartitionedCommandExecutor(command ->
+                messagesBySender.computeIfAbsent(command.getName(), n -> new CopyOnWriteArrayList<>()).add(command.getMessage()), 4, 8)) {
+            for (int i = 0; i < 1000; i++) {
+                executor.execute(message("number" + i % 10, String.valueOf(i)));
+            }
+        }
+
+        assertEquals(10, messagesBySender.size());
+        messagesBySender.forEach((sender, messages) -> {
+            assertEquals(100, messages.size());
+            for (int i = 1; i < messages.size(); i++) {
+                assertTrue(Integer.parseInt(messages.get(i - 1)) < Integer.parseInt(messages.get(i)));
+            }
+        });
+    }
+
+    @Test
+    public void shouldExecuteRegistryMutationsAfterPreviousMessages() {
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+        try (PartitionedCommandExecutor executor = new PartitionedCommandExecutor(command -> executed.add(command.getLine()), 3, 2)) {
+            for (int i = 0; i < 50; i++) {
+                executor.execute(message("number" + i, "before"));
+            }
+            executor.execute(Command.subscribe("subscribe number1", "number1"));
+            for (int i = 0; i < 50; i++) {
+                executor.execute(message("number" + i, "after"));
+            }
+        }
+
+        assertEquals(101, executed.size());
+        assertEquals("subscribe number1", executed.get(50));
+        assertTrue(executed.subList(0, 50).stream().allMatch(line -> line.contains("\"before\"")));
+        assertTrue(executed.subList(51, 101).stream().allMatch(line -> line.contains("\"after\"")));
+    }
+
+    @Test
+    public void shouldContinueAfterFailedCommand() {
+        List<String> executed = new CopyOnWriteArrayList<>();
+
+        try (PartitionedCommandExecutor executor = new PartitionedCommandExecutor(command -> {
+            if (command.getMessage().equals("fail")) {
+                throw new IllegalStateException("failed");
+            }
+            executed.add(command.getMessage());
+        }, 1, 4)) {
+            executor.execute(message("number1", "fail"));
+            executor.execute(message("number1", "ok"));
+        }
+
+        assertEquals(Collections.singletonList("ok"), executed);
+    }
+
+    private Command message(String sourceName, String message) {
+        return Command.message("message " + sourceName + " number0 \"" + message + "\"", sourceName,
+                Collections.singletonList("number0"), message);
+    }
+}
@@ -0,0 +1,98 @@
+package com.meltwater.smsc.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentBitmapTest {
+
+    private final ConcurrentBitmap bitmap = new ConcurrentBitmap();
+
+    @Test
+    public void shouldSetAndClearBitsBeyondInitialCapacity() {
+        assertTrue(bitmap.set(3));
+        assertTrue(bitmap.set(100_000));
+        assertFalse(bitmap.set(3));
+
+        assertTrue(bitmap.get(3));
+        assertTrue(bitmap.get(100_000));
+        assertFalse(bitmap.get(4));
+        assertFalse(bitmap.get(-1));
+        assertFalse(bitmap.get(1_000_000));
+        assertEquals(2, bitmap.cardinality());
+
+        assertTrue(bitmap.clear(3));
+        assertFalse(bitmap.clear(3));
+        assertFalse(bitmap.get(3));
+        assertEquals(1, bitmap.cardinality());
+    }
+
+    @Test
+    public void shouldVisitEverySetBitOnceInParallel() {
+        for (int i = 0; i < 100_000; i += 3) {
+            bitmap.set(i);
+        }
+
+        Set<Integer> visited = ConcurrentHashMap.newKeySet();
+        bitmap.forEachSetBit(true, index -> assertTrue(visited.add(index)));
+
+        assertEquals(bitmap.cardinality(), visited.size());
+        assertTrue(visited.stream().allMatch(index -> index % 3 == 0));
+    }
+
+    @Test
+    public void shouldVisitSetBitsInAscendingOrderSequentially() {
+        bitmap.set(130);
+        bitmap.set(5);
+        bitmap.set(64);
+
+        List<Integer> visited = new ArrayList<>();
+        bitmap.forEachSetBit(false, visited::add);
+
+        List<Integer> expected = new ArrayList<>(visited);
+        Collections.sort(expected);
+        assertEquals(expected, visited);
+        assertEquals(3, visited.size());
+    }
+
+    @Test
+    public void shouldVisitEverySetBitOnceInParallelBatches() {
+        for (int i = 0; i < 100_000; i += 3) {
+            bitmap.set(i);
+        }
+
+        Set<Integer> visited = ConcurrentHashMap.newKeySet();
+        bitmap.forEachSetBitBatch(true, batch -> {
+            assertTrue(batch.length > 0);
+            for (int index : batch) {
+                assertTrue(visited.add(index));
+            }
+        });
+
+        assertEquals(bitmap.cardinality(), visited.size());
+    }
+
+    @Test
+    public void shouldVisitSetBitsNotInTheExcludedBitmap() {
+        ConcurrentBitmap excluded = new ConcurrentBitmap();
+        bitmap.set(5);
+        bitmap.set(64);
+        bitmap.set(100_000);
+        excluded.set(64);
+        excluded.set(70);
+
+        List<Integer> visited = new ArrayList<>();
+        bitmap.forEachSetBitNotIn(excluded, visited::add);
+
+        assertEquals(Arrays.asList(5, 100_000), visited);
+    }
+}
@@ -0,0 +1,50 @@
+package com.meltwater.smsc.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NumberPatternTrieTest {
+
+    private static final String NUMBER_1 = "+36991212321";
+    private static final String NUMBER_2 = "+36991234321";
+    private static final String NUMBER_3 = "+36991234567";
+    private static final String NUMBER_4 = "+36201234567";
+
+    @Test
+    public void shouldMatchExactAndWildcardPatterns() {
+        NumberPatternTrie patterns = NumberPatternTrie.compile(Arrays.asList(NUMBER_1, "+3699123*"));
+
+        assertTrue(patterns.matches(NUMBER_1));
+        assertTrue(patterns.matches(NUMBER_2));
+        assertTrue(patterns.matches(NUMBER_3));
+        assertFalse(patterns.matches(NUMBER_4));
+        assertFalse(patterns.matches("+3699121"));
+    }
+
+    @Test
+    public void shouldIgnoreInvalidPatterns() {
+        NumberPatternTrie patterns = NumberPatternTrie.compile(Arrays.asList("789+x", "+36*9"));
+
+        assertTrue(patterns.isEmpty());
+        assertFalse(patterns.matches(NUMBER_1));
+    }
+
+    @Test
+    public void shouldVisitEachNumberOnceForOverlappingPatterns() {
+        DigitTrie<String> numbers = new DigitTrie<>();
+        Arrays.asList(NUMBER_1, NUMBER_2, NUMBER_3, NUMBER_4).forEach(n -> numbers.put(n, n));
+        NumberPatternTrie patterns = NumberPatternTrie.compile(Arrays.asList("+3699123*", NUMBER_2, "+36991234*", NUMBER_4, "+369912343*"));
+
+        List<String> matches = new ArrayList<>();
+        patterns.forEachMatch(numbers, matches::add);
+
+        assertEquals(Arrays.asList(NUMBER_4, NUMBER_2, NUMBER_3), matches);
+    }
+}
@@ -0,0 +1,50 @@
+package com.meltwater.smsc.ingest;
+
+import com.meltwater.smsc.exception.InvalidAccountArgumentsException;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Account;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class AccountCsvReaderTest {
+
+    private Path csvFile;
+
+    @Before
+    public void setUp() throws IOException {
+        csvFile = Files.createTempFile("accounts", ".csv");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csvFile);
+    }
+
+    @Test
+    public void shouldReadAccountsSkippingHeaderAndBlankLines() throws IOException {
+        write("name,number\r\nnumber1,+36991212321\n\n number2 , +36991234321 \n");
+
+        assertEquals(Arrays.asList(new Account("number1", PhoneNumbers.encode("+36991212321")), new Account("number2", PhoneNumbers.encode("+36991234321"))),
+                new AccountCsvReader().read(csvFile));
+    }
+
+    @Test(expected = InvalidAccountArgumentsException.class)
+    public void shouldRejectLinesWithoutNameAndNumber() throws IOException {
+        write("number1,+36991212321\nnumber2 +36991234321\n");
+
+        new AccountCsvReader().read(csvFile);
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(csvFile, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,146 @@
+package com.meltwater.smsc.ingest;
+
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.StreamingCommandParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommandFileFollowerTest {
+
+    private Path directory;
+    private Path checkpoint;
+    private List<String> lines = Collections.synchronizedList(new ArrayList<>());
+    private AtomicInteger commits = new AtomicInteger();
+    private CommandFileFollower follower;
+    private Thread following;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("follow");
+        checkpoint = directory.resolve("ingest.checkpoint");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadCompleteLinesAppendedToTheFile() throws Exception {
+        Path file = directory.resolve("commands.txt");
+        append(file, "number1 +36991212321\r\nsubscribe number1\nsubscr");
+        start(file);
+        await(() -> lines.size() == 2);
+
+        append(file, "ibe number2\n\nunsubscribe number1\n");
+        await(() -> lines.size() == 4);
+
+        assertEquals(Arrays.asList("number1 +36991212321", "subscribe number1", "subscribe number2", "unsubscribe number1"), lines);
+    }
+
+    @Test
+    public void shouldResumeAfterTheCheckpoint() throws Exception {
+        Path file = directory.resolve("commands.txt");
+        append(file, "subscribe number1\nsubscribe number2\n");
+        start(file);
+        await(() -> lines.size() == 2);
+        stop();
+        assertTrue(commits.get() > 0);
+
+        append(file, "subscribe number3\n");
+        start(file);
+        await(() -> lines.size() == 3);
+
+        assertEquals(Arrays.asList("subscribe number1", "subscribe number2", "subscribe number3"), lines);
+    }
+
+    @Test
+    public void shouldFollowFilesCreatedInTheSpoolDirectory() throws Exception {
+        Path spool = Files.createDirectory(directory.resolve("spool"));
+        append(spool.resolve("a.txt"), "subscribe number1\n");
+        start(spool);
+        await(() -> lines.size() == 1);
+
+        append(spool.resolve("b.txt"), "subscribe number2\n");
+        await(() -> lines.size() == 2);
+        append(spool.resolve("a.txt"), "subscribe number3\n");
+        await(() -> lines.size() == 3);
+
+        assertEquals(Arrays.asList("subscribe number1", "subscribe number2", "subscribe number3"), lines);
+    }
+
+    @Test
+    public void shouldSkipTooLongLines() throws Exception {
+        Path file = directory.resolve("commands.txt");
+        char[] tooLong = new char[200];
+        Arrays.fill(tooLong, 'x');
+        append(file, "subscribe number1\n" + new String(tooLong));
+        start(file);
+        await(() -> lines.size() == 1);
+
+        append(file, new String(tooLong) + "\nsubscribe number2\n");
+        await(() -> lines.size() == 2);
+
+        assertEquals(Arrays.asList("subscribe number1", "subscribe number2"), lines);
+    }
+
+    private void start(Path path) throws IOException {
+        follower = new CommandFileFollower(new StreamingCommandParser(), checkpoint, 20, 0, 64);
+        CommandFileFollower started = follower;
+        following = new Thread(() -> {
+            try {
+                started.follow(Collections.singletonList(path), command -> lines.add(command.getLine()), commits::incrementAndGet);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        following.start();
+    }
+
+    private void stop() throws Exception {
+        if (follower != null) {
+            follower.close();
+            following.join(TimeUnit.SECONDS.toMillis(10));
+            follower = null;
+        }
+    }
+
+    private static void append(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.meltwater.smsc.ingest;
+
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.StreamingCommandParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedCommandFileReaderTest {
+
+    private Path inputFile;
+
+    @Before
+    public void setUp() throws IOException {
+        inputFile = Files.createTempFile("commands", ".txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inputFile);
+    }
+
+    @Test
+    public void shouldReadLinesInFileOrderAcrossChunks() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("number").append(i).append(" +369912").append(String.format("%05d", i)).append(i % 3 == 0 ? "\r\n" : "\n");
+            content.append(i % 7 == 0 ? "\n" : "");
+            content.append("message number").append(i).append(" number1 \"\u00e1rv\u00edzt\u0171r\u0151 t\u00fck\u00f6rf\u00far\u00f3g\u00e9p ").append(i).append("\"\n");
+        }
+        content.append("sleep 1");
+        Files.write(inputFile, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<String> expectedLines = Files.lines(inputFile).filter(l -> !l.isEmpty()).collect(Collectors.toList());
+
+        assertEquals(expectedLines, readLines(new MappedCommandFileReader(new StreamingCommandParser(), 3, 64)));
+        assertEquals(expectedLines, readLines(new MappedCommandFileReader(new StreamingCommandParser(), 1, 1 << 20)));
+    }
+
+    @Test
+    public void shouldReadLineLongerThanChunk() throws IOException {
+        String longLine = "message number1 number2 \"" + new String(new char[300]).replace('\0', 'x') + "\"";
+        Files.write(inputFile, ("subscribe number1\n" + longLine + "\nsubscribe number2\n").getBytes(StandardCharsets.UTF_8));
+
+        List<String> lines = readLines(new MappedCommandFileReader(new StreamingCommandParser(), 2, 16));
+
+        assertEquals(3, lines.size());
+        assertEquals(longLine, lines.get(1));
+    }
+
+    @Test
+    public void shouldReadEmptyFile() throws IOException {
+        assertEquals(0, readLines(new MappedCommandFileReader(new StreamingCommandParser(), 2, 16)).size());
+    }
+
+    private List<String> readLines(MappedCommandFileReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        reader.read(inputFile, (Command command) -> lines.add(command.getLine()));
+        return lines;
+    }
+}
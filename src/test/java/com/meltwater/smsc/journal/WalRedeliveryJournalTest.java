@@ -0,0 +1,160 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.PendingFanOut;
+import com.meltwater.smsc.model.Redelivery;
+import com.meltwater.smsc.repository.NumberDictionary;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WalRedeliveryJournalTest {
+
+    private static final long NUMBER_1 = PhoneNumbers.encode("+36991212321");
+    private static final long NUMBER_2 = PhoneNumbers.encode("+36991234321");
+    private static final long NUMBER_3 = PhoneNumbers.encode("+36991234567");
+    private static final Instant CREATION_DATE = Instant.ofEpochMilli(1_500_000_000_000L);
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRecoverPendingRedeliveriesAndFanOuts() throws IOException {
+        try (WalRedeliveryJournal journal = openJournal()) {
+            RedeliveryRepository redeliveryRepository = new RedeliveryRepository(new NumberDictionary(), journal);
+            redeliveryRepository.save(new Redelivery(NUMBER_1, NUMBER_2, "first", CREATION_DATE));
+            redeliveryRepository.save(new Redelivery(NUMBER_1, NUMBER_3, "second", CREATION_DATE));
+            redeliveryRepository.delete(new Redelivery(NUMBER_1, NUMBER_2, "first"));
+
+            PendingFanOut fanOut = redeliveryRepository.saveFanOut(NUMBER_3, new long[]{NUMBER_1, NUMBER_2}, "broadcast", CREATION_DATE);
+            redeliveryRepository.takeFromFanOut(fanOut, NUMBER_1);
+        }
+
+        try (WalRedeliveryJournal journal = openJournal()) {
+            RedeliveryRepository recovered = new RedeliveryRepository(new NumberDictionary(), journal);
+
+            assertEquals(Arrays.asList(new Redelivery(NUMBER_1, NUMBER_3, "second"), new Redelivery(NUMBER_3, NUMBER_1, "broadcast")),
+                    recovered.findAll());
+            assertEquals(CREATION_DATE, recovered.findAll().get(0).getCreationDate());
+            List<PendingFanOut> fanOuts = recovered.findAllFanOuts();
+            assertEquals(1, fanOuts.size());
+            assertEquals(Collections.singletonList(new Redelivery(NUMBER_3, NUMBER_2, "broadcast")),
+                    recovered.takeAllFromFanOut(fanOuts.get(0), number -> true));
+        }
+
+        try (WalRedeliveryJournal journal = openJournal()) {
+            RedeliveryRepository recovered = new RedeliveryRepository(new NumberDictionary(), journal);
+
+            assertTrue(recovered.findAllFanOuts().isEmpty());
+            assertEquals(3, recovered.count());
+        }
+    }
+
+    @Test
+    public void shouldNotLoseRecipientTakenWhileTheFanOutSettlesConcurrently() throws Exception {
+        try (WalRedeliveryJournal journal = openJournal()) {
+            RedeliveryRepository redeliveryRepository = new RedeliveryRepository(new NumberDictionary(), journal);
+            for (int i = 0; i < 1000; i++) {
+                PendingFanOut fanOut = redeliveryRepository.saveFanOut(NUMBER_3, new long[]{NUMBER_1, NUMBER_2}, "message " + i, CREATION_DATE);
+                Thread taking = new Thread(() -> redeliveryRepository.takeFromFanOut(fanOut, NUMBER_1));
+                taking.start();
+                redeliveryRepository.takeAllFromFanOut(fanOut, number -> true);
+                taking.join();
+                redeliveryRepository.deleteFanOut(fanOut);
+            }
+        }
+
+        try (WalRedeliveryJournal journal = openJournal()) {
+            RedeliveryRepository recovered = new RedeliveryRepository(new NumberDictionary(), journal);
+
+            assertTrue(recovered.findAllFanOuts().isEmpty());
+            assertEquals(2000, recovered.count());
+        }
+    }
+
+    @Test
+    public void shouldCompactLogOfDeliveredRedeliveries() throws IOException {
+        try (WalRedeliveryJournal journal = openJournal()) {
+            for (int i = 0; i < 50_000; i++) {
+                Redelivery redelivery = new Redelivery(NUMBER_1, NUMBER_2, "message " + i, CREATION_DATE);
+                journal.enqueued(redelivery);
+                journal.delivered(redelivery);
+            }
+            journal.enqueued(new Redelivery(NUMBER_2, NUMBER_1, "pending", CREATION_DATE));
+        }
+        long logBytes = logBytes();
+
+        try (WalRedeliveryJournal journal = openJournal()) {
+            assertEquals(1, new RedeliveryRepository(new NumberDictionary(), journal).count());
+        }
+
+        assertTrue(logBytes() < logBytes / 1000);
+        try (WalRedeliveryJournal journal = openJournal()) {
+            assertEquals(Collections.singletonList(new Redelivery(NUMBER_2, NUMBER_1, "pending")),
+                    new RedeliveryRepository(new NumberDictionary(), journal).findAll());
+        }
+    }
+
+    @Test
+    public void shouldCompactLogWhileAppending() throws IOException {
+        long logBytes;
+        try (WalRedeliveryJournal journal = openJournal()) {
+            RedeliveryRepository redeliveryRepository = new RedeliveryRepository(new NumberDictionary(), journal);
+            PendingFanOut fanOut = redeliveryRepository.saveFanOut(NUMBER_3, new long[]{NUMBER_1, NUMBER_2}, "broadcast", CREATION_DATE);
+            for (int i = 0; i < 100_000; i++) {
+                Redelivery redelivery = new Redelivery(NUMBER_1, NUMBER_2, "message " + i, CREATION_DATE);
+                redeliveryRepository.save(redelivery);
+                redeliveryRepository.delete(redelivery);
+            }
+            redeliveryRepository.takeFromFanOut(fanOut, NUMBER_1);
+            logBytes = logBytes();
+        }
+
+        assertTrue(logBytes < 1 << 20);
+        try (WalRedeliveryJournal journal = openJournal()) {
+            RedeliveryRepository recovered = new RedeliveryRepository(new NumberDictionary(), journal);
+
+            assertEquals(Collections.singletonList(new Redelivery(NUMBER_3, NUMBER_1, "broadcast")), recovered.findAll());
+            assertEquals(Collections.singletonList(new Redelivery(NUMBER_3, NUMBER_2, "broadcast")),
+                    recovered.takeAllFromFanOut(recovered.findAllFanOuts().get(0), number -> true));
+        }
+    }
+
+    private WalRedeliveryJournal openJournal() throws IOException {
+        return new WalRedeliveryJournal(new WriteAheadLog(directory, "redeliveries", 1 << 20, 1 << 16, FsyncPolicy.NEVER, 100));
+    }
+
+    private long logBytes() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.meltwater.smsc.journal;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Account;
+import com.meltwater.smsc.repository.IndexedAccountRepository;
+import com.meltwater.smsc.repository.NumberDictionary;
+import com.meltwater.smsc.repository.NumberGroupRepository;
+import com.meltwater.smsc.repository.SubscriptionRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WalRegistryJournalTest {
+
+    private static final long NUMBER_1 = PhoneNumbers.encode("+36991212321");
+    private static final long NUMBER_2 = PhoneNumbers.encode("+36991234321");
+    private static final long NUMBER_3 = PhoneNumbers.encode("+36991234567");
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 3_600_000;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRecoverRegistryFromJournal() throws IOException {
+        try (WalRegistryJournal journal = openJournal()) {
+            register(journal);
+        }
+
+        try (WalRegistryJournal journal = openJournal()) {
+            assertRegistered(journal);
+        }
+    }
+
+    @Test
+    public void shouldRecoverRegistryFromSnapshotAndJournalWrittenAfterIt() throws IOException {
+        try (WalRegistryJournal journal = openJournal()) {
+            register(journal);
+            journal.snapshot();
+        }
+
+        try (WalRegistryJournal journal = openJournal()) {
+            IndexedAccountRepository accountRepository = new IndexedAccountRepository(new NumberDictionary(), journal);
+            accountRepository.delete(new Account("alice", NUMBER_1));
+            accountRepository.save(new Account("alice", NUMBER_3));
+            new NumberGroupRepository(journal).deleteByGroupName("testers");
+        }
+
+        try (WalRegistryJournal journal = openJournal()) {
+            IndexedAccountRepository accountRepository = new IndexedAccountRepository(new NumberDictionary(), journal);
+            assertEquals(Arrays.asList(new Account("bob", NUMBER_2), new Account("alice", NUMBER_3)), accountRepository.findAll());
+            assertFalse(new NumberGroupRepository(journal).findByGroupName("testers").isPresent());
+            assertEquals(2, new SubscriptionRepository(new NumberDictionary(), journal).countByNumber(NUMBER_2));
+        }
+    }
+
+    @Test
+    public void shouldDeleteJournalCoveredBySnapshot() throws IOException {
+        try (WalRegistryJournal journal = openJournal()) {
+            register(journal);
+            journal.snapshot();
+            assertEquals(Collections.singletonList("registry-0000000001.snapshot"), files());
+
+            new IndexedAccountRepository(new NumberDictionary(), journal).save(new Account("carol", NUMBER_3));
+            journal.snapshot();
+            journal.snapshot();
+            assertEquals(Collections.singletonList("registry-0000000002.snapshot"), files());
+        }
+
+        try (WalRegistryJournal journal = openJournal()) {
+            assertEquals(Optional.of(new Account("carol", NUMBER_3)), new IndexedAccountRepository(new NumberDictionary(), journal).findByNumber(NUMBER_3));
+        }
+    }
+
+    @Test
+    public void shouldRecoverAccountsAndSubscriptionsSavedInBulk() throws IOException {
+        Map<String, Long> subscriptions = new LinkedHashMap<>();
+        subscriptions.put("alice", NUMBER_1);
+        subscriptions.put("bob", NUMBER_2);
+        try (WalRegistryJournal journal = openJournal()) {
+            new IndexedAccountRepository(new NumberDictionary(), journal).saveAll(Arrays.asList(new Account("alice", NUMBER_1), new Account("bob", NUMBER_2),
+                    new Account("carol", NUMBER_1)));
+            new SubscriptionRepository(new NumberDictionary(), journal).saveAll(subscriptions);
+        }
+
+        try (WalRegistryJournal journal = openJournal()) {
+            assertEquals(Arrays.asList(new Account("bob", NUMBER_2), new Account("carol", NUMBER_1)), new IndexedAccountRepository(new NumberDictionary(), journal).findAll());
+            SubscriptionRepository subscriptionRepository = new SubscriptionRepository(new NumberDictionary(), journal);
+            assertTrue(subscriptionRepository.isSubscribed(NUMBER_1));
+            assertTrue(subscriptionRepository.isSubscribed(NUMBER_2));
+        }
+    }
+
+    private void register(RegistryJournal journal) {
+        IndexedAccountRepository accountRepository = new IndexedAccountRepository(new NumberDictionary(), journal);
+        accountRepository.save(new Account("alice", NUMBER_1));
+        accountRepository.save(new Account("bob", NUMBER_2));
+        accountRepository.save(new Account("eve", NUMBER_3));
+        accountRepository.delete(new Account("eve", NUMBER_3));
+
+        NumberGroupRepository groupRepository = new NumberGroupRepository(journal);
+        groupRepository.save("testers", Arrays.asList("+3699*", "+36991234567"));
+        groupRepository.save("temporary", Collections.singletonList("+36991212321"));
+        groupRepository.deleteByGroupName("temporary");
+
+        SubscriptionRepository subscriptionRepository = new SubscriptionRepository(new NumberDictionary(), journal);
+        subscriptionRepository.save("alice", NUMBER_1);
+        subscriptionRepository.save("bob", NUMBER_2);
+        subscriptionRepository.save("alice", NUMBER_2);
+        subscriptionRepository.save("eve", NUMBER_3);
+        subscriptionRepository.delete("eve");
+    }
+
+    private void assertRegistered(RegistryJournal journal) {
+        IndexedAccountRepository accountRepository = new IndexedAccountRepository(new NumberDictionary(), journal);
+        assertEquals(Arrays.asList(new Account("alice", NUMBER_1), new Account("bob", NUMBER_2)), accountRepository.findAll());
+        assertEquals(Optional.of(new Account("bob", NUMBER_2)), accountRepository.findByName("bob"));
+
+        NumberGroupRepository groupRepository = new NumberGroupRepository(journal);
+        assertEquals(Optional.of(Arrays.asList("+3699*", "+36991234567")), groupRepository.findByGroupName("testers"));
+        assertFalse(groupRepository.findByGroupName("temporary").isPresent());
+
+        SubscriptionRepository subscriptionRepository = new SubscriptionRepository(new NumberDictionary(), journal);
+        assertEquals(2, subscriptionRepository.countByNumber(NUMBER_2));
+        assertFalse(subscriptionRepository.isSubscribed(NUMBER_1));
+        assertEquals(0, subscriptionRepository.countByName("eve"));
+    }
+
+    private WalRegistryJournal openJournal() throws IOException {
+        return new WalRegistryJournal(new WriteAheadLog(directory, "registry", 1 << 20, 1 << 16, FsyncPolicy.NEVER, 100),
+                directory, SNAPSHOT_INTERVAL_MILLIS);
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
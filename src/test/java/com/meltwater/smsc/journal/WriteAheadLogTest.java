@@ -0,0 +1,114 @@
+package com.meltwater.smsc.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WriteAheadLogTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReplayAppendedRecordsAcrossSegmentsInOrder() throws IOException {
+        try (WriteAheadLog log = open(FsyncPolicy.ALWAYS)) {
+            assertEquals(0, log.replay(record -> { }));
+            for (int i = 0; i < 100; i++) {
+                log.awaitDurable(log.append(bytes("record " + i)));
+            }
+        }
+
+        assertTrue(segments().size() > 1);
+        List<String> replayed = replay(FsyncPolicy.ALWAYS);
+        assertEquals(100, replayed.size());
+        assertEquals("record 0", replayed.get(0));
+        assertEquals("record 99", replayed.get(99));
+    }
+
+    @Test
+    public void shouldCutOffTornRecordAtTheTail() throws IOException {
+        try (WriteAheadLog log = open(FsyncPolicy.NEVER)) {
+            log.replay(record -> { });
+            log.append(bytes("first"));
+            log.append(bytes("second"));
+        }
+        Path segment = segments().get(segments().size() - 1);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertEquals(Arrays.asList("first"), replay(FsyncPolicy.NEVER));
+        assertEquals(Arrays.asList("first"), replay(FsyncPolicy.NEVER));
+    }
+
+    @Test
+    public void shouldReplaceReplayedSegmentsWhenRewritten() throws IOException {
+        try (WriteAheadLog log = open(FsyncPolicy.INTERVAL)) {
+            log.replay(record -> { });
+            for (int i = 0; i < 100; i++) {
+                log.append(bytes("record " + i));
+            }
+        }
+
+        try (WriteAheadLog log = open(FsyncPolicy.INTERVAL)) {
+            log.replay(record -> { });
+            log.rewrite(records -> records.accept(bytes("live")));
+            log.append(bytes("appended"));
+        }
+
+        assertEquals(2, segments().size());
+        assertEquals(Arrays.asList("live", "appended"), replay(FsyncPolicy.INTERVAL));
+    }
+
+    private WriteAheadLog open(FsyncPolicy fsyncPolicy) throws IOException {
+        return new WriteAheadLog(directory, "test", 256, 64, fsyncPolicy, 10);
+    }
+
+    private List<String> replay(FsyncPolicy fsyncPolicy) throws IOException {
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = open(fsyncPolicy)) {
+            log.replay(record -> replayed.add(StandardCharsets.UTF_8.decode(record).toString()));
+        }
+        return replayed;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".wal")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] bytes(String record) {
+        return record.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,107 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Account;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class IndexedAccountRepositoryTest {
+
+    private static final Account ACCOUNT_1 = new Account("number1", PhoneNumbers.encode("+36991212321"));
+    private static final Account ACCOUNT_2 = new Account("number2", PhoneNumbers.encode("+36991234321"));
+    private static final Account ACCOUNT_3 = new Account("number3", PhoneNumbers.encode("+36991234567"));
+    private static final Account ACCOUNT_4 = new Account("number4", PhoneNumbers.encode("+36201234567"));
+    private static final List<Account> ACCOUNTS = Arrays.asList(ACCOUNT_1, ACCOUNT_2, ACCOUNT_3, ACCOUNT_4);
+
+    private NumberDictionary numberDictionary;
+    private LinearAccountRepository linearAccountRepository;
+    private IndexedAccountRepository indexedAccountRepository;
+
+    @Before
+    public void setUp() {
+        numberDictionary = new NumberDictionary();
+        linearAccountRepository = new LinearAccountRepository();
+        indexedAccountRepository = new IndexedAccountRepository(numberDictionary);
+
+        ACCOUNTS.forEach(linearAccountRepository::save);
+        ACCOUNTS.forEach(indexedAccountRepository::save);
+    }
+
+    @Test
+    public void shouldFindAllAccountsInRegistrationOrder() {
+        assertEquals(linearAccountRepository.findAll(), indexedAccountRepository.findAll());
+    }
+
+    @Test
+    public void shouldFindAccountByNumberAndName() {
+        assertEquals(linearAccountRepository.findByNumber(ACCOUNT_3.getNumber()), indexedAccountRepository.findByNumber(ACCOUNT_3.getNumber()));
+        assertEquals(linearAccountRepository.findByName(ACCOUNT_2.getName()), indexedAccountRepository.findByName(ACCOUNT_2.getName()));
+        assertFalse(indexedAccountRepository.findByNumber(PhoneNumbers.encode("+36000000000")).isPresent());
+        assertFalse(indexedAccountRepository.findByName("number9").isPresent());
+    }
+
+    @Test
+    public void shouldFindAccountsByNumberPrefix() {
+        for (String prefix : Arrays.asList("+", "+36", "+3699", "+3699123", "+36991234567", "+3611", "+369912345678", "36*")) {
+            assertEquals(prefix, new HashSet<>(linearAccountRepository.findByNumbersLike(prefix)),
+                    new HashSet<>(indexedAccountRepository.findByNumbersLike(prefix)));
+        }
+    }
+
+    @Test
+    public void shouldFindAccountsByExactNumbers() {
+        long[] numbers = {ACCOUNT_1.getNumber(), ACCOUNT_4.getNumber(), PhoneNumbers.encode("+36000000000")};
+
+        assertEquals(new HashSet<>(linearAccountRepository.findAllByNumbers(numbers)),
+                new HashSet<>(indexedAccountRepository.findAllByNumbers(numbers)));
+    }
+
+    @Test
+    public void shouldRemoveDeletedAccountFromAllIndexes() {
+        linearAccountRepository.delete(ACCOUNT_2);
+        indexedAccountRepository.delete(ACCOUNT_2);
+
+        assertFalse(indexedAccountRepository.findByName(ACCOUNT_2.getName()).isPresent());
+        assertFalse(indexedAccountRepository.findByNumber(ACCOUNT_2.getNumber()).isPresent());
+        assertEquals(linearAccountRepository.findByNumbersLike("+3699123"), indexedAccountRepository.findByNumbersLike("+3699123"));
+    }
+
+    @Test
+    public void shouldResolveNameToFirstRegisteredAccount() {
+        Account sameNameAccount = new Account(ACCOUNT_1.getName(), PhoneNumbers.encode("+36991111111"));
+        linearAccountRepository.save(sameNameAccount);
+        indexedAccountRepository.save(sameNameAccount);
+
+        assertEquals(linearAccountRepository.findByName(ACCOUNT_1.getName()), indexedAccountRepository.findByName(ACCOUNT_1.getName()));
+
+        linearAccountRepository.delete(ACCOUNT_1);
+        indexedAccountRepository.delete(ACCOUNT_1);
+
+        assertEquals(linearAccountRepository.findByName(ACCOUNT_1.getName()), indexedAccountRepository.findByName(ACCOUNT_1.getName()));
+    }
+
+    @Test
+    public void shouldFindRegisteredNumbersWhichAreNotSubscribed() {
+        SubscriptionRepository subscriptionRepository = new SubscriptionRepository(numberDictionary);
+        subscriptionRepository.save(ACCOUNT_1.getName(), ACCOUNT_1.getNumber());
+        subscriptionRepository.save("number9", PhoneNumbers.encode("+36000000000"));
+        linearAccountRepository.delete(ACCOUNT_2);
+        indexedAccountRepository.delete(ACCOUNT_2);
+
+        Set<Long> linearNumbers = new HashSet<>();
+        linearAccountRepository.forEachUnsubscribedNumber(subscriptionRepository, linearNumbers::add);
+        Set<Long> indexedNumbers = new HashSet<>();
+        indexedAccountRepository.forEachUnsubscribedNumber(subscriptionRepository, indexedNumbers::add);
+
+        assertEquals(new HashSet<>(Arrays.asList(ACCOUNT_3.getNumber(), ACCOUNT_4.getNumber())), linearNumbers);
+        assertEquals(linearNumbers, indexedNumbers);
+    }
+}
@@ -0,0 +1,70 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NumberDictionaryTest {
+
+    private final NumberDictionary numberDictionary = new NumberDictionary();
+
+    @Test
+    public void shouldAssignDenseIdsOnce() {
+        assertEquals(0, numberDictionary.idOf(PhoneNumbers.encode("+36991212321")));
+        assertEquals(1, numberDictionary.idOf(PhoneNumbers.encode("+36991234321")));
+        assertEquals(0, numberDictionary.idOf(PhoneNumbers.encode("+36991212321")));
+
+        assertEquals(1, numberDictionary.find(PhoneNumbers.encode("+36991234321")));
+        assertEquals(NumberDictionary.NOT_FOUND, numberDictionary.find(PhoneNumbers.encode("+36991234567")));
+        assertEquals(NumberDictionary.NOT_FOUND, numberDictionary.find(0));
+        assertEquals(2, numberDictionary.size());
+    }
+
+    @Test
+    public void shouldDecodeNumbersWithSignAndLeadingZeros() {
+        for (String number : new String[]{"+36991212321", "+00000000001", "0036991212321", "7", "+99999999999999999"}) {
+            assertEquals(number, PhoneNumbers.decode(numberDictionary.numberOf(numberDictionary.idOf(PhoneNumbers.encode(number)))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPhoneNumbers() {
+        PhoneNumbers.encode("+3699123*");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTheEmptyEncoding() {
+        numberDictionary.idOf(0);
+    }
+
+    @Test
+    public void shouldKeepIdsWhileGrowing() {
+        IntStream.range(0, 100_000).forEach(i -> assertEquals(i, numberDictionary.idOf(number(i))));
+
+        IntStream.range(0, 100_000).forEach(i -> {
+            assertEquals(i, numberDictionary.find(number(i)));
+            assertEquals(number(i), numberDictionary.numberOf(i));
+        });
+    }
+
+    @Test
+    public void shouldInternConcurrentlyWithoutDuplicates() {
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 200_000).parallel().forEach(i -> ids.add(numberDictionary.idOf(number(i % 50_000))));
+
+        assertEquals(50_000, ids.size());
+        assertEquals(50_000, numberDictionary.size());
+        assertTrue(ids.stream().allMatch(id -> id >= 0 && id < 50_000));
+    }
+
+    private static long number(int i) {
+        return PhoneNumbers.encode(String.format("+369%08d", i));
+    }
+}
@@ -0,0 +1,123 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.PendingFanOut;
+import com.meltwater.smsc.model.Redelivery;
+import com.meltwater.smsc.model.RedeliveryAttempt;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RedeliveryRepositoryTest {
+
+    private static final long NUMBER_1 = PhoneNumbers.encode("+36991212321");
+    private static final long NUMBER_2 = PhoneNumbers.encode("+36991234321");
+    private static final long NUMBER_3 = PhoneNumbers.encode("+36991234567");
+    private static final Redelivery NUMBER_1_TO_NUMBER_2 = new Redelivery(NUMBER_1, NUMBER_2, "first", Instant.now());
+    private static final Redelivery NUMBER_1_TO_NUMBER_3 = new Redelivery(NUMBER_1, NUMBER_3, "second", Instant.now());
+    private static final Redelivery NUMBER_3_TO_NUMBER_2 = new Redelivery(NUMBER_3, NUMBER_2, "third", Instant.now());
+
+    private RedeliveryRepository redeliveryRepository;
+
+    @Before
+    public void setUp() {
+        redeliveryRepository = new RedeliveryRepository(new NumberDictionary());
+
+        Arrays.asList(NUMBER_1_TO_NUMBER_2, NUMBER_1_TO_NUMBER_3, NUMBER_3_TO_NUMBER_2).forEach(redeliveryRepository::save);
+    }
+
+    @Test
+    public void shouldKeepInsertionOrder() {
+        assertEquals(Arrays.asList(NUMBER_1_TO_NUMBER_2, NUMBER_1_TO_NUMBER_3, NUMBER_3_TO_NUMBER_2), redeliveryRepository.findAll());
+        assertEquals(Arrays.asList(NUMBER_1_TO_NUMBER_2, NUMBER_3_TO_NUMBER_2), redeliveryRepository.findAllByDestination(NUMBER_2));
+        assertEquals(Arrays.asList(NUMBER_1_TO_NUMBER_2, NUMBER_1_TO_NUMBER_3), redeliveryRepository.findAllBySource(NUMBER_1));
+    }
+
+    @Test
+    public void shouldNotSaveSameMessageTwice() {
+        Redelivery resentMessage = new Redelivery(NUMBER_1, NUMBER_2, "first", Instant.now().plusSeconds(10));
+
+        assertFalse(redeliveryRepository.save(resentMessage));
+
+        assertEquals(3, redeliveryRepository.count());
+        Redelivery saved = redeliveryRepository.findByItem(resentMessage).get();
+        assertEquals(NUMBER_1_TO_NUMBER_2, saved);
+        assertEquals(NUMBER_1_TO_NUMBER_2.getCreationDate().toEpochMilli(), saved.getCreationDate().toEpochMilli());
+    }
+
+    @Test
+    public void shouldDeleteFromAllMailboxes() {
+        assertTrue(redeliveryRepository.delete(NUMBER_1_TO_NUMBER_2));
+        assertFalse(redeliveryRepository.delete(NUMBER_1_TO_NUMBER_2));
+
+        assertFalse(redeliveryRepository.findByItem(NUMBER_1_TO_NUMBER_2).isPresent());
+        assertEquals(Arrays.asList(NUMBER_3_TO_NUMBER_2), redeliveryRepository.findAllByDestination(NUMBER_2));
+        assertEquals(Arrays.asList(NUMBER_1_TO_NUMBER_3), redeliveryRepository.findAllBySource(NUMBER_1));
+    }
+
+    @Test
+    public void shouldReturnSnapshotWhichIsSafeToIterateWhileSaving() {
+        List<Redelivery> snapshot = redeliveryRepository.findAll();
+
+        snapshot.forEach(r -> redeliveryRepository.save(new Redelivery(r.getDestination(), r.getSource(), r.getMessage(), Instant.now())));
+
+        assertEquals(3, snapshot.size());
+        assertEquals(6, redeliveryRepository.count());
+    }
+
+    @Test
+    public void shouldRecordAttemptsUnderStableHandle() {
+        long handle = redeliveryRepository.handleOf(NUMBER_1_TO_NUMBER_3);
+
+        redeliveryRepository.recordAttempt(handle, 2, 1234L);
+        redeliveryRepository.delete(NUMBER_1_TO_NUMBER_2);
+
+        assertEquals(new RedeliveryAttempt(NUMBER_1_TO_NUMBER_3, 2, 1234L), redeliveryRepository.findAttemptByHandle(handle).get());
+    }
+
+    @Test
+    public void shouldTreatAttemptOfDeletedRedeliveryAsSettled() {
+        long handle = redeliveryRepository.handleOf(NUMBER_1_TO_NUMBER_3);
+
+        redeliveryRepository.delete(NUMBER_1_TO_NUMBER_3);
+
+        assertFalse(redeliveryRepository.findAttemptByHandle(handle).isPresent());
+        assertFalse(redeliveryRepository.recordAttempt(handle, 1, 1234L));
+    }
+
+    @Test
+    public void shouldNotResolveHandleOfDeletedRedelivery() {
+        long handle = redeliveryRepository.handleOf(NUMBER_1_TO_NUMBER_2);
+
+        redeliveryRepository.delete(NUMBER_1_TO_NUMBER_2);
+        redeliveryRepository.save(NUMBER_1_TO_NUMBER_2);
+
+        assertFalse(redeliveryRepository.findByHandle(handle).isPresent());
+        assertTrue(redeliveryRepository.handleOf(NUMBER_1_TO_NUMBER_2) != handle);
+        assertEquals(RedeliveryRepository.NO_HANDLE, redeliveryRepository.handleOf(new Redelivery(NUMBER_2, NUMBER_1, "first")));
+    }
+
+    @Test
+    public void shouldFindFanOutsByOutstandingRecipientAndSource() {
+        PendingFanOut first = redeliveryRepository.saveFanOut(NUMBER_1, new long[]{NUMBER_2, NUMBER_3}, "fourth", Instant.now());
+        PendingFanOut second = redeliveryRepository.saveFanOut(NUMBER_3, new long[]{NUMBER_2}, "fifth", Instant.now());
+
+        assertEquals(Arrays.asList(first, second), redeliveryRepository.findAllFanOutsByDestination(NUMBER_2));
+        assertEquals(Collections.singletonList(second), redeliveryRepository.findAllFanOutsBySource(NUMBER_3));
+
+        redeliveryRepository.takeFromFanOut(first, NUMBER_2);
+        redeliveryRepository.deleteFanOut(second);
+
+        assertTrue(redeliveryRepository.findAllFanOutsByDestination(NUMBER_2).isEmpty());
+        assertEquals(Collections.singletonList(first), redeliveryRepository.findAllFanOutsByDestination(NUMBER_3));
+        assertTrue(redeliveryRepository.findAllFanOutsBySource(NUMBER_3).isEmpty());
+    }
+}
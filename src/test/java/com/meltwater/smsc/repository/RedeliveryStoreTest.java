@@ -0,0 +1,63 @@
+package com.meltwater.smsc.repository;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RedeliveryStoreTest {
+
+    private static final int SEGMENT_SHIFT = 4;
+
+    @Test
+    public void shouldFindEntriesByKeyAndPosition() {
+        RedeliveryStore store = new RedeliveryStore(SEGMENT_SHIFT);
+        long first = store.append(1, 2, 0, 100L);
+        long second = store.append(1, 3, 0, 200L);
+
+        int slot = store.find(1, 3, 0);
+        assertEquals(second, store.position(slot));
+        assertEquals(slot, store.slotOf(second));
+        assertEquals(200L, store.creationMillis(slot));
+        assertEquals(RedeliveryStore.NOT_FOUND, store.find(2, 1, 0));
+
+        store.remove(store.slotOf(first));
+
+        assertEquals(RedeliveryStore.NOT_FOUND, store.slotOf(first));
+        assertEquals(RedeliveryStore.NOT_FOUND, store.find(1, 2, 0));
+        assertEquals(1, store.countBySource(1));
+    }
+
+    @Test
+    public void shouldCompactKeepingOrderHandlesAndReleasingSegments() {
+        RedeliveryStore store = new RedeliveryStore(SEGMENT_SHIFT);
+        int entries = 4096;
+        long[] positions = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            positions[i] = store.append(i % 7, i % 5, i, i);
+        }
+        long allocated = store.offHeapBytes();
+
+        for (int i = 0; i < entries; i++) {
+            if (i % 8 != 0) {
+                store.remove(store.find(i % 7, i % 5, i));
+            }
+        }
+
+        assertEquals(entries / 8, store.size());
+        assertTrue(store.offHeapBytes() <= allocated / 2);
+        for (int i = 0; i < entries; i += 8) {
+            int slot = store.slotOf(positions[i]);
+            assertEquals(i, store.messageRef(slot));
+            assertEquals(slot, store.find(i % 7, i % 5, i));
+        }
+
+        List<Integer> bySource = new ArrayList<>();
+        store.forEachBySource(0, slot -> bySource.add(store.messageRef(slot)));
+        assertEquals(Arrays.asList(0, 56, 112), bySource.subList(0, 3));
+    }
+}
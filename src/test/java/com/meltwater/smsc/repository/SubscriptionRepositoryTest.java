@@ -0,0 +1,67 @@
+package com.meltwater.smsc.repository;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriptionRepositoryTest {
+
+    private static final String NAME_1 = "number1";
+    private static final String NAME_2 = "number2";
+    private static final long NUMBER_1 = PhoneNumbers.encode("+36991212321");
+    private static final long NUMBER_2 = PhoneNumbers.encode("+36991234321");
+
+    private SubscriptionRepository subscriptionRepository;
+
+    @Before
+    public void setUp() {
+        subscriptionRepository = new SubscriptionRepository(new NumberDictionary());
+    }
+
+    @Test
+    public void shouldIndexSubscriptionByNumber() {
+        subscriptionRepository.save(NAME_1, NUMBER_1);
+
+        assertTrue(subscriptionRepository.isSubscribed(NUMBER_1));
+        assertEquals(1, subscriptionRepository.countByNumber(NUMBER_1));
+        assertEquals(1, subscriptionRepository.countByName(NAME_1));
+        assertFalse(subscriptionRepository.isSubscribed(NUMBER_2));
+    }
+
+    @Test
+    public void shouldKeepNumberSubscribedWhileAnyNameIsSubscribed() {
+        subscriptionRepository.save(NAME_1, NUMBER_1);
+        subscriptionRepository.save(NAME_2, NUMBER_1);
+
+        subscriptionRepository.delete(NAME_1);
+
+        assertTrue(subscriptionRepository.isSubscribed(NUMBER_1));
+        assertEquals(1, subscriptionRepository.countByNumber(NUMBER_1));
+
+        subscriptionRepository.delete(NAME_2);
+
+        assertFalse(subscriptionRepository.isSubscribed(NUMBER_1));
+        assertEquals(0, subscriptionRepository.countByNumber(NUMBER_1));
+    }
+
+    @Test
+    public void shouldMoveSubscriptionWhenNameIsSavedWithNewNumber() {
+        subscriptionRepository.save(NAME_1, NUMBER_1);
+
+        subscriptionRepository.save(NAME_1, NUMBER_2);
+
+        assertFalse(subscriptionRepository.isSubscribed(NUMBER_1));
+        assertTrue(subscriptionRepository.isSubscribed(NUMBER_2));
+    }
+
+    @Test
+    public void shouldIgnoreUnsubscriptionOfUnknownName() {
+        subscriptionRepository.delete(NAME_1);
+
+        assertEquals(0, subscriptionRepository.countByName(NAME_1));
+    }
+}
@@ -0,0 +1,48 @@
+package com.meltwater.smsc.scheduler;
+
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExponentialBackoffTest {
+
+    private static final Instant ORIGIN = Instant.parse("2017-11-11T10:00:00Z");
+
+    @Test
+    public void shouldDoubleDelayUntilMaximum() {
+        ExponentialBackoff backoff = new ExponentialBackoff(1000, 2, 5000, 0);
+
+        assertEquals(1000, backoff.delayMillis(0));
+        assertEquals(4000, backoff.delayMillis(2));
+        assertEquals(5000, backoff.delayMillis(3));
+        assertEquals(5000, backoff.delayMillis(30));
+    }
+
+    @Test
+    public void shouldScheduleAttemptsFromOrigin() {
+        ExponentialBackoff backoff = new ExponentialBackoff(1000, 2, 5000, 0);
+
+        assertEquals(ORIGIN.plusMillis(1000), backoff.attemptTime(ORIGIN, 0));
+        assertEquals(ORIGIN.plusMillis(7000), backoff.attemptTime(ORIGIN, 2));
+        assertEquals(ORIGIN.plusMillis(12000), backoff.attemptTime(ORIGIN, 3));
+        assertEquals(ORIGIN.plusMillis(17000), backoff.attemptTime(ORIGIN, 4));
+    }
+
+    @Test
+    public void shouldKeepJitterWithinBounds() {
+        ExponentialBackoff backoff = new ExponentialBackoff(1000, 2, 60000, 0.2);
+
+        for (int i = 0; i < 100; i++) {
+            long attemptMillis = backoff.attemptTime(ORIGIN, 1).toEpochMilli() - ORIGIN.toEpochMilli();
+            assertTrue(attemptMillis >= 3000 - 400 && attemptMillis <= 3000 + 400);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMaximumBelowInitialDelay() {
+        new ExponentialBackoff(1000, 2, 500, 0);
+    }
+}
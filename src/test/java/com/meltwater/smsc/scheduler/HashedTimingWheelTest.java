@@ -0,0 +1,67 @@
+package com.meltwater.smsc.scheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HashedTimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    private HashedTimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        wheel = new HashedTimingWheel(10, 4, START);
+    }
+
+    @Test
+    public void shouldExpireEntriesWhenTheirTickIsReached() {
+        wheel.schedule(1, START + 10);
+        wheel.schedule(2, START + 25);
+
+        assertArrayEquals(new long[0], wheel.expire(START + 9));
+        assertArrayEquals(new long[]{1}, wheel.expire(START + 10));
+        assertArrayEquals(new long[0], wheel.expire(START + 29));
+        assertArrayEquals(new long[]{2}, wheel.expire(START + 30));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void shouldKeepEntriesScheduledBeyondOneRevolution() {
+        wheel.schedule(2, START + 130);
+        wheel.schedule(1, START + 50);
+
+        assertArrayEquals(new long[]{1}, wheel.expire(START + 120));
+        assertEquals(1, wheel.size());
+        assertArrayEquals(new long[]{2}, wheel.expire(START + 130));
+    }
+
+    @Test
+    public void shouldExpireOverdueEntriesOnNextTick() {
+        wheel.expire(START + 100);
+
+        wheel.schedule(1, START);
+        wheel.schedule(2, START + 100);
+
+        assertArrayEquals(new long[]{1, 2}, wheel.expire(START + 110));
+    }
+
+    @Test
+    public void shouldGrowBucketsBeyondInitialCapacity() {
+        for (long item = 0; item < 100; item++) {
+            wheel.schedule(item, START + 10);
+        }
+
+        assertEquals(100, wheel.size());
+        assertEquals(100, wheel.expire(START + 10).length);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectWheelSizeNotPowerOfTwo() {
+        new HashedTimingWheel(10, 6, START);
+    }
+}
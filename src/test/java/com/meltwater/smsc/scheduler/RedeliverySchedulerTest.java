@@ -0,0 +1,72 @@
+package com.meltwater.smsc.scheduler;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Redelivery;
+import com.meltwater.smsc.repository.NumberDictionary;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RedeliverySchedulerTest {
+
+    private static final Instant START = Instant.parse("2017-11-11T10:00:00Z");
+    private static final Redelivery FIRST = new Redelivery(PhoneNumbers.encode("+36991212321"), PhoneNumbers.encode("+36991234321"), "first", START);
+    private static final Redelivery SECOND = new Redelivery(PhoneNumbers.encode("+36991212321"), PhoneNumbers.encode("+36991234321"), "second", START);
+
+    private VirtualClock clock;
+    private RedeliveryRepository redeliveryRepository;
+    private RedeliveryScheduler redeliveryScheduler;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock(START);
+        redeliveryRepository = new RedeliveryRepository(new NumberDictionary());
+        redeliveryScheduler = new RedeliveryScheduler(10, 8, new ExponentialBackoff(100, 2, 1000, 0), redeliveryRepository, clock);
+        redeliveryRepository.save(FIRST);
+        redeliveryRepository.save(SECOND);
+        redeliveryScheduler.schedule(FIRST);
+        redeliveryScheduler.schedule(SECOND);
+    }
+
+    @Test
+    public void shouldTreatRedeliveryDeletedDuringThePassAsSettled() {
+        List<Redelivery> attempted = new ArrayList<>();
+        clock.advance(Duration.ofMillis(100));
+
+        redeliveryScheduler.retryDue(redelivery -> {
+            attempted.add(redelivery);
+            redeliveryRepository.delete(FIRST);
+            redeliveryRepository.delete(SECOND);
+            return false;
+        });
+
+        assertEquals(1, attempted.size());
+        assertEquals(0, redeliveryScheduler.size());
+    }
+
+    @Test
+    public void shouldRescheduleFailedAttemptAndAttemptTheOthers() {
+        List<Redelivery> attempted = new ArrayList<>();
+        clock.advance(Duration.ofMillis(100));
+
+        redeliveryScheduler.retryDue(redelivery -> {
+            attempted.add(redelivery);
+            if (redelivery.equals(FIRST)) {
+                throw new IllegalStateException("Delivery failed");
+            }
+            return true;
+        });
+
+        assertEquals(Arrays.asList(FIRST, SECOND), attempted);
+        assertEquals(1, redeliveryScheduler.size());
+        assertEquals(1, redeliveryRepository.findAttemptByHandle(redeliveryRepository.handleOf(FIRST)).get().getAttempt());
+    }
+}
@@ -0,0 +1,59 @@
+package com.meltwater.smsc.scheduler;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class VirtualClockTest {
+
+    private static final Instant START = Instant.parse("2017-11-11T10:00:00Z");
+
+    @Test
+    public void shouldOnlyMoveWhenAdvanced() {
+        VirtualClock clock = new VirtualClock(START);
+        List<Instant> observed = new ArrayList<>();
+        clock.onAdvance(() -> observed.add(clock.instant()));
+
+        assertEquals(START, clock.instant());
+        clock.advance(Duration.ofSeconds(30));
+
+        assertEquals(START.plusSeconds(30), clock.instant());
+        assertEquals(Collections.singletonList(START.plusSeconds(30)), observed);
+    }
+
+    @Test
+    public void shouldAdvanceInStepsOfTheListeners() {
+        VirtualClock clock = new VirtualClock(START);
+        List<Instant> observed = new ArrayList<>();
+        clock.onAdvance(Duration.ofMillis(400), () -> observed.add(clock.instant()));
+
+        clock.advance(Duration.ofSeconds(1));
+
+        assertEquals(Arrays.asList(START.plusMillis(400), START.plusMillis(800), START.plusMillis(1000)), observed);
+    }
+
+    @Test
+    public void shouldShareTimeWithZonedCopies() {
+        VirtualClock clock = new VirtualClock(START);
+        Clock zoned = clock.withZone(ZoneId.of("Europe/Budapest"));
+
+        clock.advance(Duration.ofMillis(1500));
+
+        assertEquals(START.plusMillis(1500), zoned.instant());
+        assertEquals(ZoneId.of("Europe/Budapest"), zoned.getZone());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotGoBackwards() {
+        new VirtualClock(START).advance(Duration.ofSeconds(-1));
+    }
+}
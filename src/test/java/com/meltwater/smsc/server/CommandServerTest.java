@@ -0,0 +1,244 @@
+package com.meltwater.smsc.server;
+
+import com.meltwater.smsc.SmscApplication;
+import com.meltwater.smsc.command.Command;
+import com.meltwater.smsc.command.StreamingCommandParser;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.repository.AccountRepository;
+import com.meltwater.smsc.repository.IndexedAccountRepository;
+import com.meltwater.smsc.repository.NumberDictionary;
+import com.meltwater.smsc.repository.NumberGroupRepository;
+import com.meltwater.smsc.repository.RedeliveryRepository;
+import com.meltwater.smsc.repository.SubscriptionRepository;
+import com.meltwater.smsc.scheduler.ExponentialBackoff;
+import com.meltwater.smsc.scheduler.RedeliveryScheduler;
+import com.meltwater.smsc.service.AccountService;
+import com.meltwater.smsc.service.GroupMembershipCache;
+import com.meltwater.smsc.service.MessagingService;
+import com.meltwater.smsc.service.SubscriptionService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommandServerTest {
+
+    private static final int CLIENTS = 500;
+
+    private ClientRegistry clients;
+    private SubscriptionRepository subscriptionRepository;
+    private CommandServer commandServer;
+    private Thread serving;
+    private List<Socket> sockets = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        clients = new ClientRegistry();
+        commandServer = new CommandServer(new InetSocketAddress("127.0.0.1", 0), new StreamingCommandParser(), clients, 1024, 256, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        commandServer.close();
+        if (serving != null) {
+            serving.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    @Test
+    public void shouldReadPipelinedCommandsInOrder() throws Exception {
+        List<Command> commands = Collections.synchronizedList(new ArrayList<>());
+        serving = serveInBackground(() -> commandServer.serve(commands::add));
+        OutputStream out = connect().getOutputStream();
+
+        out.write("number1 +36991212321\r\nsubscribe number1\n\nmessage number1 number1 \"pipelined\"\nsubs".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        out.write("cribe number2\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        await(() -> commands.size() == 4);
+        assertEquals(Arrays.asList("number1 +36991212321", "subscribe number1", "message number1 number1 \"pipelined\"", "subscribe number2"),
+                commands.stream().map(Command::getLine).collect(Collectors.toList()));
+        assertTrue(commands.stream().allMatch(Command::isValid));
+    }
+
+    @Test
+    public void shouldKeepFlushingWhileTheQueueIsFull() throws Exception {
+        commandServer.close();
+        commandServer = new CommandServer(new InetSocketAddress("127.0.0.1", 0), new StreamingCommandParser(), clients, 2, 256, 1024 * 1024);
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch released = new CountDownLatch(1);
+        serving = serveInBackground(() -> commandServer.serve(command -> {
+            lines.add(command.getLine());
+            if (command.getLine().equals("subscribe number1")) {
+                awaitQuietly(released);
+            }
+        }, name -> OptionalLong.of(numberOf(name))));
+        Socket receiver = connect();
+        write(receiver, "subscribe number0\n");
+        await(() -> clients.size() == 1);
+
+        StringBuilder pipelined = new StringBuilder("subscribe number1\n");
+        for (int i = 0; i < 100; i++) {
+            pipelined.append("unsubscribe number").append(i).append('\n');
+        }
+        write(connect(), pipelined.toString());
+        await(() -> lines.contains("subscribe number1"));
+        clients.push(numberOf("number0"), ByteBuffer.wrap("still flushing\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("still flushing", reader(receiver).readLine());
+        released.countDown();
+        await(() -> lines.size() == 102);
+        assertEquals("unsubscribe number99", lines.get(101));
+    }
+
+    @Test
+    public void shouldDisconnectClientSendingTooLongLines() throws Exception {
+        serving = serveInBackground(() -> commandServer.serve(command -> { }));
+        Socket socket = connect();
+
+        char[] line = new char[512];
+        Arrays.fill(line, 'x');
+        socket.getOutputStream().write(new String(line).getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(-1, socket.getInputStream().read());
+    }
+
+    @Test
+    public void shouldPushAcknowledgementToTheReceiverConnection() throws Exception {
+        startApplication();
+        Socket receiver = connect();
+        Socket sender = connect();
+
+        write(receiver, "number1 +36991212321\nnumber2 +36991234321\nsubscribe number1\n");
+        await(() -> subscriptionRepository.isSubscribed(PhoneNumbers.encode("+36991212321")));
+        write(sender, "subscribe number2\nmessage number2 number1 \"Hi Ann\"\n");
+
+        assertEquals("+36991234321 -> +36991212321 : Hi Ann", reader(receiver).readLine());
+    }
+
+    @Test
+    public void shouldBindOnlySuccessfulSubscriptions() throws Exception {
+        startApplication();
+        Socket receiver = connect();
+        Socket sender = connect();
+
+        write(receiver, "number1 +36991212321\nnumber2 +36991234321\nsubscribe number1\nsubscribe number3\n");
+        await(() -> subscriptionRepository.isSubscribed(PhoneNumbers.encode("+36991212321")));
+        write(sender, "subscribe number1\nsubscribe number2\nmessage number2 number1 \"Hi Ann\"\n");
+
+        assertEquals("+36991234321 -> +36991212321 : Hi Ann", reader(receiver).readLine());
+        assertEquals(2, clients.size());
+    }
+
+    @Test
+    public void shouldServeManyConcurrentClients() throws Exception {
+        startApplication();
+        List<BufferedReader> readers = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Socket client = connect();
+            write(client, String.format("number%d +3699%07d\nsubscribe number%d\n", i, i, i));
+            readers.add(reader(client));
+        }
+        await(() -> clients.size() == CLIENTS && subscriptionRepository.isSubscribed(numberOf("number" + (CLIENTS - 1))));
+
+        write(sockets.get(0), "message number0 broadcast \"Hello everyone\"\n");
+
+        for (int i = 0; i < CLIENTS; i++) {
+            assertEquals(String.format("+3699%07d -> +3699%07d : Hello everyone", 0, i), readers.get(i).readLine());
+        }
+    }
+
+    private void startApplication() {
+        NumberDictionary numberDictionary = new NumberDictionary();
+        AccountRepository accountRepository = new IndexedAccountRepository(numberDictionary);
+        NumberGroupRepository numberGroupRepository = new NumberGroupRepository();
+        subscriptionRepository = new SubscriptionRepository(numberDictionary);
+        RedeliveryRepository redeliveryRepository = new RedeliveryRepository(numberDictionary);
+        RedeliveryScheduler redeliveryScheduler = new RedeliveryScheduler(1, 8, new ExponentialBackoff(0, 2, 0, 0), redeliveryRepository);
+        MessagingService messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                new ClientDeliverySink(clients));
+        GroupMembershipCache groupMembershipCache = new GroupMembershipCache(accountRepository, numberGroupRepository);
+        SmscApplication application = new SmscApplication(new AccountService(accountRepository, numberGroupRepository, groupMembershipCache),
+                new SubscriptionService(subscriptionRepository, accountRepository, groupMembershipCache, messagingService));
+        application.setExecutionParallelism(2);
+        serving = serveInBackground(() -> application.serve(commandServer));
+    }
+
+    private Thread serveInBackground(Serving serve) {
+        Thread thread = new Thread(() -> {
+            try {
+                serve.run();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(commandServer.getLocalAddress());
+        socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(10));
+        sockets.add(socket);
+        return socket;
+    }
+
+    private static void write(Socket socket, String lines) throws IOException {
+        socket.getOutputStream().write(lines.getBytes(StandardCharsets.UTF_8));
+        socket.getOutputStream().flush();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long numberOf(String name) {
+        return PhoneNumbers.encode(String.format("+3699%07d", Integer.parseInt(name.substring("number".length()))));
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Serving {
+
+        void run() throws InterruptedException;
+    }
+}
@@ -3,47 +3,56 @@ package com.meltwater.smsc.service;
 import com.meltwater.smsc.exception.InvalidAccountArgumentsException;
 import com.meltwater.smsc.exception.InvalidGroupNameException;
 import com.meltwater.smsc.exception.InvalidGroupNumberPatternException;
+import com.meltwater.smsc.index.PhoneNumbers;
 import com.meltwater.smsc.model.Account;
 import com.meltwater.smsc.repository.AccountRepository;
+import com.meltwater.smsc.repository.IndexedAccountRepository;
 import com.meltwater.smsc.repository.NumberGroupRepository;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class AccountServiceTest {
 
     private static final String NUMBER_1 = "+36991212321";
     private static final String NUMBER_4 = "+36991212121";
-    private static final Account ACCOUNT_1 = new Account("number1", NUMBER_1);
+    private static final Account ACCOUNT_1 = new Account("number1", PhoneNumbers.encode(NUMBER_1));
     private static final String GROUP_1 = "group1";
     private static final String PATTERN_1 = "+3699123*";
     private static final List<String> PATTERNS = Arrays.asList(NUMBER_1, PATTERN_1);
 
     private AccountRepository accountRepository;
     private NumberGroupRepository numberGroupRepository;
+    private GroupMembershipCache groupMembershipCache;
 
     private AccountService accountService;
 
     @Before
     public void setUp() {
-        accountRepository = new AccountRepository();
+        accountRepository = new IndexedAccountRepository();
         numberGroupRepository = new NumberGroupRepository();
 
-        accountService = new AccountService(accountRepository, numberGroupRepository);
+        groupMembershipCache = new GroupMembershipCache(accountRepository, numberGroupRepository);
+
+        accountService = new AccountService(accountRepository, numberGroupRepository, groupMembershipCache);
     }
 
     @Test
     public void shouldRegisterNumber() {
         accountService.registerNumber(ACCOUNT_1);
 
-        Optional<Account> expectedAccount = accountRepository.findByNumber(NUMBER_1);
+        Optional<Account> expectedAccount = accountRepository.findByNumber(PhoneNumbers.encode(NUMBER_1));
         assertEquals(ACCOUNT_1, expectedAccount.get());
     }
 
@@ -53,20 +62,20 @@ public class AccountServiceTest {
 
         accountService.registerNumber(ACCOUNT_1);
 
-        Optional<Account> expectedAccount = accountRepository.findByNumber(NUMBER_1);
+        Optional<Account> expectedAccount = accountRepository.findByNumber(PhoneNumbers.encode(NUMBER_1));
         assertEquals(ACCOUNT_1, expectedAccount.get());
     }
 
     @Test(expected = InvalidAccountArgumentsException.class)
     public void shouldThrowExceptionWhenNameNotStartsWithNumber() {
-        Account invalidNameAccount = new Account("invalidName", NUMBER_1);
+        Account invalidNameAccount = new Account("invalidName", PhoneNumbers.encode(NUMBER_1));
 
         accountService.registerNumber(invalidNameAccount);
     }
     
     @Test(expected = InvalidAccountArgumentsException.class)
     public void shouldThrowExceptionWhenNumberFormatIsInvalid() {
-        Account invalidNumberFormat = new Account("number1", "3699");
+        Account invalidNumberFormat = new Account("number1", PhoneNumbers.encode("3699"));
 
         accountService.registerNumber(invalidNumberFormat);
     }
@@ -100,4 +109,57 @@ public class AccountServiceTest {
     public void shouldThrowExceptionWhenGroupNumberPatternIsInvalid() {
         accountService.registerGroup(GROUP_1, Arrays.asList("789+"));
     }
+
+    @Test
+    public void shouldRegisterNumbersInBulkLastOneOfANumberWinning() {
+        accountService.registerGroup(GROUP_1, PATTERNS);
+        accountService.registerNumber(ACCOUNT_1);
+        assertEquals(Arrays.asList(ACCOUNT_1), groupMembershipCache.findMembers(GROUP_1));
+
+        Account renamed = new Account("number9", PhoneNumbers.encode(NUMBER_1));
+        Account member = new Account("number2", PhoneNumbers.encode("+36991234321"));
+        accountService.registerNumbers(Arrays.asList(new Account("number4", PhoneNumbers.encode(NUMBER_4)), member, renamed));
+
+        assertEquals(Optional.of(renamed), accountRepository.findByNumber(PhoneNumbers.encode(NUMBER_1)));
+        assertFalse(accountRepository.findByName("number1").isPresent());
+        assertEquals(3, accountRepository.findAll().size());
+        assertTrue(groupMembershipCache.findMembers(GROUP_1).containsAll(Arrays.asList(renamed, member)));
+    }
+
+    @Test
+    public void shouldRegisterNoNumberWhenAnyIsInvalid() {
+        try {
+            accountService.registerNumbers(Arrays.asList(ACCOUNT_1, new Account("number4", PhoneNumbers.encode("3699"))));
+            fail("Expected InvalidAccountArgumentsException");
+        } catch (InvalidAccountArgumentsException ex) {
+            assertTrue(accountRepository.findAll().isEmpty());
+        }
+    }
+
+    @Test
+    public void shouldRegisterGroupsInBulk() {
+        accountService.registerGroup(GROUP_1, Arrays.asList(NUMBER_1));
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        groups.put(GROUP_1, Arrays.asList(PATTERN_1));
+        groups.put("group2", Arrays.asList(NUMBER_4));
+
+        accountService.registerGroups(groups);
+
+        assertTrue(numberGroupRepository.findByGroupName(GROUP_1).get().containsAll(PATTERNS));
+        assertEquals(Arrays.asList(NUMBER_4), numberGroupRepository.findByGroupName("group2").get());
+    }
+
+    @Test
+    public void shouldRegisterNoGroupWhenAnyIsInvalid() {
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        groups.put(GROUP_1, PATTERNS);
+        groups.put("invalidGroup", PATTERNS);
+
+        try {
+            accountService.registerGroups(groups);
+            fail("Expected InvalidGroupNameException");
+        } catch (InvalidGroupNameException ex) {
+            assertFalse(numberGroupRepository.findByGroupName(GROUP_1).isPresent());
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package com.meltwater.smsc.service;
+
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.model.Account;
+import com.meltwater.smsc.repository.AccountRepository;
+import com.meltwater.smsc.repository.IndexedAccountRepository;
+import com.meltwater.smsc.repository.NumberGroupRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GroupMembershipCacheTest {
+
+    private static final String GROUP_1 = "group1";
+    private static final Account ACCOUNT_1 = new Account("number1", PhoneNumbers.encode("+36991212321"));
+    private static final Account ACCOUNT_2 = new Account("number2", PhoneNumbers.encode("+36991234321"));
+    private static final Account ACCOUNT_3 = new Account("number3", PhoneNumbers.encode("+36991234567"));
+    private static final Account ACCOUNT_4 = new Account("number4", PhoneNumbers.encode("+36991212121"));
+
+    private AccountRepository accountRepository;
+    private GroupMembershipCache groupMembershipCache;
+    private AccountService accountService;
+
+    @Before
+    public void setUp() {
+        accountRepository = new IndexedAccountRepository();
+        NumberGroupRepository numberGroupRepository = new NumberGroupRepository();
+        groupMembershipCache = new GroupMembershipCache(accountRepository, numberGroupRepository);
+        accountService = new AccountService(accountRepository, numberGroupRepository, groupMembershipCache);
+
+        Arrays.asList(ACCOUNT_1, ACCOUNT_2, ACCOUNT_4).forEach(accountService::registerNumber);
+        accountService.registerGroup(GROUP_1, Collections.singletonList("+3699123*"));
+    }
+
+    @Test
+    public void shouldResolveGroupOnceAndServeRepeatedLookupsFromCache() {
+        groupMembershipCache.findMembers(GROUP_1);
+        List<Account> members = groupMembershipCache.findMembers(GROUP_1);
+
+        assertEquals(Collections.singletonList(ACCOUNT_2), members);
+        assertEquals(1, groupMembershipCache.getMissCount());
+        assertEquals(1, groupMembershipCache.getHitCount());
+    }
+
+    @Test
+    public void shouldAddRegisteredNumberToMatchingCachedGroups() {
+        groupMembershipCache.findMembers(GROUP_1);
+
+        accountService.registerNumber(ACCOUNT_3);
+
+        assertEquals(Arrays.asList(ACCOUNT_2, ACCOUNT_3), groupMembershipCache.findMembers(GROUP_1));
+        assertEquals(1, groupMembershipCache.getMissCount());
+    }
+
+    @Test
+    public void shouldReplaceReRegisteredNumberInCachedGroups() {
+        groupMembershipCache.findMembers(GROUP_1);
+        Account renamedAccount = new Account("number9", ACCOUNT_2.getNumber());
+
+        accountService.registerNumber(renamedAccount);
+
+        assertEquals(Collections.singletonList(renamedAccount), groupMembershipCache.findMembers(GROUP_1));
+    }
+
+    @Test
+    public void shouldExtendOnlyTheChangedGroup() {
+        groupMembershipCache.findMembers(GROUP_1);
+
+        accountService.registerGroup(GROUP_1, Arrays.asList("+36991212121", "+36991234321"));
+
+        List<Account> members = groupMembershipCache.findMembers(GROUP_1);
+        assertEquals(2, members.size());
+        assertTrue(members.containsAll(Arrays.asList(ACCOUNT_2, ACCOUNT_4)));
+        assertEquals(1, groupMembershipCache.getMissCount());
+    }
+
+    @Test
+    public void shouldNotCacheUnknownGroup() {
+        assertTrue(groupMembershipCache.findMembers("group9").isEmpty());
+        assertTrue(groupMembershipCache.findMembers("group9").isEmpty());
+
+        assertEquals(2, groupMembershipCache.getMissCount());
+    }
+}
@@ -1,40 +1,65 @@
 package com.meltwater.smsc.service;
 
+import com.meltwater.smsc.delivery.DeliverySink;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.metrics.SmscMetrics;
 import com.meltwater.smsc.model.Redelivery;
+import com.meltwater.smsc.repository.NumberDictionary;
 import com.meltwater.smsc.repository.RedeliveryRepository;
 import com.meltwater.smsc.repository.SubscriptionRepository;
+import com.meltwater.smsc.scheduler.ExponentialBackoff;
+import com.meltwater.smsc.scheduler.RedeliveryScheduler;
+import com.meltwater.smsc.scheduler.VirtualClock;
+import com.meltwater.smsc.tracing.MessageTracer;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
-import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class MessagingServiceTest {
 
     private static final String NAME_1 = "number1";
     private static final String NAME_2 = "number2";
-    private static final String NUMBER_1 = "+36991212321";
-    private static final String NUMBER_2 = "+36991234321";
-    private static final String NUMBER_3 = "+36991234567";
+    private static final long NUMBER_1 = PhoneNumbers.encode("+36991212321");
+    private static final long NUMBER_2 = PhoneNumbers.encode("+36991234321");
+    private static final long NUMBER_3 = PhoneNumbers.encode("+36991234567");
     private static final String MESSAGE = "anyMessage";
 
     private SubscriptionRepository subscriptionRepository;
     private RedeliveryRepository redeliveryRepository;
+    private RedeliveryScheduler redeliveryScheduler;
     private MessagingService messagingService;
+    private List<String> acknowledgements;
 
     @Before
     public void setUp() {
-        subscriptionRepository = new SubscriptionRepository();
-        redeliveryRepository = new RedeliveryRepository();
+        NumberDictionary numberDictionary = new NumberDictionary();
+        subscriptionRepository = new SubscriptionRepository(numberDictionary);
+        redeliveryRepository = new RedeliveryRepository(numberDictionary);
 
         subscriptionRepository.save(NAME_1, NUMBER_1);
         subscriptionRepository.save(NAME_2, NUMBER_2);
 
-        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository);
+        redeliveryScheduler = new RedeliveryScheduler(1, 8, new ExponentialBackoff(0, 2, 0, 0), redeliveryRepository);
+
+        acknowledgements = new ArrayList<>();
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                (source, destination, message) -> acknowledgements.add(acknowledgement(source, destination, message)));
     }
 
     @Test
@@ -57,6 +82,200 @@ public class MessagingServiceTest {
         assertRedelivery(actualRedelivery, NUMBER_1, NUMBER_2);
     }
 
+    @Test
+    public void shouldAcknowledgeDeliveredMessagesOnly() {
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE);
+        messagingService.send(NUMBER_1, NUMBER_3, MESSAGE);
+
+        assertEquals(Collections.singletonList(acknowledgement(NUMBER_1, NUMBER_2, MESSAGE)), acknowledgements);
+    }
+
+    @Test
+    public void shouldBroadcastToEverySubscribedNumber() {
+        for (int i = 0; i < 5000; i++) {
+            subscriptionRepository.save("number" + (i + 10), PhoneNumbers.encode(String.format("+369900%05d", i)));
+        }
+        acknowledgements = Collections.synchronizedList(acknowledgements);
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                (source, destination, message) -> acknowledgements.add(PhoneNumbers.decode(destination)));
+
+        assertEquals(5002, messagingService.broadcast(NUMBER_1, MESSAGE));
+
+        assertEquals(5002, acknowledgements.size());
+        assertEquals(5002, new HashSet<>(acknowledgements).size());
+        assertTrue(acknowledgements.contains(PhoneNumbers.decode(NUMBER_2)));
+        assertTrue(redeliveryRepository.findAll().isEmpty());
+    }
+
+    @Test
+    public void shouldBroadcastFromUnsubscribedNumberForRedelivery() {
+        subscriptionRepository.delete(NAME_1);
+
+        messagingService.broadcast(NUMBER_1, MESSAGE);
+
+        assertTrue(acknowledgements.isEmpty());
+        assertEquals(1, redeliveryRepository.findAll().size());
+        assertRedelivery(redeliveryRepository.findAll().get(0), NUMBER_1, NUMBER_2);
+    }
+
+    @Test
+    public void shouldRetryRedeliveriesOnVirtualTime() {
+        Instant start = Instant.parse("2017-11-11T10:00:00Z");
+        VirtualClock clock = new VirtualClock(start);
+        redeliveryScheduler = new RedeliveryScheduler(1, 8, new ExponentialBackoff(1000, 2, 60000, 0), redeliveryRepository, clock);
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                (source, destination, message) -> acknowledgements.add(PhoneNumbers.decode(destination)), clock);
+        subscriptionRepository.delete(NAME_2);
+
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE);
+        subscriptionRepository.save(NAME_2, NUMBER_2);
+        clock.advance(Duration.ofMillis(999));
+
+        assertEquals(start, redeliveryRepository.findAll().get(0).getCreationDate());
+        assertTrue(acknowledgements.isEmpty());
+
+        clock.advance(Duration.ofMillis(1));
+
+        assertEquals(Collections.singletonList(PhoneNumbers.decode(NUMBER_2)), acknowledgements);
+        assertTrue(redeliveryRepository.findAll().isEmpty());
+    }
+
+    @Test
+    public void shouldRetryOnTheBackoffScheduleWhenVirtualTimeLeapsAhead() {
+        VirtualClock clock = new VirtualClock(Instant.parse("2017-11-11T10:00:00Z"));
+        SmscMetrics metrics = new SmscMetrics(clock);
+        redeliveryScheduler = new RedeliveryScheduler(1, 8, new ExponentialBackoff(1000, 2, 60000, 0), redeliveryRepository, clock);
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                (source, destination, message) -> acknowledgements.add(PhoneNumbers.decode(destination)), clock, metrics);
+        subscriptionRepository.delete(NAME_2);
+
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE);
+        clock.advance(Duration.ofSeconds(7));
+
+        assertEquals(3, metrics.getRedeliveryAttempts());
+        assertEquals(1, redeliveryScheduler.size());
+    }
+
+    @Test
+    public void shouldRetryOnlyWhenVirtualTimeAdvances() {
+        VirtualClock clock = new VirtualClock(Instant.parse("2017-11-11T10:00:00Z"));
+        redeliveryScheduler = new RedeliveryScheduler(1, 8, new ExponentialBackoff(0, 2, 0, 0), redeliveryRepository, clock);
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                (source, destination, message) -> acknowledgements.add(PhoneNumbers.decode(destination)), clock);
+        subscriptionRepository.delete(NAME_2);
+
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE);
+        subscriptionRepository.save(NAME_2, NUMBER_2);
+        messagingService.redeliverDue();
+
+        assertTrue(acknowledgements.isEmpty());
+
+        clock.advance(Duration.ofMillis(1));
+
+        assertEquals(Collections.singletonList(PhoneNumbers.decode(NUMBER_2)), acknowledgements);
+    }
+
+    @Test
+    public void shouldRecordDeliveriesAndRedeliveryAttempts() {
+        VirtualClock clock = new VirtualClock(Instant.parse("2017-11-11T10:00:00Z"));
+        SmscMetrics metrics = new SmscMetrics(clock);
+        redeliveryScheduler = new RedeliveryScheduler(1, 8, new ExponentialBackoff(1000, 2, 60000, 0), redeliveryRepository, clock);
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                (source, destination, message) -> acknowledgements.add(PhoneNumbers.decode(destination)), clock, metrics);
+        subscriptionRepository.delete(NAME_2);
+
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE);
+        clock.advance(Duration.ofSeconds(1));
+        subscriptionRepository.save(NAME_2, NUMBER_2);
+        clock.advance(Duration.ofSeconds(2));
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE + 2);
+
+        assertEquals(2, metrics.getDeliveries());
+        assertEquals(2, metrics.getRedeliveryAttempts());
+        assertEquals(0, metrics.getDeliveryLatencyMillis().percentile(50));
+        assertEquals(3000, metrics.getDeliveryLatencyMillis().percentile(100), 3000 * 0.07);
+    }
+
+    @Test
+    public void shouldTraceSentMessagesWithTheirOutcome() {
+        MessageTracer tracer = mock(MessageTracer.class);
+        SmscMetrics metrics = new SmscMetrics(Clock.systemUTC());
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                (source, destination, message) -> acknowledgements.add(PhoneNumbers.decode(destination)), Clock.systemUTC(), metrics, tracer);
+
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE);
+        messagingService.send(NUMBER_1, NUMBER_3, MESSAGE);
+        messagingService.redeliverTo(NUMBER_3);
+
+        verify(tracer).messageSent(any(), eq(NUMBER_1), eq(NUMBER_2), eq(true));
+        verify(tracer).messageSent(any(), eq(NUMBER_1), eq(NUMBER_3), eq(false));
+        verify(tracer).redelivered(any(), eq(1));
+    }
+
+    @Test
+    public void shouldKeepMessageToOfflineRecipientsAsSingleFanOut() {
+        long[] offlineNumbers = new long[1000];
+        for (int i = 0; i < offlineNumbers.length; i++) {
+            offlineNumbers[i] = PhoneNumbers.encode(String.format("+369900%05d", i));
+        }
+
+        messagingService.fanOut(NUMBER_1, offlineNumbers, MESSAGE);
+
+        assertTrue(acknowledgements.isEmpty());
+        assertEquals(0, redeliveryRepository.count());
+        assertEquals(1, redeliveryRepository.findAllFanOuts().size());
+        assertEquals(1000, redeliveryRepository.findAllFanOuts().get(0).countOutstanding());
+    }
+
+    @Test
+    public void shouldMaterializeFanOutWhenRecipientSubscribes() {
+        subscriptionRepository.delete(NAME_2);
+        messagingService.fanOut(NUMBER_1, new long[]{NUMBER_2, NUMBER_3}, MESSAGE);
+
+        subscriptionRepository.save(NAME_2, NUMBER_2);
+        messagingService.redeliverTo(NUMBER_2);
+
+        assertEquals(Collections.singletonList(acknowledgement(NUMBER_1, NUMBER_2, MESSAGE)), acknowledgements);
+        assertEquals(0, redeliveryRepository.count());
+        assertEquals(1, redeliveryRepository.findAllFanOuts().get(0).countOutstanding());
+
+        subscriptionRepository.save("number3", NUMBER_3);
+        messagingService.redeliverTo(NUMBER_3);
+
+        assertEquals(2, acknowledgements.size());
+        assertTrue(redeliveryRepository.findAllFanOuts().isEmpty());
+    }
+
+    @Test
+    public void shouldMaterializeFanOutWhenSourceSubscribes() {
+        subscriptionRepository.delete(NAME_1);
+        messagingService.fanOut(NUMBER_1, new long[]{NUMBER_2, NUMBER_3}, MESSAGE);
+
+        subscriptionRepository.save(NAME_1, NUMBER_1);
+        messagingService.redeliverTo(NUMBER_1);
+
+        assertEquals(Collections.singletonList(acknowledgement(NUMBER_1, NUMBER_2, MESSAGE)), acknowledgements);
+        assertEquals(1, redeliveryRepository.findAllFanOuts().get(0).countOutstanding());
+    }
+
+    @Test
+    public void shouldRedeliverOnlyToTheNumbersSubscribedTogether() {
+        long number4 = PhoneNumbers.encode("+36991234568");
+        subscriptionRepository.delete(NAME_2);
+        messagingService.fanOut(NUMBER_1, new long[]{NUMBER_2, NUMBER_3}, MESSAGE);
+        messagingService.send(NUMBER_1, number4, MESSAGE);
+
+        subscriptionRepository.save(NAME_2, NUMBER_2);
+        subscriptionRepository.save("number3", NUMBER_3);
+        subscriptionRepository.save("number4", number4);
+        messagingService.redeliverToAll(new long[]{NUMBER_2, NUMBER_3});
+
+        assertEquals(2, acknowledgements.size());
+        assertTrue(acknowledgements.contains(acknowledgement(NUMBER_1, NUMBER_3, MESSAGE)));
+        assertTrue(redeliveryRepository.findAllFanOuts().isEmpty());
+        assertEquals(1, redeliveryRepository.findAllByDestination(number4).size());
+    }
+
     @Test
     public void shouldTryToRedeliverAllMessagesToActualSubscriptions() {
         Redelivery number1ToNumber2 = new Redelivery(NUMBER_1, NUMBER_2, MESSAGE, Instant.now());
@@ -64,27 +283,75 @@ public class MessagingServiceTest {
         redeliveryRepository.save(number1ToNumber2);
         redeliveryRepository.save(number1ToNumber3);
 
-        messagingService.redeliver();
+        messagingService.redeliverTo(NUMBER_1);
 
         List<Redelivery> actualRedelivery = redeliveryRepository.findAll();
         assertRedelivery(actualRedelivery.get(0), NUMBER_1, NUMBER_3);
     }
 
+    @Test
+    public void shouldRedeliverMessagesOfNewlySubscribedNumberInOrder() {
+        DeliverySink deliverySink = mock(DeliverySink.class);
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler, deliverySink);
+        subscriptionRepository.delete(NAME_2);
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE);
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE + 2);
+        messagingService.send(NUMBER_1, NUMBER_3, MESSAGE);
+        subscriptionRepository.save(NAME_2, NUMBER_2);
+
+        messagingService.redeliverTo(NUMBER_2);
+
+        InOrder inOrder = inOrder(deliverySink);
+        inOrder.verify(deliverySink).deliver(NUMBER_1, NUMBER_2, MESSAGE);
+        inOrder.verify(deliverySink).deliver(NUMBER_1, NUMBER_2, MESSAGE + 2);
+        inOrder.verifyNoMoreInteractions();
+        List<Redelivery> actualRedeliveries = redeliveryRepository.findAll();
+        assertEquals(1, actualRedeliveries.size());
+        assertRedelivery(actualRedeliveries.get(0), NUMBER_1, NUMBER_3);
+        assertTrue(redeliveryRepository.findAllByDestination(NUMBER_2).isEmpty());
+        assertEquals(1, redeliveryRepository.findAllBySource(NUMBER_1).size());
+    }
+
+    @Test
+    public void shouldRetryDueRedeliveriesUntilDelivered() {
+        VirtualClock clock = new VirtualClock(Instant.parse("2017-11-11T10:00:00Z"));
+        redeliveryScheduler = new RedeliveryScheduler(1, 8, new ExponentialBackoff(0, 2, 0, 0), redeliveryRepository, clock);
+        messagingService = new MessagingService(subscriptionRepository, redeliveryRepository, redeliveryScheduler,
+                (source, destination, message) -> acknowledgements.add(acknowledgement(source, destination, message)), clock);
+        subscriptionRepository.delete(NAME_2);
+        messagingService.send(NUMBER_1, NUMBER_2, MESSAGE);
+
+        clock.advance(Duration.ofMillis(5));
+
+        assertEquals(1, redeliveryRepository.findAll().size());
+        assertEquals(1, redeliveryScheduler.size());
+
+        subscriptionRepository.save(NAME_2, NUMBER_2);
+        clock.advance(Duration.ofMillis(5));
+
+        assertEquals(Collections.singletonList(acknowledgement(NUMBER_1, NUMBER_2, MESSAGE)), acknowledgements);
+        assertTrue(redeliveryRepository.findAll().isEmpty());
+        assertEquals(0, redeliveryScheduler.size());
+    }
+
     @Test
     public void shouldRemoveExpiredMessages() {
         Instant fiveMinutesAgo = Instant.now().minus(Duration.ofMinutes(6));
         Redelivery number1ToNumber2 = new Redelivery(NUMBER_1, NUMBER_2, MESSAGE, fiveMinutesAgo);
         redeliveryRepository.save(number1ToNumber2);
 
-        messagingService.redeliver();
+        messagingService.redeliverTo(NUMBER_2);
 
         List<Redelivery> actualRedeliveries = redeliveryRepository.findAll();
         assertTrue(actualRedeliveries.isEmpty());
     }
 
-    private void assertRedelivery(Redelivery actualRedelivery, String expectedSource, String expectedDestination) {
+    private void assertRedelivery(Redelivery actualRedelivery, long expectedSource, long expectedDestination) {
         assertEquals(actualRedelivery.getSource(), expectedSource);
         assertEquals(actualRedelivery.getDestination(), expectedDestination);
     }
 
+    private static String acknowledgement(long source, long destination, String message) {
+        return PhoneNumbers.decode(source) + " -> " + PhoneNumbers.decode(destination) + " : " + message;
+    }
 }
@@ -1,20 +1,33 @@
 package com.meltwater.smsc.service;
 
 import com.meltwater.smsc.exception.NumberNotRegisteredException;
+import com.meltwater.smsc.index.PhoneNumbers;
+import com.meltwater.smsc.metrics.SmscMetrics;
 import com.meltwater.smsc.model.Account;
 import com.meltwater.smsc.repository.AccountRepository;
+import com.meltwater.smsc.repository.IndexedAccountRepository;
+import com.meltwater.smsc.repository.NumberDictionary;
 import com.meltwater.smsc.repository.NumberGroupRepository;
 import com.meltwater.smsc.repository.SubscriptionRepository;
+import com.meltwater.smsc.tracing.MessageTracer;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.time.Clock;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class SubscriptionServiceTest {
 
@@ -23,9 +36,9 @@ public class SubscriptionServiceTest {
     private static final String NAME_3 = "number3";
     private static final String GROUP_1 = "group1";
     private static final String MESSAGE = "message";
-    private static final String NUMBER_1 = "+36991212321";
-    private static final String NUMBER_2 = "+36991234321";
-    private static final String NUMBER_3 = "+36991234567";
+    private static final long NUMBER_1 = PhoneNumbers.encode("+36991212321");
+    private static final long NUMBER_2 = PhoneNumbers.encode("+36991234321");
+    private static final long NUMBER_3 = PhoneNumbers.encode("+36991234567");
 
     private SubscriptionRepository subscriptionRepository;
     private AccountRepository accountRepository;
@@ -36,16 +49,17 @@ public class SubscriptionServiceTest {
 
     @Before
     public void setUp() {
-        accountRepository = new AccountRepository();
+        NumberDictionary numberDictionary = new NumberDictionary();
+        accountRepository = new IndexedAccountRepository(numberDictionary);
         numberGroupRepository = new NumberGroupRepository();
-        subscriptionRepository = new SubscriptionRepository();
+        subscriptionRepository = new SubscriptionRepository(numberDictionary);
         Mockito.reset(messagingServiceMock);
 
         prepareData();
 
         numberGroupRepository.save(GROUP_1, Arrays.asList("+3699123*"));
 
-        subscriptionService = new SubscriptionService(subscriptionRepository, accountRepository, numberGroupRepository, messagingServiceMock);
+        subscriptionService = new SubscriptionService(subscriptionRepository, accountRepository, new GroupMembershipCache(accountRepository, numberGroupRepository), messagingServiceMock);
     }
 
     @Test
@@ -58,6 +72,13 @@ public class SubscriptionServiceTest {
         assertEquals(1, expectedSubscriptions);
     }
 
+    @Test
+    public void shouldRedeliverPendingMessagesOnSubscription() {
+        subscriptionService.subscribeNumber(NAME_1);
+
+        verify(messagingServiceMock).redeliverTo(eq(NUMBER_1));
+    }
+
     @Test(expected = NumberNotRegisteredException.class)
     public void shouldThrowExceptionOnSubscriptionWhenNumberIsNotRegistered() {
         Account name1 = accountRepository.findByName(NAME_1).get();
@@ -66,6 +87,31 @@ public class SubscriptionServiceTest {
         subscriptionService.subscribeNumber(NAME_1);
     }
 
+    @Test
+    public void shouldSubscribeAllAndRedeliverToThemInOnePass() {
+        subscriptionRepository.delete(NAME_1);
+        subscriptionRepository.delete(NAME_2);
+
+        subscriptionService.subscribeAll(Arrays.asList(NAME_1, NAME_2));
+
+        assertEquals(1, subscriptionRepository.countByName(NAME_1));
+        assertEquals(1, subscriptionRepository.countByName(NAME_2));
+        verify(messagingServiceMock, times(1)).redeliverToAll(aryEq(new long[]{NUMBER_1, NUMBER_2}));
+        verify(messagingServiceMock, never()).redeliverTo(anyLong());
+    }
+
+    @Test
+    public void shouldSubscribeNoneWhenAnyNumberIsNotRegistered() {
+        subscriptionRepository.delete(NAME_1);
+
+        try {
+            subscriptionService.subscribeAll(Arrays.asList(NAME_1, "number9"));
+            fail("Expected NumberNotRegisteredException");
+        } catch (NumberNotRegisteredException ex) {
+            assertEquals(0, subscriptionRepository.countByName(NAME_1));
+        }
+    }
+
     @Test
     public void shouldUnsubscribeNumber() {
         subscriptionService.subscribeNumber(NAME_1);
@@ -103,16 +149,46 @@ public class SubscriptionServiceTest {
     public void shouldSendMessageToGroup() {
         subscriptionService.sendGroupMessage(NAME_1, GROUP_1, MESSAGE);
 
-        verify(messagingServiceMock).send(eq(NUMBER_1), eq(NUMBER_2), eq(MESSAGE));
-        verify(messagingServiceMock).send(eq(NUMBER_1), eq(NUMBER_3), eq(MESSAGE));
+        verify(messagingServiceMock).fanOut(eq(NUMBER_1), aryEq(new long[]{NUMBER_2, NUMBER_3}), eq(MESSAGE));
+    }
+
+    @Test
+    public void shouldSendGroupMessageOnceWhenPatternsOverlap() {
+        numberGroupRepository.save(GROUP_1, Arrays.asList("+3699123*", "+36991234321", "+36991234*"));
+
+        subscriptionService.sendGroupMessage(NAME_1, GROUP_1, MESSAGE);
+
+        verify(messagingServiceMock, times(1)).fanOut(eq(NUMBER_1), aryEq(new long[]{NUMBER_2, NUMBER_3}), eq(MESSAGE));
     }
 
     @Test
     public void shouldBroadcastMessage() {
         subscriptionService.broadCastMessage(NAME_1, MESSAGE);
 
-        verify(messagingServiceMock).send(eq(NUMBER_1), eq(NUMBER_2), eq(MESSAGE));
-        verify(messagingServiceMock).send(eq(NUMBER_1), eq(NUMBER_3), eq(MESSAGE));
+        verify(messagingServiceMock).broadcast(eq(NUMBER_1), eq(MESSAGE));
+    }
+
+    @Test
+    public void shouldSendBroadcastMessageToOfflineAccountsForRedelivery() {
+        subscriptionRepository.delete(NAME_3);
+
+        subscriptionService.broadCastMessage(NAME_1, MESSAGE);
+
+        verify(messagingServiceMock).fanOut(eq(NUMBER_1), aryEq(new long[]{NUMBER_3}), eq(MESSAGE));
+        verify(messagingServiceMock).broadcast(eq(NUMBER_1), eq(MESSAGE));
+    }
+
+    @Test
+    public void shouldTraceBroadcastToOfflineAndSubscribedRecipients() {
+        MessageTracer tracer = mock(MessageTracer.class);
+        subscriptionService = new SubscriptionService(subscriptionRepository, accountRepository, new GroupMembershipCache(accountRepository, numberGroupRepository),
+                messagingServiceMock, new SmscMetrics(Clock.systemUTC()), tracer);
+        subscriptionRepository.delete(NAME_3);
+        when(messagingServiceMock.broadcast(NUMBER_1, MESSAGE)).thenReturn(2);
+
+        subscriptionService.broadCastMessage(NAME_1, MESSAGE);
+
+        verify(tracer).broadcast(any(), eq(NUMBER_1), eq(3));
     }
 
     private void prepareData() {